@@ -0,0 +1,70 @@
+package com.yky.http.utils;
+
+import java.util.List;
+
+/**
+ * 基准测试中序列化和反序列化使用的对象
+ * @author wuhualu
+ */
+public class BenchmarkUser {
+
+    private long id;
+
+    private String name;
+
+    private int age;
+
+    private String address;
+
+    private List<String> tags;
+
+    public static BenchmarkUser sample(long id) {
+        BenchmarkUser user = new BenchmarkUser();
+        user.setId(id);
+        user.setName("张三" + id);
+        user.setAge(22);
+        user.setAddress("广东省深圳市南山区科技园");
+        user.setTags(java.util.Arrays.asList("vip", "beta", "cn"));
+        return user;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public void setAge(int age) {
+        this.age = age;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+}
@@ -0,0 +1,126 @@
+package com.yky.http.utils;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整请求的基准测试，服务端是本机内嵌的HttpServer，测的是客户端一侧的开销(连接池、构造请求、读取和解析响应)
+ * 运行：java -jar target/benchmarks.jar ExecuteBenchmark -prof gc
+ * @author wuhualu
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ExecuteBenchmark {
+
+    /**
+     * 响应中的元素个数
+     */
+    @Param({"1", "100"})
+    private int size;
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    private String url;
+
+    private Map<String, Object> params;
+
+    private BenchmarkUser user;
+
+    private Class<?> responseType;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        List<BenchmarkUser> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            users.add(BenchmarkUser.sample(i));
+        }
+        byte[] body = FastJsonUtils.entityToJsonBytes(size == 1 ? users.get(0) : users);
+
+        //内嵌服务端默认开启Nagle算法，与客户端的延迟确认叠加后每个请求会多等待约40ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newFixedThreadPool(8);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            //读完请求体，连接才能复用
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                byte[] buffer = new byte[8192];
+                while (inputStream.read(buffer) != -1) {
+                    //丢弃
+                }
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/test/me";
+        params = new LinkedHashMap<>();
+        params.put("name", "张三");
+        params.put("age", 22);
+        user = BenchmarkUser.sample(1);
+        responseType = size == 1 ? BenchmarkUser.class : List.class;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HttpClientManager.shutdown();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public String requestGet() {
+        return HttpClientUtils.requestGet(url, 5000, null, params);
+    }
+
+    @Benchmark
+    public Object requestGetForEntity() {
+        return HttpClientUtils.requestGet(url, 5000, null, params, responseType);
+    }
+
+    @Benchmark
+    public String requestJsonPost() {
+        return HttpClientUtils.requestJsonPost(url, 5000, null, user);
+    }
+
+    @Benchmark
+    public String requestFormPost() {
+        return HttpClientUtils.requestFormPost(url, 5000, null, params);
+    }
+}
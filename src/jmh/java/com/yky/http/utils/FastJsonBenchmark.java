@@ -0,0 +1,80 @@
+package com.yky.http.utils;
+
+import com.alibaba.fastjson.TypeReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FastJsonUtils序列化和反序列化的基准测试
+ * 运行：java -jar target/benchmarks.jar FastJsonBenchmark -prof gc
+ * @author wuhualu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FastJsonBenchmark {
+
+    private static final TypeReference<List<BenchmarkUser>> USER_LIST = new TypeReference<List<BenchmarkUser>>() {
+    };
+
+    /**
+     * 数组中的元素个数
+     */
+    @Param({"1", "100"})
+    private int size;
+
+    private List<BenchmarkUser> users;
+
+    private String jsonString;
+
+    private byte[] jsonBytes;
+
+    @Setup
+    public void setup() {
+        users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            users.add(BenchmarkUser.sample(i));
+        }
+        jsonString = FastJsonUtils.entityToJsonString(users);
+        jsonBytes = jsonString.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String entityToJsonString() {
+        return FastJsonUtils.entityToJsonString(users);
+    }
+
+    @Benchmark
+    public byte[] entityToJsonBytes() {
+        return FastJsonUtils.entityToJsonBytes(users);
+    }
+
+    @Benchmark
+    public List jsonStringToEntity() {
+        return FastJsonUtils.jsonStringToEntity(jsonString, List.class);
+    }
+
+    @Benchmark
+    public List<BenchmarkUser> jsonStreamToEntity() throws IOException {
+        return FastJsonUtils.jsonStreamToEntity(new ByteArrayInputStream(jsonBytes), StandardCharsets.UTF_8, USER_LIST);
+    }
+}
@@ -0,0 +1,131 @@
+package com.yky.http.utils;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 构造请求的基准测试：拼接参数(UrlBuilder)、设置请求头和超时配置、构造表单和JSON请求体
+ * 运行：java -jar target/benchmarks.jar RequestBuildBenchmark -prof gc
+ * @author wuhualu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBuildBenchmark {
+
+    private static final String URL = "http://localhost:8080/test/area";
+
+    private Map<String, Object> params;
+
+    private Map<String, String> headers;
+
+    private HttpGet httpGet;
+
+    @Setup
+    public void setup() {
+        params = new LinkedHashMap<>();
+        params.put("name", "深圳市");
+        params.put("age", 22);
+        params.put("keyword", "a b&c=d");
+        params.put("ids", Arrays.asList(1, 2, 3));
+
+        headers = new LinkedHashMap<>();
+        headers.put("Authorization", "Bearer 0123456789abcdef");
+        headers.put("X-Request-Id", "5f0c4a2e");
+        headers.put("Accept", "application/json");
+
+        httpGet = new HttpGet(URL);
+    }
+
+    @Benchmark
+    public String toQueryString() {
+        return UrlBuilder.toQueryString(params);
+    }
+
+    @Benchmark
+    public URI toUri() {
+        return UrlBuilder.toUri(URL, params);
+    }
+
+    @Benchmark
+    public HttpGet setHeaders() {
+        HttpClientUtils.setHeaders(headers, httpGet);
+        return httpGet;
+    }
+
+    @Benchmark
+    public HttpGet setConfig() {
+        HttpClientUtils.setConfig(5000, httpGet);
+        return httpGet;
+    }
+
+    @Benchmark
+    public HttpGet createGet() {
+        return HttpClientUtils.createGet(URL, 5000, headers, params);
+    }
+
+    /**
+     * 构造表单请求并写出请求体，包括参数的URL编码
+     */
+    @Benchmark
+    public HttpPost createFormPost(Blackhole blackhole) throws IOException {
+        HttpPost httpPost = HttpClientUtils.createFormPost(URL, 5000, headers, params);
+        httpPost.getEntity().writeTo(new BlackholeOutputStream(blackhole));
+        return httpPost;
+    }
+
+    /**
+     * 构造JSON请求并写出请求体，包括序列化
+     */
+    @Benchmark
+    public HttpPost createJsonPost(Blackhole blackhole) throws IOException {
+        HttpPost httpPost = HttpClientUtils.createJsonPost(URL, 5000, headers, params);
+        httpPost.getEntity().writeTo(new BlackholeOutputStream(blackhole));
+        return httpPost;
+    }
+
+    /**
+     * 丢弃写入的数据，避免基准测试中再分配输出缓冲区
+     */
+    static class BlackholeOutputStream extends OutputStream {
+
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+            blackhole.consume(len);
+        }
+    }
+}
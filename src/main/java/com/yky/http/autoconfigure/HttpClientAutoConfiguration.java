@@ -0,0 +1,74 @@
+package com.yky.http.autoconfigure;
+
+import com.yky.http.utils.CachingDnsResolver;
+import com.yky.http.utils.ClientProfile;
+import com.yky.http.utils.HttpCapture;
+import com.yky.http.utils.HttpClientManager;
+import com.yky.http.utils.HttpClientUtils;
+import com.yky.http.utils.LoadBalancer;
+import org.apache.http.conn.DnsResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 启动时按application.yml中http-client的配置初始化连接池，并注册各主机的ClientProfile和各服务的LoadBalancer
+ * HttpClientUtils的静态方法在之后直接使用这些配置，不需要注入任何bean。
+ * 开启warm-up时在启动过程中预热连接池，应用开始接收流量时到各主机的连接已经建立好。
+ * 设置http-client.enabled=false可以关闭。
+ * @author wuhualu
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "http-client", name = "enabled", matchIfMissing = true)
+@EnableConfigurationProperties(HttpClientProperties.class)
+public class HttpClientAutoConfiguration implements InitializingBean {
+
+    private static Logger logger = LoggerFactory.getLogger(HttpClientAutoConfiguration.class);
+
+    private final HttpClientProperties properties;
+
+    public HttpClientAutoConfiguration(HttpClientProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        HttpClientProperties.Dns dns = properties.getDns();
+        DnsResolver dnsResolver = dns.isEnabled()
+                ? CachingDnsResolver.custom().setTtl(dns.getTtl()).setMaxStale(dns.getMaxStale()).build()
+                : HttpClientManager.getDnsResolver();
+        HttpClientProperties.Pool pool = properties.getPool();
+        HttpClientManager.init(pool.getMaxTotal(), pool.getMaxPerRoute(), pool.getKeepAlive(), pool.getMaxIdleTime(), dnsResolver);
+
+        HttpClientUtils.setDefaultProfile(properties.getDefaultProfile().toClientProfile("default"));
+        for (Map.Entry<String, HttpClientProperties.Profile> entry : properties.getProfiles().entrySet()) {
+            ClientProfile profile = entry.getValue().toClientProfile(entry.getKey());
+            HttpClientUtils.addProfile(profile);
+            logger.info("注册HttpClient配置: {}", profile);
+        }
+        for (Map.Entry<String, HttpClientProperties.LoadBalancer> entry : properties.getLoadBalancers().entrySet()) {
+            LoadBalancer loadBalancer = entry.getValue().toLoadBalancer(entry.getKey());
+            HttpClientUtils.addLoadBalancer(loadBalancer);
+            logger.info("注册LoadBalancer: {}", loadBalancer);
+        }
+
+        if (properties.getCapture().isEnabled()) {
+            HttpCapture.enable(properties.getCapture().toCapturePolicy());
+        }
+
+        HttpClientProperties.WarmUp warmUp = properties.getWarmUp();
+        if (warmUp.isEnabled()) {
+            Set<String> hosts = new LinkedHashSet<>(warmUp.getHosts());
+            properties.getProfiles().values().forEach(profile -> hosts.addAll(profile.getHosts()));
+            properties.getLoadBalancers().values().forEach(loadBalancer -> hosts.addAll(loadBalancer.getEndpoints()));
+            HttpClientManager.warmUp(hosts, warmUp.getConnectionsPerRoute(), warmUp.getTimeout());
+        }
+    }
+}
@@ -0,0 +1,633 @@
+package com.yky.http.autoconfigure;
+
+import com.yky.http.utils.CapturePolicy;
+import com.yky.http.utils.ClientProfile;
+import com.yky.http.utils.HttpClientManager;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HttpClientUtils的配置，前缀http-client
+ * <pre>
+ * http-client:
+ *   pool:
+ *     max-total: 400
+ *   profiles:
+ *     order:
+ *       hosts: http://order-service:8080
+ *       connect-timeout: 1000
+ *       socket-timeout: 3000
+ *       max-per-route: 100
+ *       headers:
+ *         X-Caller: shop
+ *   load-balancers:
+ *     order:
+ *       endpoints: http://10.0.0.1:8080,http://10.0.0.2:8080
+ *   dns:
+ *     enabled: true
+ *   warm-up:
+ *     enabled: true
+ *     connections-per-route: 8
+ *   capture:
+ *     enabled: true
+ *     sample-rate: 0.001
+ *     latency-threshold: 2000
+ * </pre>
+ * @author wuhualu
+ */
+@ConfigurationProperties(prefix = "http-client")
+public class HttpClientProperties {
+
+    /**
+     * 是否在启动时按配置初始化HttpClientUtils
+     */
+    private boolean enabled = true;
+
+    private final Pool pool = new Pool();
+
+    private final Dns dns = new Dns();
+
+    private final WarmUp warmUp = new WarmUp();
+
+    private final Capture capture = new Capture();
+
+    /**
+     * 没有匹配到profiles的主机使用的配置，hosts不生效
+     */
+    private final Profile defaultProfile = new Profile();
+
+    /**
+     * 按主机区分的配置，key为配置名称
+     */
+    private final Map<String, Profile> profiles = new LinkedHashMap<>();
+
+    /**
+     * 客户端负载均衡，key为服务名，请求地址写成lb://服务名/path
+     */
+    private final Map<String, LoadBalancer> loadBalancers = new LinkedHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Pool getPool() {
+        return pool;
+    }
+
+    public Dns getDns() {
+        return dns;
+    }
+
+    public WarmUp getWarmUp() {
+        return warmUp;
+    }
+
+    public Capture getCapture() {
+        return capture;
+    }
+
+    public Profile getDefaultProfile() {
+        return defaultProfile;
+    }
+
+    public Map<String, Profile> getProfiles() {
+        return profiles;
+    }
+
+    public Map<String, LoadBalancer> getLoadBalancers() {
+        return loadBalancers;
+    }
+
+    public static class Pool {
+
+        /**
+         * 连接池最大连接数
+         */
+        private int maxTotal = HttpClientManager.DEFAULT_MAX_TOTAL;
+
+        /**
+         * 每个主机的默认最大连接数
+         */
+        private int maxPerRoute = HttpClientManager.DEFAULT_MAX_PER_ROUTE;
+
+        /**
+         * 服务端没有返回Keep-Alive头时连接的保持时间,ms
+         */
+        private long keepAlive = HttpClientManager.DEFAULT_KEEP_ALIVE;
+
+        /**
+         * 空闲连接的最大存活时间,ms
+         */
+        private long maxIdleTime = HttpClientManager.DEFAULT_MAX_IDLE_TIME;
+
+        public int getMaxTotal() {
+            return maxTotal;
+        }
+
+        public void setMaxTotal(int maxTotal) {
+            this.maxTotal = maxTotal;
+        }
+
+        public int getMaxPerRoute() {
+            return maxPerRoute;
+        }
+
+        public void setMaxPerRoute(int maxPerRoute) {
+            this.maxPerRoute = maxPerRoute;
+        }
+
+        public long getKeepAlive() {
+            return keepAlive;
+        }
+
+        public void setKeepAlive(long keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        public long getMaxIdleTime() {
+            return maxIdleTime;
+        }
+
+        public void setMaxIdleTime(long maxIdleTime) {
+            this.maxIdleTime = maxIdleTime;
+        }
+    }
+
+    public static class Dns {
+
+        /**
+         * 是否开启进程内的DNS缓存，过期后在后台刷新，请求线程不等待DNS
+         */
+        private boolean enabled = false;
+
+        /**
+         * 解析结果的有效时间,ms
+         */
+        private long ttl = 60000;
+
+        /**
+         * 过期后还能继续使用旧结果的时间,ms
+         */
+        private long maxStale = 300000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(long ttl) {
+            this.ttl = ttl;
+        }
+
+        public long getMaxStale() {
+            return maxStale;
+        }
+
+        public void setMaxStale(long maxStale) {
+            this.maxStale = maxStale;
+        }
+    }
+
+    public static class WarmUp {
+
+        /**
+         * 是否在启动时预热连接池，预热profiles中的主机、load-balancers中的实例和hosts中的主机
+         */
+        private boolean enabled = false;
+
+        /**
+         * 额外需要预热的主机，如http://user-service:8080
+         */
+        private List<String> hosts = new ArrayList<>();
+
+        /**
+         * 每个主机建立的连接数
+         */
+        private int connectionsPerRoute = 4;
+
+        /**
+         * 预热最多等待的时间,ms，超时不影响启动
+         */
+        private long timeout = 10000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getHosts() {
+            return hosts;
+        }
+
+        public void setHosts(List<String> hosts) {
+            this.hosts = hosts;
+        }
+
+        public int getConnectionsPerRoute() {
+            return connectionsPerRoute;
+        }
+
+        public void setConnectionsPerRoute(int connectionsPerRoute) {
+            this.connectionsPerRoute = connectionsPerRoute;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+    public static class Capture {
+
+        /**
+         * 是否开启请求抓取，抓取的内容通过HttpCapture.dump()取出
+         */
+        private boolean enabled = false;
+
+        /**
+         * 最多保留的请求数
+         */
+        private int capacity = 256;
+
+        /**
+         * 不满足其他规则的请求随机抽样的比例，0~1
+         */
+        private double sampleRate;
+
+        /**
+         * 只抓取这些主机的请求，为空时抓取所有主机
+         */
+        private List<String> hosts = new ArrayList<>();
+
+        /**
+         * 状态码不小于该值的响应都抓取，0为不按状态码抓取
+         */
+        private int minStatusCode = 500;
+
+        /**
+         * 耗时不小于该值(ms)的请求都抓取，-1为不按耗时抓取
+         */
+        private long latencyThreshold = -1;
+
+        /**
+         * 是否抓取所有失败的请求
+         */
+        private boolean captureFailures = true;
+
+        /**
+         * 请求体和响应体最多记录的字节数
+         */
+        private int maxBodySize = 4096;
+
+        CapturePolicy toCapturePolicy() {
+            return CapturePolicy.custom()
+                    .setCapacity(capacity)
+                    .setSampleRate(sampleRate)
+                    .addHosts(hosts.toArray(new String[0]))
+                    .setMinStatusCode(minStatusCode)
+                    .setLatencyThreshold(latencyThreshold)
+                    .setCaptureFailures(captureFailures)
+                    .setMaxBodySize(maxBodySize)
+                    .build();
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public List<String> getHosts() {
+            return hosts;
+        }
+
+        public void setHosts(List<String> hosts) {
+            this.hosts = hosts;
+        }
+
+        public int getMinStatusCode() {
+            return minStatusCode;
+        }
+
+        public void setMinStatusCode(int minStatusCode) {
+            this.minStatusCode = minStatusCode;
+        }
+
+        public long getLatencyThreshold() {
+            return latencyThreshold;
+        }
+
+        public void setLatencyThreshold(long latencyThreshold) {
+            this.latencyThreshold = latencyThreshold;
+        }
+
+        public boolean isCaptureFailures() {
+            return captureFailures;
+        }
+
+        public void setCaptureFailures(boolean captureFailures) {
+            this.captureFailures = captureFailures;
+        }
+
+        public int getMaxBodySize() {
+            return maxBodySize;
+        }
+
+        public void setMaxBodySize(int maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+    }
+
+    public static class Profile {
+
+        /**
+         * 使用该配置的主机，如http://order-service:8080
+         */
+        private List<String> hosts = new ArrayList<>();
+
+        /**
+         * 建立连接的超时时间,ms
+         */
+        private int connectTimeout = 5000;
+
+        /**
+         * 从连接池获取连接的超时时间,ms
+         */
+        private int connectionRequestTimeout = 5000;
+
+        /**
+         * 调用方没有指定超时时间时使用的socket超时时间,ms，-1为系统默认
+         */
+        private int socketTimeout = -1;
+
+        /**
+         * 是否自动重定向
+         */
+        private boolean redirectsEnabled = true;
+
+        /**
+         * 是否请求压缩的响应并自动解压
+         */
+        private boolean compressionEnabled = true;
+
+        /**
+         * 请求体不小于该长度(字节)时gzip压缩发送，-1为不压缩
+         */
+        private int requestCompressionThreshold = -1;
+
+        /**
+         * 每个主机的最大连接数，0为连接池的默认值
+         */
+        private int maxPerRoute;
+
+        /**
+         * 读取为字符串或对象的响应体的大小上限,字节，-1为不限制
+         */
+        private long maxBodySize = -1;
+
+        /**
+         * 是否把调用方的超时时间作为整个调用(获取连接、建立连接、读取、重定向和重试)的截止时间
+         */
+        private boolean deadlineEnabled;
+
+        /**
+         * 向下游传递剩余时间(ms)的请求头，为空时不传递
+         */
+        private String deadlineHeader = ClientProfile.DEFAULT_DEADLINE_HEADER;
+
+        /**
+         * 默认请求头，请求中已有同名的请求头时不会覆盖
+         */
+        private Map<String, String> headers = new LinkedHashMap<>();
+
+        ClientProfile toClientProfile(String name) {
+            return ClientProfile.custom(name)
+                    .addHosts(hosts.toArray(new String[0]))
+                    .setConnectTimeout(connectTimeout)
+                    .setConnectionRequestTimeout(connectionRequestTimeout)
+                    .setSocketTimeout(socketTimeout)
+                    .setRedirectsEnabled(redirectsEnabled)
+                    .setCompressionEnabled(compressionEnabled)
+                    .setRequestCompressionThreshold(requestCompressionThreshold)
+                    .setMaxPerRoute(maxPerRoute)
+                    .setMaxBodySize(maxBodySize)
+                    .setDeadlineEnabled(deadlineEnabled)
+                    .setDeadlineHeader(deadlineHeader)
+                    .addHeaders(headers)
+                    .build();
+        }
+
+        public List<String> getHosts() {
+            return hosts;
+        }
+
+        public void setHosts(List<String> hosts) {
+            this.hosts = hosts;
+        }
+
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public int getConnectionRequestTimeout() {
+            return connectionRequestTimeout;
+        }
+
+        public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+            this.connectionRequestTimeout = connectionRequestTimeout;
+        }
+
+        public int getSocketTimeout() {
+            return socketTimeout;
+        }
+
+        public void setSocketTimeout(int socketTimeout) {
+            this.socketTimeout = socketTimeout;
+        }
+
+        public boolean isRedirectsEnabled() {
+            return redirectsEnabled;
+        }
+
+        public void setRedirectsEnabled(boolean redirectsEnabled) {
+            this.redirectsEnabled = redirectsEnabled;
+        }
+
+        public boolean isCompressionEnabled() {
+            return compressionEnabled;
+        }
+
+        public void setCompressionEnabled(boolean compressionEnabled) {
+            this.compressionEnabled = compressionEnabled;
+        }
+
+        public int getRequestCompressionThreshold() {
+            return requestCompressionThreshold;
+        }
+
+        public void setRequestCompressionThreshold(int requestCompressionThreshold) {
+            this.requestCompressionThreshold = requestCompressionThreshold;
+        }
+
+        public int getMaxPerRoute() {
+            return maxPerRoute;
+        }
+
+        public void setMaxPerRoute(int maxPerRoute) {
+            this.maxPerRoute = maxPerRoute;
+        }
+
+        public long getMaxBodySize() {
+            return maxBodySize;
+        }
+
+        public void setMaxBodySize(long maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+
+        public boolean isDeadlineEnabled() {
+            return deadlineEnabled;
+        }
+
+        public void setDeadlineEnabled(boolean deadlineEnabled) {
+            this.deadlineEnabled = deadlineEnabled;
+        }
+
+        public String getDeadlineHeader() {
+            return deadlineHeader;
+        }
+
+        public void setDeadlineHeader(String deadlineHeader) {
+            this.deadlineHeader = deadlineHeader;
+        }
+
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        public void setHeaders(Map<String, String> headers) {
+            this.headers = headers;
+        }
+    }
+
+    public static class LoadBalancer {
+
+        /**
+         * 实例地址，如http://10.0.0.1:8080
+         */
+        private List<String> endpoints = new ArrayList<>();
+
+        /**
+         * 连续失败多少次后摘除实例
+         */
+        private int consecutiveFailures = 5;
+
+        /**
+         * 第一次摘除的时长,ms
+         */
+        private long ejectionTime = 30000;
+
+        /**
+         * 最多摘除的实例比例，0~1
+         */
+        private double maxEjectionPercent = 0.5;
+
+        /**
+         * 连接池中每个实例的最大连接数，0为连接池的默认值
+         */
+        private int maxPerEndpoint;
+
+        com.yky.http.utils.LoadBalancer toLoadBalancer(String name) {
+            return com.yky.http.utils.LoadBalancer.custom(name)
+                    .addEndpoints(endpoints.toArray(new String[0]))
+                    .setConsecutiveFailures(consecutiveFailures)
+                    .setEjectionTime(ejectionTime)
+                    .setMaxEjectionPercent(maxEjectionPercent)
+                    .setMaxPerEndpoint(maxPerEndpoint)
+                    .build();
+        }
+
+        public List<String> getEndpoints() {
+            return endpoints;
+        }
+
+        public void setEndpoints(List<String> endpoints) {
+            this.endpoints = endpoints;
+        }
+
+        public int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        public void setConsecutiveFailures(int consecutiveFailures) {
+            this.consecutiveFailures = consecutiveFailures;
+        }
+
+        public long getEjectionTime() {
+            return ejectionTime;
+        }
+
+        public void setEjectionTime(long ejectionTime) {
+            this.ejectionTime = ejectionTime;
+        }
+
+        public double getMaxEjectionPercent() {
+            return maxEjectionPercent;
+        }
+
+        public void setMaxEjectionPercent(double maxEjectionPercent) {
+            this.maxEjectionPercent = maxEjectionPercent;
+        }
+
+        public int getMaxPerEndpoint() {
+            return maxPerEndpoint;
+        }
+
+        public void setMaxPerEndpoint(int maxPerEndpoint) {
+            this.maxPerEndpoint = maxPerEndpoint;
+        }
+    }
+}
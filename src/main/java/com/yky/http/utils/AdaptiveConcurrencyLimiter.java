@@ -0,0 +1,133 @@
+package com.yky.http.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个路由的自适应并发限制，由ConcurrencyLimitPolicy按路由创建
+ * 采用AIMD：请求耗时接近最小耗时(服务端没有排队)时并发上限每轮加1，请求失败或耗时超过最小耗时的tolerance倍时
+ * 乘以backoffRatio，每个最小耗时周期内最多下调一次。超过上限的请求直接被拒绝，不会排队等待连接。
+ * @author wuhualu
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final ConcurrencyLimitPolicy policy;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * double类型的并发上限，以long的位模式保存以便CAS
+     */
+    private final AtomicLong limit;
+
+    private final AtomicLong minLatency = new AtomicLong(Long.MAX_VALUE);
+
+    private volatile long baselineStart = System.nanoTime();
+
+    private volatile long lastDecrease;
+
+    AdaptiveConcurrencyLimiter(ConcurrencyLimitPolicy policy) {
+        this.policy = policy;
+        this.limit = new AtomicLong(Double.doubleToLongBits(policy.getInitialLimit()));
+    }
+
+    /**
+     * @return 当前的并发上限
+     */
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limit.get());
+    }
+
+    /**
+     * @return 正在进行的请求数
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 请求发送前调用
+     * @return false表示并发数已达上限，请求应被拒绝
+     */
+    boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * 请求完成后调用，归还并发名额并调整上限
+     * @param success 是否成功，IO异常、429和5xx响应算失败
+     * @param latencyNanos 请求耗时
+     */
+    void release(boolean success, long latencyNanos) {
+        inFlight.decrementAndGet();
+
+        long baseline = updateBaseline(latencyNanos);
+        if (!success || latencyNanos > baseline * policy.getTolerance()) {
+            decrease(baseline);
+        } else {
+            increase();
+        }
+    }
+
+    /**
+     * 已获取名额但请求最终没有发送时调用
+     */
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * 记录最小耗时作为服务端没有排队时的基准耗时，每隔一段时间重新统计
+     */
+    private long updateBaseline(long latencyNanos) {
+        long now = System.nanoTime();
+        if (now - baselineStart >= policy.getBaselineResetNanos()) {
+            baselineStart = now;
+            minLatency.set(latencyNanos);
+            return latencyNanos;
+        }
+
+        long min;
+        do {
+            min = minLatency.get();
+            if (latencyNanos >= min) {
+                return min;
+            }
+        } while (!minLatency.compareAndSet(min, latencyNanos));
+        return latencyNanos;
+    }
+
+    private void increase() {
+        long bits;
+        double next;
+        do {
+            bits = limit.get();
+            double current = Double.longBitsToDouble(bits);
+            //每个请求加1/limit，相当于每轮(limit个请求)加1
+            next = Math.min(policy.getMaxLimit(), current + 1 / current);
+        } while (!limit.compareAndSet(bits, Double.doubleToLongBits(next)));
+    }
+
+    private void decrease(long baseline) {
+        long now = System.nanoTime();
+        long last = lastDecrease;
+        if (last != 0 && now - last < baseline) {
+            return;
+        }
+        lastDecrease = now;
+
+        long bits;
+        double next;
+        do {
+            bits = limit.get();
+            next = Math.max(policy.getMinLimit(), Double.longBitsToDouble(bits) * policy.getBackoffRatio());
+        } while (!limit.compareAndSet(bits, Double.doubleToLongBits(next)));
+    }
+}
@@ -0,0 +1,111 @@
+package com.yky.http.utils;
+
+import com.alibaba.fastjson.TypeReference;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URIUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 批量请求中的一个请求，参数与HttpClientUtils中对应的方法相同
+ * 每次执行时都会重新构造HttpRequest，同一个BatchRequest可以在多次批量请求中复用
+ * @author wuhualu
+ */
+public class BatchRequest<T> {
+
+    private final String route;
+
+    private final Supplier<HttpRequestBase> requestFactory;
+
+    private final EntityReader<T> reader;
+
+    private BatchRequest(String url, Supplier<HttpRequestBase> requestFactory, EntityReader<T> reader) {
+        this.route = URIUtils.extractHost(UrlBuilder.toUri(url, null)).toURI();
+        this.requestFactory = requestFactory;
+        this.reader = reader;
+    }
+
+    /**
+     * GET请求，响应读取为字符串
+     */
+    public static BatchRequest<String> get(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap) {
+        return new BatchRequest<>(url, () -> HttpClientUtils.createGet(url, timeOut, headers, entityMap), BatchRequest::readString);
+    }
+
+    /**
+     * GET请求，响应的json转换为指定类型
+     */
+    public static <T> BatchRequest<T> get(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap, Class<T> clazz) {
+        return new BatchRequest<>(url, () -> HttpClientUtils.createGet(url, timeOut, headers, entityMap), json(clazz));
+    }
+
+    /**
+     * GET请求，响应的json转换为泛型类型，如List&lt;User&gt;
+     */
+    public static <T> BatchRequest<T> get(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap, TypeReference<T> typeReference) {
+        return new BatchRequest<>(url, () -> HttpClientUtils.createGet(url, timeOut, headers, entityMap), json(typeReference.getType()));
+    }
+
+    /**
+     * 普通POST表单请求，响应读取为字符串
+     */
+    public static BatchRequest<String> formPost(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap) {
+        return new BatchRequest<>(url, () -> HttpClientUtils.createFormPost(url, timeOut, headers, entityMap), BatchRequest::readString);
+    }
+
+    /**
+     * 带JSON的POST请求，响应读取为字符串
+     * @param entity 消息体,支持Map、自定义类。
+     */
+    public static <E> BatchRequest<String> jsonPost(String url, Integer timeOut, Map<String,String> headers, E entity) {
+        return new BatchRequest<>(url, () -> HttpClientUtils.createJsonPost(url, timeOut, headers, entity), BatchRequest::readString);
+    }
+
+    /**
+     * 带JSON的POST请求，响应的json转换为指定类型
+     * @param entity 消息体,支持Map、自定义类。
+     */
+    public static <E, T> BatchRequest<T> jsonPost(String url, Integer timeOut, Map<String,String> headers, E entity, Class<T> clazz) {
+        return new BatchRequest<>(url, () -> HttpClientUtils.createJsonPost(url, timeOut, headers, entity), json(clazz));
+    }
+
+    /**
+     * @return scheme://host:port，用于按主机限制并发
+     */
+    String getRoute() {
+        return route;
+    }
+
+    HttpRequestBase createRequest() {
+        return requestFactory.get();
+    }
+
+    /**
+     * 读取响应体，与HttpClientUtils一样按响应的编码解码，受maxBodySize限制
+     */
+    T read(HttpRequestBase request, HttpEntity entity) throws IOException {
+        return entity == null ? null : reader.read(request, entity);
+    }
+
+    private static String readString(HttpRequestBase request, HttpEntity entity) throws IOException {
+        Charset charset = HttpClientUtils.getCharset(entity);
+        return ResponseBodyReader.read(request, entity, (buffer, length) -> new String(buffer, 0, length, charset));
+    }
+
+    private static <T> EntityReader<T> json(Type type) {
+        return (request, entity) -> {
+            Charset charset = HttpClientUtils.getCharset(entity);
+            return ResponseBodyReader.read(request, entity,
+                    (buffer, length) -> FastJsonUtils.<T>jsonBytesToEntity(buffer, 0, length, charset, type));
+        };
+    }
+
+    private interface EntityReader<T> {
+        T read(HttpRequestBase request, HttpEntity entity) throws IOException;
+    }
+}
@@ -0,0 +1,58 @@
+package com.yky.http.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量请求的结果，顺序与输入的请求相同，部分请求失败不影响其他请求的结果
+ * @author wuhualu
+ */
+public class BatchResponse<T> {
+
+    private final List<BatchResult<T>> results;
+
+    BatchResponse(List<BatchResult<T>> results) {
+        this.results = Collections.unmodifiableList(results);
+    }
+
+    /**
+     * @return 所有结果，顺序与输入的请求相同
+     */
+    public List<BatchResult<T>> getResults() {
+        return results;
+    }
+
+    /**
+     * @return 响应内容，顺序与输入的请求相同，失败的请求为null
+     */
+    public List<T> getValues() {
+        List<T> values = new ArrayList<>(results.size());
+        for (BatchResult<T> result : results) {
+            values.add(result.getValue());
+        }
+        return values;
+    }
+
+    /**
+     * @return 失败的请求
+     */
+    public List<BatchResult<T>> getFailures() {
+        List<BatchResult<T>> failures = new ArrayList<>();
+        for (BatchResult<T> result : results) {
+            if (!result.isSuccess()) {
+                failures.add(result);
+            }
+        }
+        return failures;
+    }
+
+    public boolean isAllSuccess() {
+        for (BatchResult<T> result : results) {
+            if (!result.isSuccess()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
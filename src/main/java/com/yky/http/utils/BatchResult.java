@@ -0,0 +1,63 @@
+package com.yky.http.utils;
+
+/**
+ * 批量请求中一个请求的结果
+ * @author wuhualu
+ */
+public class BatchResult<T> {
+
+    private final int index;
+
+    private final int statusCode;
+
+    private final T value;
+
+    private final Exception exception;
+
+    BatchResult(int index, int statusCode, T value, Exception exception) {
+        this.index = index;
+        this.statusCode = statusCode;
+        this.value = value;
+        this.exception = exception;
+    }
+
+    /**
+     * @return 请求在输入列表中的下标
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return 响应状态码，请求失败时为0
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return 响应内容，请求失败时为null
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * @return 请求失败的原因：IO异常、RequestRejectedException，超过截止时间时为TimeoutException
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    /**
+     * @return 是否收到了响应，不检查状态码
+     */
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess() ? "BatchResult[" + index + ", " + statusCode + "]" : "BatchResult[" + index + ", " + exception + "]";
+    }
+}
@@ -0,0 +1,86 @@
+package com.yky.http.utils;
+
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.HttpCacheStorage;
+import org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.apache.http.client.cache.Resource;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 同时按条目数和总字节数限制大小的响应缓存，超出限制时淘汰最久未访问的条目(LRU)
+ * @author wuhualu
+ */
+class BoundedHttpCacheStorage implements HttpCacheStorage {
+
+    private final int maxEntries;
+
+    private final long maxBytes;
+
+    /**
+     * accessOrder为true，迭代顺序即为从最久未访问到最近访问
+     */
+    private final LinkedHashMap<String, HttpCacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes;
+
+    BoundedHttpCacheStorage(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public synchronized void putEntry(String key, HttpCacheEntry entry) {
+        totalBytes -= sizeOf(entries.put(key, entry));
+        totalBytes += sizeOf(entry);
+        evict();
+    }
+
+    @Override
+    public synchronized HttpCacheEntry getEntry(String key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public synchronized void removeEntry(String key) {
+        totalBytes -= sizeOf(entries.remove(key));
+    }
+
+    @Override
+    public synchronized void updateEntry(String key, HttpCacheUpdateCallback callback) throws IOException {
+        HttpCacheEntry existing = entries.get(key);
+        HttpCacheEntry updated = callback.update(existing);
+        if (updated == null) {
+            removeEntry(key);
+        } else {
+            putEntry(key, updated);
+        }
+    }
+
+    synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, HttpCacheEntry>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalBytes > maxBytes) && iterator.hasNext()) {
+            totalBytes -= sizeOf(iterator.next().getValue());
+            iterator.remove();
+        }
+    }
+
+    private static long sizeOf(HttpCacheEntry entry) {
+        if (entry == null) {
+            return 0;
+        }
+        Resource resource = entry.getResource();
+        return resource == null ? 0 : resource.length();
+    }
+}
@@ -0,0 +1,76 @@
+package com.yky.http.utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 读取响应体用的字节数组池，按2的幂分为4KB到1MB共9个大小等级
+ * 每个等级是一个定长的槽位数组，通过CAS取出和归还，大的等级槽位少，池中最多保留约5MB。
+ * 超过1MB的数组不入池，直接分配。
+ * @author wuhualu
+ */
+final class BufferPool {
+
+    private static final int MIN_SHIFT = 12;
+
+    private static final int MAX_SHIFT = 20;
+
+    /**
+     * 入池的最大数组长度
+     */
+    static final int MAX_POOLED_SIZE = 1 << MAX_SHIFT;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final AtomicReferenceArray<byte[]>[] CLASSES = new AtomicReferenceArray[MAX_SHIFT - MIN_SHIFT + 1];
+
+    static {
+        for (int i = 0; i < CLASSES.length; i++) {
+            //4KB 64个，8KB 32个...128KB及以上 2个
+            CLASSES[i] = new AtomicReferenceArray<>(Math.max(2, 64 >> i));
+        }
+    }
+
+    private BufferPool() {
+    }
+
+    /**
+     * 取出长度不小于size的数组，内容不会清零
+     * @param size 需要的最小长度
+     */
+    static byte[] acquire(int size) {
+        if (size > MAX_POOLED_SIZE) {
+            return new byte[size];
+        }
+        int index = index(size);
+        AtomicReferenceArray<byte[]> slots = CLASSES[index];
+        for (int i = 0; i < slots.length(); i++) {
+            byte[] buffer = slots.get(i);
+            if (buffer != null && slots.compareAndSet(i, buffer, null)) {
+                return buffer;
+            }
+        }
+        return new byte[1 << (index + MIN_SHIFT)];
+    }
+
+    /**
+     * 归还数组，长度不是池中的大小等级或槽位已满时丢弃
+     */
+    static void release(byte[] buffer) {
+        int length = buffer.length;
+        if (length > MAX_POOLED_SIZE || length < (1 << MIN_SHIFT) || Integer.bitCount(length) != 1) {
+            return;
+        }
+        AtomicReferenceArray<byte[]> slots = CLASSES[index(length)];
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    private static int index(int size) {
+        if (size <= 1 << MIN_SHIFT) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+}
@@ -0,0 +1,216 @@
+package com.yky.http.utils;
+
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * 进程内的DNS缓存，通过CachingDnsResolver.custom()...build()创建，HttpClientManager.setDnsResolver设置后生效
+ * 解析结果缓存ttl时间，过期后先返回旧的结果，同时在后台线程中重新解析，请求线程不会因为缓存过期而等待DNS；
+ * 后台解析失败时继续使用旧的结果，超过maxStale仍没有解析成功才在请求线程中重新解析。
+ * @author wuhualu
+ */
+public class CachingDnsResolver implements DnsResolver {
+
+    private static Logger logger = LoggerFactory.getLogger(CachingDnsResolver.class);
+
+    private final DnsResolver delegate;
+
+    private final long ttlNanos;
+
+    private final long maxStaleNanos;
+
+    private final int maxEntries;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 后台刷新的线程池，同一个主机同时只有一个刷新任务
+     */
+    private final Executor refresher;
+
+    private final LongSupplier ticker;
+
+    private CachingDnsResolver(Builder builder) {
+        this.delegate = builder.delegate;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(builder.ttl);
+        this.maxStaleNanos = TimeUnit.MILLISECONDS.toNanos(builder.maxStale);
+        this.maxEntries = builder.maxEntries;
+        this.ticker = builder.ticker;
+        this.refresher = builder.refresher != null ? builder.refresher : Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-dns-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static Builder custom() {
+        return new Builder();
+    }
+
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        Entry entry = entries.get(host);
+        long now = ticker.getAsLong();
+        if (entry != null) {
+            long age = now - entry.resolvedAt;
+            if (age < ttlNanos) {
+                return entry.addresses.clone();
+            }
+            if (age < ttlNanos + maxStaleNanos) {
+                refreshAsync(host, entry);
+                return entry.addresses.clone();
+            }
+        }
+        return lookup(host).addresses.clone();
+    }
+
+    /**
+     * 预先解析主机并放入缓存，解析失败时只记录日志
+     * @param hosts 主机名，不带scheme和端口
+     * @return 解析成功的个数
+     */
+    public int prefetch(Iterable<String> hosts) {
+        int count = 0;
+        for (String host : hosts) {
+            try {
+                lookup(host);
+                count++;
+            } catch (UnknownHostException e) {
+                logger.warn("DNS预解析失败, host:{}", host);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return 缓存中的主机数
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private Entry lookup(String host) throws UnknownHostException {
+        Entry entry = new Entry(delegate.resolve(host), ticker.getAsLong());
+        if (entries.size() < maxEntries || entries.containsKey(host)) {
+            entries.put(host, entry);
+        }
+        return entry;
+    }
+
+    private void refreshAsync(String host, Entry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refresher.execute(() -> {
+                try {
+                    lookup(host);
+                } catch (UnknownHostException | RuntimeException e) {
+                    //继续使用旧的结果，下次请求时再尝试
+                    logger.warn("DNS后台刷新失败，继续使用缓存的结果, host:{}, 异常:{}", host, e.toString());
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private static class Entry {
+
+        private final InetAddress[] addresses;
+
+        private final long resolvedAt;
+
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(InetAddress[] addresses, long resolvedAt) {
+            this.addresses = addresses;
+            this.resolvedAt = resolvedAt;
+        }
+    }
+
+    public static class Builder {
+
+        private DnsResolver delegate = SystemDefaultDnsResolver.INSTANCE;
+
+        private long ttl = 60000;
+
+        private long maxStale = 300000;
+
+        private int maxEntries = 10000;
+
+        private LongSupplier ticker = System::nanoTime;
+
+        private Executor refresher;
+
+        /**
+         * @param delegate 实际执行解析的DnsResolver，默认SystemDefaultDnsResolver
+         */
+        public Builder setDelegate(DnsResolver delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * @param ttl 解析结果的有效时间,ms，默认60000，过期后在后台刷新
+         */
+        public Builder setTtl(long ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        /**
+         * @param maxStale 过期后还能继续使用旧结果的时间,ms，默认300000，超过后在请求线程中重新解析
+         */
+        public Builder setMaxStale(long maxStale) {
+            this.maxStale = maxStale;
+            return this;
+        }
+
+        /**
+         * @param maxEntries 最多缓存的主机数，默认10000，超出后新的主机不再缓存
+         */
+        public Builder setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * @param ticker 当前时间,ns，默认System.nanoTime，用于测试
+         */
+        Builder setTicker(LongSupplier ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        /**
+         * @param refresher 执行后台刷新的线程池，默认单个守护线程，用于测试
+         */
+        Builder setRefresher(Executor refresher) {
+            this.refresher = refresher;
+            return this;
+        }
+
+        public CachingDnsResolver build() {
+            return new CachingDnsResolver(this);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.yky.http.utils;
+
+import org.apache.http.client.utils.URIUtils;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求抓取的规则，通过CapturePolicy.custom()...build()创建，创建后不可修改
+ * 收到响应头(或请求失败)后判断是否抓取：状态码达到阈值、耗时达到阈值、请求失败的一定抓取，其余的按比例随机抽样。
+ * 可以只抓取指定的主机。Authorization、Cookie等请求头的值不会被记录。
+ * @author wuhualu
+ */
+public class CapturePolicy {
+
+    private final int capacity;
+
+    private final double sampleRate;
+
+    private final Set<String> hosts;
+
+    private final int minStatusCode;
+
+    private final long latencyThresholdNanos;
+
+    private final boolean captureFailures;
+
+    private final int maxBodySize;
+
+    private final Set<String> redactedHeaders;
+
+    private CapturePolicy(Builder builder) {
+        this.capacity = builder.capacity;
+        this.sampleRate = builder.sampleRate;
+        this.hosts = Collections.unmodifiableSet(new HashSet<>(builder.hosts));
+        this.minStatusCode = builder.minStatusCode;
+        this.latencyThresholdNanos = builder.latencyThreshold < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(builder.latencyThreshold);
+        this.captureFailures = builder.captureFailures;
+        this.maxBodySize = builder.maxBodySize;
+        this.redactedHeaders = Collections.unmodifiableSet(new HashSet<>(builder.redactedHeaders));
+    }
+
+    public static Builder custom() {
+        return new Builder();
+    }
+
+    /**
+     * @param route scheme://host:port
+     * @param statusCode 响应状态码，请求失败时为-1
+     * @param latencyNanos 收到响应头或失败时的耗时,ns
+     */
+    boolean shouldCapture(String route, int statusCode, long latencyNanos) {
+        if (!hosts.isEmpty() && !hosts.contains(route)) {
+            return false;
+        }
+        if (statusCode < 0 && captureFailures) {
+            return true;
+        }
+        if (minStatusCode > 0 && statusCode >= minStatusCode) {
+            return true;
+        }
+        if (latencyThresholdNanos >= 0 && latencyNanos >= latencyThresholdNanos) {
+            return true;
+        }
+        return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    boolean isRedacted(String headerName) {
+        return redactedHeaders.contains(headerName.toLowerCase(Locale.ROOT));
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    int getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public static class Builder {
+
+        private int capacity = 256;
+
+        private double sampleRate;
+
+        private final Set<String> hosts = new HashSet<>();
+
+        private int minStatusCode = 500;
+
+        private long latencyThreshold = -1;
+
+        private boolean captureFailures = true;
+
+        private int maxBodySize = 4096;
+
+        private final Set<String> redactedHeaders = new HashSet<>(
+                Arrays.asList("authorization", "proxy-authorization", "cookie", "set-cookie"));
+
+        /**
+         * @param capacity 最多保留的请求数，默认256，向上取整为2的幂，超出后覆盖最早的
+         */
+        public Builder setCapacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * @param sampleRate 不满足其他规则的请求随机抽样的比例，0~1，默认0
+         */
+        public Builder setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        /**
+         * @param hosts 只抓取这些主机的请求，如http://order-service:8080，默认抓取所有主机
+         */
+        public Builder addHosts(String... hosts) {
+            for (String host : hosts) {
+                this.hosts.add(URIUtils.extractHost(URI.create(host)).toURI());
+            }
+            return this;
+        }
+
+        /**
+         * @param minStatusCode 状态码不小于该值的响应都抓取，默认500，0表示不按状态码抓取
+         */
+        public Builder setMinStatusCode(int minStatusCode) {
+            this.minStatusCode = minStatusCode;
+            return this;
+        }
+
+        /**
+         * @param latencyThreshold 收到响应头的耗时不小于该值(ms)的请求都抓取，默认-1不按耗时抓取
+         */
+        public Builder setLatencyThreshold(long latencyThreshold) {
+            this.latencyThreshold = latencyThreshold;
+            return this;
+        }
+
+        /**
+         * @param captureFailures 是否抓取所有失败(没有收到响应)的请求，默认true
+         */
+        public Builder setCaptureFailures(boolean captureFailures) {
+            this.captureFailures = captureFailures;
+            return this;
+        }
+
+        /**
+         * @param maxBodySize 请求体和响应体最多记录的字节数，默认4096，超出部分截断
+         */
+        public Builder setMaxBodySize(int maxBodySize) {
+            this.maxBodySize = maxBodySize;
+            return this;
+        }
+
+        /**
+         * @param headerNames 只记录名称、不记录值的请求头和响应头，默认Authorization、Proxy-Authorization、Cookie、Set-Cookie
+         */
+        public Builder addRedactedHeaders(String... headerNames) {
+            for (String name : headerNames) {
+                this.redactedHeaders.add(name.toLowerCase(Locale.ROOT));
+            }
+            return this;
+        }
+
+        public CapturePolicy build() {
+            return new CapturePolicy(this);
+        }
+    }
+}
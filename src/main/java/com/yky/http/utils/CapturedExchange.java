@@ -0,0 +1,142 @@
+package com.yky.http.utils;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 抓取到的一次请求：请求行、请求头、截断的请求体、状态码、响应头、截断的响应体和耗时
+ * 响应体在调用方读取时记录，还没有读取的响应体为null
+ * @author wuhualu
+ */
+public class CapturedExchange {
+
+    /**
+     * 写入环形缓冲区的序号，用于按时间排序
+     */
+    long sequence;
+
+    private final long timestamp;
+
+    private final String method;
+
+    private final String uri;
+
+    private final List<String> requestHeaders;
+
+    private final String requestBody;
+
+    private final int statusCode;
+
+    private final List<String> responseHeaders;
+
+    private final long latencyMicros;
+
+    private final String failure;
+
+    private volatile String responseBody;
+
+    CapturedExchange(long timestamp, String method, String uri, List<String> requestHeaders, String requestBody,
+                     int statusCode, List<String> responseHeaders, long latencyMicros, String failure) {
+        this.timestamp = timestamp;
+        this.method = method;
+        this.uri = uri;
+        this.requestHeaders = requestHeaders;
+        this.requestBody = requestBody;
+        this.statusCode = statusCode;
+        this.responseHeaders = responseHeaders;
+        this.latencyMicros = latencyMicros;
+        this.failure = failure;
+    }
+
+    void setResponseBody(String responseBody) {
+        this.responseBody = responseBody;
+    }
+
+    /**
+     * @return 发送请求的时间，毫秒时间戳
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * @return 请求头，每个为"名称: 值"
+     */
+    public List<String> getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    /**
+     * @return 截断后的请求体，没有请求体时为null
+     */
+    public String getRequestBody() {
+        return requestBody;
+    }
+
+    /**
+     * @return 响应状态码，请求失败时为-1
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return 响应头，每个为"名称: 值"，请求失败时为空
+     */
+    public List<String> getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    /**
+     * @return 截断后的响应体，没有响应体或调用方还没有读取时为null
+     */
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    /**
+     * @return 收到响应头或失败时的耗时,μs
+     */
+    public long getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    /**
+     * @return 请求失败的异常，成功时为null
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(512);
+        builder.append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(timestamp)))
+                .append(' ').append(method).append(' ').append(uri)
+                .append(" (").append(latencyMicros / 1000.0).append("ms)\n");
+        requestHeaders.forEach(header -> builder.append("> ").append(header).append('\n'));
+        if (requestBody != null) {
+            builder.append(requestBody).append('\n');
+        }
+        if (failure != null) {
+            builder.append("! ").append(failure).append('\n');
+            return builder.toString();
+        }
+        builder.append("< ").append(statusCode).append('\n');
+        responseHeaders.forEach(header -> builder.append("< ").append(header).append('\n'));
+        String body = responseBody;
+        if (body != null) {
+            builder.append(body).append('\n');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,111 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * 调用方读取响应体时复制开头的maxBodySize个字节，读到末尾或关闭时记录到CapturedExchange
+ * @author wuhualu
+ */
+class CapturingHttpEntity extends HttpEntityWrapper {
+
+    private final CapturedExchange exchange;
+
+    private final int maxBodySize;
+
+    private final Charset charset;
+
+    CapturingHttpEntity(HttpEntity wrappedEntity, CapturedExchange exchange, int maxBodySize, Charset charset) {
+        super(wrappedEntity);
+        this.exchange = exchange;
+        this.maxBodySize = Math.max(0, maxBodySize);
+        this.charset = charset;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return new CapturingInputStream(super.getContent());
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        try (InputStream inputStream = getContent()) {
+            byte[] buffer = new byte[HttpClientUtils.BUFFER_SIZE];
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                outStream.write(buffer, 0, n);
+            }
+        }
+    }
+
+    private class CapturingInputStream extends FilterInputStream {
+
+        private final byte[] copy = new byte[maxBodySize];
+
+        private int length;
+
+        private boolean truncated;
+
+        private boolean recorded;
+
+        private CapturingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                record();
+            } else if (length < copy.length) {
+                copy[length++] = (byte) b;
+            } else {
+                truncated = true;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                record();
+            } else {
+                int count = Math.min(n, copy.length - length);
+                System.arraycopy(b, off, copy, length, count);
+                length += count;
+                truncated |= count < n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            truncated |= skipped > 0;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                record();
+            }
+        }
+
+        private void record() {
+            if (!recorded) {
+                recorded = true;
+                exchange.setResponseBody(HttpCapture.text(copy, length, charset, truncated));
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.yky.http.utils;
+
+import java.io.IOException;
+
+/**
+ * 按块处理响应内容
+ * 缓冲区会被复用，回调返回后不要再持有buffer的引用
+ * @author wuhualu
+ */
+@FunctionalInterface
+public interface ChunkConsumer {
+
+    /**
+     * 处理一块响应内容
+     * @param buffer 缓冲区
+     * @param offset 有效内容的起始位置
+     * @param length 有效内容的长度
+     * @throws IOException 处理失败时会中止读取
+     */
+    void accept(byte[] buffer, int offset, int length) throws IOException;
+}
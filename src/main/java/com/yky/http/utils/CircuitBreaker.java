@@ -0,0 +1,173 @@
+package com.yky.http.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个主机的熔断器，由CircuitBreakerPolicy按主机创建
+ * 关闭状态下统计时间窗口内的失败率和慢调用率，超过阈值时打开，打开期间请求直接被拒绝；
+ * 打开一段时间后进入半开状态，放行少量探测请求，全部成功则关闭，有失败则重新打开。状态和计数都是无锁的。
+ * @author wuhualu
+ */
+public class CircuitBreaker {
+
+    private static Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        /**
+         * 正常放行
+         */
+        CLOSED,
+        /**
+         * 拒绝所有请求
+         */
+        OPEN,
+        /**
+         * 放行少量探测请求
+         */
+        HALF_OPEN
+    }
+
+    private final String host;
+
+    private final CircuitBreakerPolicy policy;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+
+    private volatile long openedAt;
+
+    private final AtomicReference<Window> window;
+
+    private final AtomicInteger halfOpenPermits = new AtomicInteger();
+
+    private final AtomicInteger halfOpenSuccesses = new AtomicInteger();
+
+    CircuitBreaker(String host, CircuitBreakerPolicy policy) {
+        this.host = host;
+        this.policy = policy;
+        this.window = new AtomicReference<>(new Window(System.nanoTime()));
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * 请求发送前调用
+     * @return false表示熔断器打开，请求应被拒绝
+     */
+    boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.nanoTime() - openedAt < policy.getOpenNanos()) {
+                return false;
+            }
+            if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                halfOpenSuccesses.set(0);
+                halfOpenPermits.set(policy.getHalfOpenCalls());
+                logger.info("熔断器进入半开状态: {}", host);
+            }
+        }
+
+        int permits;
+        do {
+            permits = halfOpenPermits.get();
+            if (permits <= 0) {
+                return false;
+            }
+        } while (!halfOpenPermits.compareAndSet(permits, permits - 1));
+        return true;
+    }
+
+    /**
+     * 已获取许可但请求最终没有发送时调用，归还半开状态的探测名额
+     */
+    void release() {
+        if (state.get() == State.HALF_OPEN) {
+            halfOpenPermits.incrementAndGet();
+        }
+    }
+
+    /**
+     * 请求完成后调用
+     * @param success 是否成功，IO异常和5xx响应算失败
+     * @param durationNanos 请求耗时
+     */
+    void onResult(boolean success, long durationNanos) {
+        boolean slow = durationNanos >= policy.getSlowCallNanos();
+        State current = state.get();
+
+        if (current == State.HALF_OPEN) {
+            if (!success || slow) {
+                trip(State.HALF_OPEN);
+            } else if (halfOpenSuccesses.incrementAndGet() >= policy.getHalfOpenCalls()
+                    && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+                window.set(new Window(System.nanoTime()));
+                logger.info("熔断器已关闭: {}", host);
+            }
+            return;
+        }
+        if (current != State.CLOSED) {
+            return;
+        }
+
+        Window counts = currentWindow();
+        counts.total.increment();
+        if (!success) {
+            counts.failures.increment();
+        }
+        if (slow) {
+            counts.slowCalls.increment();
+        }
+
+        long total = counts.total.sum();
+        if (total < policy.getMinimumCalls()) {
+            return;
+        }
+        if (counts.failures.sum() >= total * policy.getFailureRateThreshold()
+                || counts.slowCalls.sum() >= total * policy.getSlowCallRateThreshold()) {
+            trip(State.CLOSED);
+        }
+    }
+
+    private void trip(State from) {
+        if (state.compareAndSet(from, State.OPEN)) {
+            openedAt = System.nanoTime();
+            logger.warn("熔断器已打开: {}", host);
+        }
+    }
+
+    /**
+     * 固定时间窗口，过期后换成新的窗口重新计数
+     */
+    private Window currentWindow() {
+        long now = System.nanoTime();
+        Window current = window.get();
+        if (now - current.start >= policy.getWindowNanos()) {
+            Window next = new Window(now);
+            if (window.compareAndSet(current, next)) {
+                return next;
+            }
+            return window.get();
+        }
+        return current;
+    }
+
+    private static class Window {
+        private final long start;
+        private final LongAdder total = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder slowCalls = new LongAdder();
+
+        private Window(long start) {
+            this.start = start;
+        }
+    }
+}
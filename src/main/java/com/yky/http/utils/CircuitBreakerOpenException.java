@@ -0,0 +1,14 @@
+package com.yky.http.utils;
+
+/**
+ * 目标主机的熔断器处于打开状态，请求没有发送
+ * @author wuhualu
+ */
+public class CircuitBreakerOpenException extends RequestRejectedException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitBreakerOpenException(String host) {
+        super("熔断器已打开，请求被拒绝: " + host);
+    }
+}
@@ -0,0 +1,156 @@
+package com.yky.http.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按主机熔断的策略，通过CircuitBreakerPolicy.custom()...build()创建，创建后不可修改
+ * 每个主机(scheme://host:port)有独立的CircuitBreaker，在第一次请求该主机时创建。
+ * IO异常和5xx响应算失败，耗时超过slowCallDuration的请求算慢调用。
+ * @author wuhualu
+ */
+public class CircuitBreakerPolicy {
+
+    private final double failureRateThreshold;
+
+    private final double slowCallRateThreshold;
+
+    private final long slowCallNanos;
+
+    private final int minimumCalls;
+
+    private final long windowNanos;
+
+    private final long openNanos;
+
+    private final int halfOpenCalls;
+
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private CircuitBreakerPolicy(Builder builder) {
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallRateThreshold = builder.slowCallRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(builder.slowCallDuration);
+        this.minimumCalls = builder.minimumCalls;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(builder.window);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(builder.openDuration);
+        this.halfOpenCalls = builder.halfOpenCalls;
+    }
+
+    public static Builder custom() {
+        return new Builder();
+    }
+
+    /**
+     * 获取主机对应的熔断器，没有则创建
+     * @param host scheme://host:port
+     * @return 熔断器
+     */
+    public CircuitBreaker getCircuitBreaker(String host) {
+        CircuitBreaker breaker = breakers.get(host);
+        if (breaker == null) {
+            breaker = breakers.computeIfAbsent(host, key -> new CircuitBreaker(key, this));
+        }
+        return breaker;
+    }
+
+    double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    double getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    long getSlowCallNanos() {
+        return slowCallNanos;
+    }
+
+    int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    long getWindowNanos() {
+        return windowNanos;
+    }
+
+    long getOpenNanos() {
+        return openNanos;
+    }
+
+    int getHalfOpenCalls() {
+        return halfOpenCalls;
+    }
+
+    public static class Builder {
+
+        private double failureRateThreshold = 0.5;
+
+        private double slowCallRateThreshold = 1;
+
+        private long slowCallDuration = 60000;
+
+        private int minimumCalls = 20;
+
+        private long window = 10000;
+
+        private long openDuration = 5000;
+
+        private int halfOpenCalls = 5;
+
+        /**
+         * @param failureRateThreshold 失败率达到该值时打开熔断器，0~1，默认0.5
+         */
+        public Builder setFailureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * @param slowCallRateThreshold 慢调用比例达到该值时打开熔断器，0~1，默认1
+         * @param slowCallDuration 耗时超过该值的请求算慢调用,ms，默认60000
+         */
+        public Builder setSlowCallRateThreshold(double slowCallRateThreshold, long slowCallDuration) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            this.slowCallDuration = slowCallDuration;
+            return this;
+        }
+
+        /**
+         * @param minimumCalls 统计窗口内请求数达到该值后才计算失败率，默认20
+         */
+        public Builder setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * @param window 统计窗口的长度,ms，默认10000
+         */
+        public Builder setWindow(long window) {
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * @param openDuration 熔断器打开后多久进入半开状态,ms，默认5000
+         */
+        public Builder setOpenDuration(long openDuration) {
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        /**
+         * @param halfOpenCalls 半开状态下放行的探测请求数，全部成功后关闭熔断器，默认5
+         */
+        public Builder setHalfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        public CircuitBreakerPolicy build() {
+            return new CircuitBreakerPolicy(this);
+        }
+    }
+}
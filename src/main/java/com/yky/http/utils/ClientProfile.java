@@ -0,0 +1,390 @@
+package com.yky.http.utils;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.message.BasicHeader;
+import org.springframework.util.StringUtils;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 一组主机共用的客户端配置，通过ClientProfile.custom(name)...build()创建，创建后不可修改
+ * RequestConfig和默认请求头在创建时就构造好，发送请求时只需按主机查找，不再每次重新构造。
+ * 通过HttpClientUtils.addProfile注册，没有匹配的主机使用默认配置(HttpClientUtils.setDefaultProfile)。
+ * @author wuhualu
+ */
+public final class ClientProfile {
+
+    /**
+     * 缓存的不同socket超时时间的RequestConfig个数上限，超出后不再缓存
+     */
+    private static final int MAX_CACHED_CONFIGS = 64;
+
+    /**
+     * 默认传递剩余时间的请求头
+     */
+    public static final String DEFAULT_DEADLINE_HEADER = "X-Request-Timeout";
+
+    private final String name;
+
+    private final Set<String> hosts;
+
+    private final int connectTimeout;
+
+    private final int connectionRequestTimeout;
+
+    private final int socketTimeout;
+
+    private final boolean redirectsEnabled;
+
+    private final boolean compressionEnabled;
+
+    private final int requestCompressionThreshold;
+
+    private final int maxPerRoute;
+
+    private final long maxBodySize;
+
+    private final boolean deadlineEnabled;
+
+    private final String deadlineHeader;
+
+    private final Header[] headers;
+
+    private final Map<String, String> headerMap;
+
+    /**
+     * 使用配置中的socket超时时间的RequestConfig
+     */
+    private final RequestConfig requestConfig;
+
+    /**
+     * 调用方指定了socket超时时间时使用的RequestConfig，按超时时间缓存
+     */
+    private final ConcurrentMap<Integer, RequestConfig> requestConfigs = new ConcurrentHashMap<>();
+
+    private ClientProfile(Builder builder) {
+        this.name = builder.name;
+        this.hosts = Collections.unmodifiableSet(new LinkedHashSet<>(builder.hosts));
+        this.connectTimeout = builder.connectTimeout;
+        this.connectionRequestTimeout = builder.connectionRequestTimeout;
+        this.socketTimeout = builder.socketTimeout;
+        this.redirectsEnabled = builder.redirectsEnabled;
+        this.compressionEnabled = builder.compressionEnabled;
+        this.requestCompressionThreshold = builder.requestCompressionThreshold;
+        this.maxPerRoute = builder.maxPerRoute;
+        this.maxBodySize = builder.maxBodySize;
+        this.deadlineEnabled = builder.deadlineEnabled;
+        this.deadlineHeader = StringUtils.isEmpty(builder.deadlineHeader) ? null : builder.deadlineHeader;
+        this.headerMap = Collections.unmodifiableMap(new LinkedHashMap<>(builder.headers));
+
+        List<Header> list = new ArrayList<>(headerMap.size());
+        for (Map.Entry<String, String> entry : headerMap.entrySet()) {
+            list.add(new BasicHeader(entry.getKey(), entry.getValue()));
+        }
+        this.headers = list.toArray(new Header[0]);
+        this.requestConfig = createRequestConfig(socketTimeout);
+    }
+
+    /**
+     * @param name 配置名称，用于日志和区分不同的配置
+     */
+    public static Builder custom(String name) {
+        return new Builder(name);
+    }
+
+    /**
+     * 获取RequestConfig，相同的超时时间返回同一个实例
+     * @param timeOut socket超时时间,ms，为null时使用配置中的值
+     */
+    RequestConfig getRequestConfig(Integer timeOut) {
+        if (timeOut == null || timeOut == socketTimeout) {
+            return requestConfig;
+        }
+        RequestConfig config = requestConfigs.get(timeOut);
+        if (config == null) {
+            config = createRequestConfig(timeOut);
+            if (requestConfigs.size() < MAX_CACHED_CONFIGS) {
+                requestConfigs.putIfAbsent(timeOut, config);
+            }
+        }
+        return config;
+    }
+
+    private RequestConfig createRequestConfig(int timeOut) {
+        return RequestConfig.custom()
+                //设置连接超时,单位ms
+                .setConnectTimeout(connectTimeout)
+                //设置从连接池获取连接的超时时间,单位ms
+                .setConnectionRequestTimeout(connectionRequestTimeout)
+                //socket读写超时时间,单位ms
+                .setSocketTimeout(timeOut)
+                //设置是否允许重定向
+                .setRedirectsEnabled(redirectsEnabled)
+                //是否发送Accept-Encoding并自动解压响应
+                .setContentCompressionEnabled(compressionEnabled)
+                .build();
+    }
+
+    /**
+     * 设置RequestConfig，补上请求中没有的默认请求头(调用方设置的请求头优先)，请求体超过阈值时改为gzip压缩发送
+     * @param timeOut socket超时时间,ms，为null时使用配置中的值
+     */
+    void apply(Integer timeOut, HttpRequestBase requestBase) {
+        for (Header header : headers) {
+            if (!requestBase.containsHeader(header.getName())) {
+                requestBase.addHeader(header);
+            }
+        }
+        requestBase.setConfig(getRequestConfig(timeOut));
+
+        if (requestCompressionThreshold >= 0 && requestBase instanceof HttpEntityEnclosingRequest) {
+            HttpEntityEnclosingRequest request = (HttpEntityEnclosingRequest) requestBase;
+            if (CompressingHttpEntity.isCompressible(request.getEntity(), requestCompressionThreshold)) {
+                request.setEntity(new CompressingHttpEntity(request.getEntity()));
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return 使用该配置的主机，scheme://host:port
+     */
+    public Set<String> getHosts() {
+        return hosts;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public boolean isRedirectsEnabled() {
+        return redirectsEnabled;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    /**
+     * @return 请求体不小于该长度时gzip压缩发送，-1表示不压缩
+     */
+    public int getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    /**
+     * @return 每个主机的最大连接数，0表示使用连接池的默认值
+     */
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    /**
+     * @return 读取为字符串或对象的响应体的大小上限,字节，-1表示不限制
+     */
+    public long getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    /**
+     * @return 调用方的超时时间是否作为整个调用的截止时间
+     */
+    public boolean isDeadlineEnabled() {
+        return deadlineEnabled;
+    }
+
+    /**
+     * @return 向下游传递剩余时间(ms)的请求头，null表示不传递
+     */
+    public String getDeadlineHeader() {
+        return deadlineHeader;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headerMap;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientProfile{name=" + name + ", hosts=" + hosts + ", connectTimeout=" + connectTimeout
+                + ", connectionRequestTimeout=" + connectionRequestTimeout + ", socketTimeout=" + socketTimeout
+                + ", redirectsEnabled=" + redirectsEnabled + ", compressionEnabled=" + compressionEnabled
+                + ", requestCompressionThreshold=" + requestCompressionThreshold
+                + ", maxPerRoute=" + maxPerRoute + ", maxBodySize=" + maxBodySize
+                + ", deadlineEnabled=" + deadlineEnabled + ", headers=" + headerMap.keySet() + "}";
+    }
+
+    public static class Builder {
+
+        private final String name;
+
+        private final Set<String> hosts = new LinkedHashSet<>();
+
+        private int connectTimeout = 5000;
+
+        private int connectionRequestTimeout = 5000;
+
+        private int socketTimeout = -1;
+
+        private boolean redirectsEnabled = true;
+
+        private boolean compressionEnabled = true;
+
+        private int requestCompressionThreshold = -1;
+
+        private int maxPerRoute;
+
+        private long maxBodySize = -1;
+
+        private boolean deadlineEnabled;
+
+        private String deadlineHeader = DEFAULT_DEADLINE_HEADER;
+
+        private final Map<String, String> headers = new LinkedHashMap<>();
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param hosts 使用该配置的主机，如http://order-service:8080，路径部分会被忽略，没有端口时使用默认端口
+         */
+        public Builder addHosts(String... hosts) {
+            for (String host : hosts) {
+                this.hosts.add(HttpClientManager.withDefaultPort(URIUtils.extractHost(URI.create(host))).toURI());
+            }
+            return this;
+        }
+
+        /**
+         * @param connectTimeout 建立连接的超时时间,ms，默认5000
+         */
+        public Builder setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * @param connectionRequestTimeout 从连接池获取连接的超时时间,ms，默认5000
+         */
+        public Builder setConnectionRequestTimeout(int connectionRequestTimeout) {
+            this.connectionRequestTimeout = connectionRequestTimeout;
+            return this;
+        }
+
+        /**
+         * @param socketTimeout 调用方没有指定超时时间时使用的socket超时时间,ms，默认-1(系统默认)
+         */
+        public Builder setSocketTimeout(int socketTimeout) {
+            this.socketTimeout = socketTimeout;
+            return this;
+        }
+
+        /**
+         * @param redirectsEnabled 是否自动重定向，默认true
+         */
+        public Builder setRedirectsEnabled(boolean redirectsEnabled) {
+            this.redirectsEnabled = redirectsEnabled;
+            return this;
+        }
+
+        /**
+         * @param compressionEnabled 是否请求压缩的响应(Accept-Encoding)并自动解压，默认true
+         */
+        public Builder setCompressionEnabled(boolean compressionEnabled) {
+            this.compressionEnabled = compressionEnabled;
+            return this;
+        }
+
+        /**
+         * 开启请求体压缩，需要服务端支持Content-Encoding: gzip的请求。只压缩json、xml、文本和表单，长度未知的请求体总是压缩
+         * @param requestCompressionThreshold 请求体不小于该长度(字节)时gzip压缩发送，默认-1不压缩
+         */
+        public Builder setRequestCompressionThreshold(int requestCompressionThreshold) {
+            this.requestCompressionThreshold = requestCompressionThreshold;
+            return this;
+        }
+
+        /**
+         * @param maxPerRoute 每个主机的最大连接数，默认0，使用连接池的默认值
+         */
+        public Builder setMaxPerRoute(int maxPerRoute) {
+            this.maxPerRoute = maxPerRoute;
+            return this;
+        }
+
+        /**
+         * 响应体读取为字符串或对象时的大小上限，超过时中止请求，请求方法返回null并记录ResponseTooLargeException
+         * 以流的形式读取或下载文件的方法不受限制
+         * @param maxBodySize 响应体的大小上限(解压后),字节，默认-1不限制
+         */
+        public Builder setMaxBodySize(long maxBodySize) {
+            this.maxBodySize = maxBodySize;
+            return this;
+        }
+
+        /**
+         * 开启后调用方指定的超时时间(没有指定时为socketTimeout)不再只是socket超时时间，而是整个调用的截止时间：
+         * 从连接池获取连接、建立连接、每次读取、重定向和重试都只能使用剩余的时间，到期时中止请求并抛出DeadlineExceededException
+         * @param deadlineEnabled 默认false
+         */
+        public Builder setDeadlineEnabled(boolean deadlineEnabled) {
+            this.deadlineEnabled = deadlineEnabled;
+            return this;
+        }
+
+        /**
+         * 有截止时间的请求通过该请求头把剩余时间(ms)传给下游，下游可以据此放弃已经来不及返回的处理
+         * @param deadlineHeader 请求头名称，默认X-Request-Timeout，为空时不传递
+         */
+        public Builder setDeadlineHeader(String deadlineHeader) {
+            this.deadlineHeader = deadlineHeader;
+            return this;
+        }
+
+        /**
+         * 添加默认请求头，请求中已有同名的请求头时不会覆盖
+         */
+        public Builder addHeader(String name, String value) {
+            if (!(StringUtils.isEmpty(name) || StringUtils.isEmpty(value))) {
+                this.headers.put(name, value);
+            }
+            return this;
+        }
+
+        public Builder addHeaders(Map<String, String> headers) {
+            if (headers != null) {
+                headers.forEach(this::addHeader);
+            }
+            return this;
+        }
+
+        public ClientProfile build() {
+            return new ClientProfile(this);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 已注册的ClientProfile，按主机查找
+ * @author wuhualu
+ */
+class ClientProfiles {
+
+    private static volatile ClientProfile defaultProfile = ClientProfile.custom("default").build();
+
+    private static final ConcurrentMap<String, ClientProfile> PROFILES = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<String, ClientProfile> HOSTS = new ConcurrentHashMap<>();
+
+    private ClientProfiles() {
+    }
+
+    /**
+     * 查找请求对应的配置，没有注册任何主机时不解析URI
+     */
+    static ClientProfile get(HttpRequestBase requestBase) {
+        return get(requestBase.getURI());
+    }
+
+    static ClientProfile get(URI uri) {
+        if (HOSTS.isEmpty()) {
+            return defaultProfile;
+        }
+        HttpHost host = uri == null ? null : URIUtils.extractHost(uri);
+        //注册的主机都带端口，http://svc/x和http://svc:80匹配
+        ClientProfile profile = host == null ? null : HOSTS.get(HttpClientManager.withDefaultPort(host).toURI());
+        return profile == null ? defaultProfile : profile;
+    }
+
+    static ClientProfile getDefault() {
+        return defaultProfile;
+    }
+
+    static void setDefault(ClientProfile profile) {
+        defaultProfile = profile == null ? ClientProfile.custom("default").build() : profile;
+    }
+
+    static synchronized void add(ClientProfile profile) {
+        remove(profile.getName());
+        PROFILES.put(profile.getName(), profile);
+        for (String host : profile.getHosts()) {
+            HOSTS.put(host, profile);
+        }
+        if (profile.getMaxPerRoute() > 0) {
+            HttpClientManager.setMaxPerRoute(HttpClientManager.getConnectionManager(), profile.getHosts(), profile.getMaxPerRoute());
+        }
+    }
+
+    static synchronized void remove(String name) {
+        ClientProfile old = PROFILES.remove(name);
+        if (old != null) {
+            HOSTS.values().removeIf(profile -> profile == old);
+        }
+    }
+
+    static ClientProfile get(String name) {
+        return PROFILES.get(name);
+    }
+
+    static Collection<ClientProfile> getAll() {
+        return Collections.unmodifiableCollection(new ArrayList<>(PROFILES.values()));
+    }
+
+    /**
+     * 连接池重建后重新设置各主机的最大连接数
+     */
+    static void applyMaxPerRoute(PoolingHttpClientConnectionManager manager) {
+        for (ClientProfile profile : PROFILES.values()) {
+            if (profile.getMaxPerRoute() > 0) {
+                HttpClientManager.setMaxPerRoute(manager, profile.getHosts(), profile.getMaxPerRoute());
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.yky.http.utils;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHeader;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 以gzip压缩发送的请求体，边写边压缩，不会在内存中保留压缩后的整个请求体
+ * 压缩后长度未知，以chunked方式发送。开启HttpMetrics时记录压缩前后的字节数。
+ * 原请求体可重复读取时，getContent每次返回一个新的边读边压缩的流，和writeTo写出的内容相同。
+ * @author wuhualu
+ */
+class CompressingHttpEntity extends HttpEntityWrapper {
+
+    private static final Header CONTENT_ENCODING = new BasicHeader("Content-Encoding", "gzip");
+
+    CompressingHttpEntity(HttpEntity wrappedEntity) {
+        super(wrappedEntity);
+    }
+
+    /**
+     * 是否值得压缩：文本类型(json、xml、表单等)，且长度未知或不小于threshold
+     * @param threshold 最小压缩长度，小于0表示不压缩
+     */
+    static boolean isCompressible(HttpEntity entity, int threshold) {
+        if (threshold < 0 || entity == null || entity.getContentEncoding() != null) {
+            return false;
+        }
+        long length = entity.getContentLength();
+        if (length >= 0 && length < threshold) {
+            return false;
+        }
+        Header contentType = entity.getContentType();
+        if (contentType == null) {
+            return false;
+        }
+        String mimeType = contentType.getValue().toLowerCase(Locale.ROOT);
+        return mimeType.startsWith("text/") || mimeType.contains("json") || mimeType.contains("xml")
+                || mimeType.startsWith(ContentType.APPLICATION_FORM_URLENCODED.getMimeType())
+                || mimeType.contains("javascript");
+    }
+
+    @Override
+    public Header getContentEncoding() {
+        return CONTENT_ENCODING;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public boolean isChunked() {
+        return true;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return new GzipInputStream(wrappedEntity.getContent());
+    }
+
+    /**
+     * @return 压缩前的请求体
+     */
+    HttpEntity getUncompressedEntity() {
+        return wrappedEntity;
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        CountingOutputStream compressed = new CountingOutputStream(outStream);
+        GzipOutputStream gzip = new GzipOutputStream(compressed);
+        CountingOutputStream uncompressed = new CountingOutputStream(gzip);
+        try {
+            wrappedEntity.writeTo(uncompressed);
+            //只写完gzip尾部，不关闭底层的连接输出流
+            gzip.finish();
+        } finally {
+            gzip.end();
+        }
+
+        RequestMetrics metrics = RequestMetrics.current();
+        if (metrics != null) {
+            metrics.onCompressedBody(uncompressed.count, compressed.count);
+        }
+    }
+
+    /**
+     * 读取时压缩的gzip流，依次输出gzip头、deflate数据和包含CRC32、原始长度的尾部
+     */
+    private static class GzipInputStream extends InputStream {
+
+        private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+        private final InputStream in;
+
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+        private final CRC32 crc = new CRC32();
+
+        private final byte[] input = new byte[HttpClientUtils.BUFFER_SIZE];
+
+        /**
+         * 待输出的gzip头或尾部
+         */
+        private byte[] pending = HEADER;
+
+        private int pendingOffset;
+
+        private boolean eof;
+
+        private boolean trailer;
+
+        private GzipInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                if (pendingOffset < pending.length) {
+                    int n = Math.min(len, pending.length - pendingOffset);
+                    System.arraycopy(pending, pendingOffset, b, off, n);
+                    pendingOffset += n;
+                    return n;
+                }
+                if (trailer) {
+                    return -1;
+                }
+                if (deflater.finished()) {
+                    pending = trailer();
+                    pendingOffset = 0;
+                    trailer = true;
+                    continue;
+                }
+                if (!eof && deflater.needsInput()) {
+                    int n = in.read(input);
+                    if (n == -1) {
+                        eof = true;
+                        deflater.finish();
+                    } else {
+                        crc.update(input, 0, n);
+                        deflater.setInput(input, 0, n);
+                    }
+                }
+                int n = deflater.deflate(b, off, len);
+                if (n > 0) {
+                    return n;
+                }
+            }
+        }
+
+        private byte[] trailer() {
+            long crcValue = crc.getValue();
+            long size = deflater.getBytesRead();
+            byte[] bytes = new byte[8];
+            for (int i = 0; i < 4; i++) {
+                bytes[i] = (byte) (crcValue >> (i * 8));
+                bytes[i + 4] = (byte) (size >> (i * 8));
+            }
+            return bytes;
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            in.close();
+        }
+    }
+
+    /**
+     * 不关闭底层流也能释放Deflater的GZIPOutputStream，finish不会释放Deflater占用的native内存
+     */
+    private static class GzipOutputStream extends GZIPOutputStream {
+
+        private GzipOutputStream(OutputStream out) throws IOException {
+            super(out, HttpClientUtils.BUFFER_SIZE);
+        }
+
+        private void end() {
+            def.end();
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() {
+            //由外层负责关闭
+        }
+    }
+}
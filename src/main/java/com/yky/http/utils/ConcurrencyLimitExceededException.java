@@ -0,0 +1,14 @@
+package com.yky.http.utils;
+
+/**
+ * 目标路由正在进行的请求数已达到自适应并发上限，请求没有发送
+ * @author wuhualu
+ */
+public class ConcurrencyLimitExceededException extends RequestRejectedException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ConcurrencyLimitExceededException(String route, int limit) {
+        super("并发请求数已达上限" + limit + "，请求被拒绝: " + route);
+    }
+}
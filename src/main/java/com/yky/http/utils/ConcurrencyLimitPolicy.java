@@ -0,0 +1,133 @@
+package com.yky.http.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按路由自适应限制并发数的策略，通过ConcurrencyLimitPolicy.custom()...build()创建，创建后不可修改
+ * 每个路由(scheme://host:port)有独立的AdaptiveConcurrencyLimiter，在第一次请求该路由时创建。
+ * 请求从发送到响应体读完或关闭都占用一个并发名额，调整上限使用的耗时按收到响应头计算。
+ * @author wuhualu
+ */
+public class ConcurrencyLimitPolicy {
+
+    private final int initialLimit;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double backoffRatio;
+
+    private final double tolerance;
+
+    private final long baselineResetNanos;
+
+    private final ConcurrentMap<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    private ConcurrencyLimitPolicy(Builder builder) {
+        this.initialLimit = builder.initialLimit;
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.backoffRatio = builder.backoffRatio;
+        this.tolerance = builder.tolerance;
+        this.baselineResetNanos = TimeUnit.MILLISECONDS.toNanos(builder.baselineReset);
+    }
+
+    public static Builder custom() {
+        return new Builder();
+    }
+
+    /**
+     * 获取路由对应的限流器，没有则创建
+     * @param route scheme://host:port
+     * @return 限流器
+     */
+    public AdaptiveConcurrencyLimiter getLimiter(String route) {
+        AdaptiveConcurrencyLimiter limiter = limiters.get(route);
+        if (limiter == null) {
+            limiter = limiters.computeIfAbsent(route, key -> new AdaptiveConcurrencyLimiter(this));
+        }
+        return limiter;
+    }
+
+    int getInitialLimit() {
+        return initialLimit;
+    }
+
+    int getMinLimit() {
+        return minLimit;
+    }
+
+    int getMaxLimit() {
+        return maxLimit;
+    }
+
+    double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    double getTolerance() {
+        return tolerance;
+    }
+
+    long getBaselineResetNanos() {
+        return baselineResetNanos;
+    }
+
+    public static class Builder {
+
+        private int initialLimit = 20;
+
+        private int minLimit = 1;
+
+        private int maxLimit = HttpClientManager.DEFAULT_MAX_PER_ROUTE;
+
+        private double backoffRatio = 0.9;
+
+        private double tolerance = 2;
+
+        private long baselineReset = 60000;
+
+        /**
+         * @param initialLimit 初始并发数，默认20
+         * @param minLimit 最小并发数，默认1
+         * @param maxLimit 最大并发数，默认与每个路由的最大连接数相同
+         */
+        public Builder setLimit(int initialLimit, int minLimit, int maxLimit) {
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * @param backoffRatio 请求失败或变慢时并发数乘以该值，0~1，默认0.9
+         */
+        public Builder setBackoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * @param tolerance 请求耗时超过最小耗时的多少倍算变慢，默认2
+         */
+        public Builder setTolerance(double tolerance) {
+            this.tolerance = tolerance;
+            return this;
+        }
+
+        /**
+         * @param baselineReset 最小耗时的重新统计周期,ms，使基准能跟随服务端的正常耗时变化，默认60000
+         */
+        public Builder setBaselineReset(long baselineReset) {
+            this.baselineReset = baselineReset;
+            return this;
+        }
+
+        public ConcurrencyLimitPolicy build() {
+            return new ConcurrencyLimitPolicy(this);
+        }
+    }
+}
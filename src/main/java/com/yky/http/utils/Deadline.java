@@ -0,0 +1,82 @@
+package com.yky.http.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 一次调用的截止时间，基于System.nanoTime()，不受系统时间调整的影响
+ * 从连接池获取连接、DNS、建立连接、TLS握手、读取响应、重定向和重试共用同一个截止时间，
+ * 而不是各自使用独立的超时时间。嵌套设置时取更早的截止时间。
+ * @author wuhualu
+ */
+final class Deadline {
+
+    /**
+     * 当前线程的调用通过HttpClientUtils.withDeadline设置的截止时间
+     */
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * @param timeoutMillis 从现在开始的剩余时间,ms
+     */
+    static Deadline after(long timeoutMillis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    /**
+     * @return 当前线程设置的截止时间，没有设置时返回null
+     */
+    static Deadline current() {
+        return CURRENT.get();
+    }
+
+    static <T> T with(Deadline deadline, Supplier<T> call) {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(deadline.min(previous));
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return 两个截止时间中更早的一个，other为null时返回自身
+     */
+    Deadline min(Deadline other) {
+        return other == null || deadlineNanos - other.deadlineNanos <= 0 ? this : other;
+    }
+
+    /**
+     * @return 剩余时间,ns，已经超过时返回0
+     */
+    long remainingNanos() {
+        return Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    /**
+     * @return 剩余时间,ms，已经超过时返回0
+     */
+    long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(remainingNanos());
+    }
+
+    boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline{remaining=" + remainingMillis() + "ms}";
+    }
+}
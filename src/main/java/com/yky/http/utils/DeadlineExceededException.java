@@ -0,0 +1,22 @@
+package com.yky.http.utils;
+
+import java.io.InterruptedIOException;
+
+/**
+ * 调用超过截止时间时抛出的异常，请求已被中止，不会再重试
+ * 截止时间通过HttpClientUtils.withDeadline或ClientProfile.Builder.setDeadlineEnabled设置
+ * @author wuhualu
+ */
+public class DeadlineExceededException extends InterruptedIOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message);
+        initCause(cause);
+    }
+}
@@ -0,0 +1,155 @@
+package com.yky.http.utils;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * LoadBalancer中的一个服务实例，记录进行中的请求数、peak EWMA耗时和连续失败次数
+ * @author wuhualu
+ */
+public class Endpoint {
+
+    private final String host;
+
+    private final LoadBalancer balancer;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * 耗时的指数加权移动平均,ns，变慢时立即取新值(peak)，变快时按decay逐渐下降
+     */
+    private double ewmaNanos;
+
+    private long ewmaUpdatedAt = System.nanoTime();
+
+    private volatile long ejectedUntil;
+
+    private volatile int ejections;
+
+    Endpoint(String host, LoadBalancer balancer) {
+        this.host = host;
+        this.balancer = balancer;
+    }
+
+    /**
+     * @return scheme://host:port
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return 进行中的请求数
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * @return 耗时的移动平均,ms
+     */
+    public synchronized double getEwmaMillis() {
+        return ewmaNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /**
+     * @return 是否因连续失败被暂时摘除
+     */
+    public boolean isEjected() {
+        return isEjected(System.nanoTime());
+    }
+
+    boolean isEjected(long now) {
+        long until = ejectedUntil;
+        return until != 0 && now - until < 0;
+    }
+
+    /**
+     * 负载：耗时的移动平均乘以进行中的请求数，没有耗时数据的实例优先
+     */
+    synchronized double cost(long now) {
+        return decayedEwma(now) * (outstanding.get() + 1);
+    }
+
+    private double decayedEwma(long now) {
+        long elapsed = now - ewmaUpdatedAt;
+        return elapsed <= 0 ? ewmaNanos : ewmaNanos * Math.exp(-(double) elapsed / balancer.getDecayNanos());
+    }
+
+    /**
+     * 将逻辑地址lb://name/path?query转换为该实例的地址
+     */
+    URI resolve(URI logical) {
+        String path = logical.getRawPath();
+        String query = logical.getRawQuery();
+        StringBuilder builder = new StringBuilder(host.length() + (path == null ? 1 : path.length()) + (query == null ? 0 : query.length() + 1));
+        builder.append(host).append(path == null || path.isEmpty() ? "/" : path);
+        if (query != null) {
+            builder.append('?').append(query);
+        }
+        return URI.create(builder.toString());
+    }
+
+    void start() {
+        outstanding.incrementAndGet();
+    }
+
+    /**
+     * 选中后请求没有发送(如被熔断器拒绝)时调用
+     */
+    void cancel() {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * 请求完成(收到响应头或失败)时调用
+     * @param success IO异常和5xx响应算失败
+     * @param latencyNanos 耗时
+     */
+    void complete(boolean success, long latencyNanos) {
+        outstanding.decrementAndGet();
+        observe(latencyNanos);
+
+        if (success) {
+            if (consecutiveFailures.get() != 0) {
+                consecutiveFailures.set(0);
+            }
+            if (ejections != 0) {
+                ejections = 0;
+            }
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= balancer.getConsecutiveFailures()) {
+            balancer.eject(this);
+        }
+    }
+
+    private synchronized void observe(long latencyNanos) {
+        long now = System.nanoTime();
+        double decayed = decayedEwma(now);
+        ewmaNanos = latencyNanos > decayed ? latencyNanos : decayed + (latencyNanos - decayed) * balancer.getAlpha();
+        ewmaUpdatedAt = now;
+    }
+
+    /**
+     * 摘除一段时间，时长随连续被摘除的次数增加
+     */
+    synchronized void eject(long now) {
+        ejections = Math.min(ejections + 1, LoadBalancer.MAX_EJECTION_MULTIPLIER);
+        ejectedUntil = now + balancer.getEjectionNanos() * ejections;
+        consecutiveFailures.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "Endpoint{" + host + ", outstanding=" + outstanding.get() + ", ewma=" + String.format("%.1f", getEwmaMillis())
+                + "ms, ejected=" + isEjected() + "}";
+    }
+}
@@ -1,26 +1,115 @@
 package com.yky.http.utils;
 
+import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.JSONReader;
+import com.alibaba.fastjson.TypeReference;
+import com.alibaba.fastjson.serializer.SerializeConfig;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
 
 
 public class FastJsonUtils {
 
     /**
-     * 将任意java对象序列化成json
+     * 复用同一个SerializeConfig，每个类的序列化器只会生成一次并缓存在里面
+     */
+    private static final SerializeConfig SERIALIZE_CONFIG = SerializeConfig.getGlobalInstance();
+
+    private static final SerializerFeature[] PRETTY_FEATURES = {SerializerFeature.PrettyFormat};
+
+    private static final SerializerFeature[] COMPACT_FEATURES = {};
+
+    /**
+     * 是否输出格式化的json，只建议调试时打开
+     */
+    private static volatile boolean prettyFormat = false;
+
+    /**
+     * 设置默认是否输出格式化的json，请求体中的空白字符也会发送出去，只建议调试时打开
+     * @param prettyFormat true为格式化输出
+     */
+    public static void setPrettyFormat(boolean prettyFormat) {
+        FastJsonUtils.prettyFormat = prettyFormat;
+    }
+
+    /**
+     * 将任意java对象序列化成json，默认输出紧凑格式
      * @param entity 要序列化的对象
      * @return jsonString
      */
     public static <T> String entityToJsonString(T entity) {
+        return entityToJsonString(entity, prettyFormat);
+    }
+
+    /**
+     * 将任意java对象序列化成json
+     * @param entity 要序列化的对象
+     * @param prettyFormat 是否格式化输出
+     * @return jsonString
+     */
+    public static <T> String entityToJsonString(T entity, boolean prettyFormat) {
         if(entity == null) {
             return "";
         }
 
-        //beautiful JSON
-        String jsonString = JSONObject.toJSONString(entity,true);
+        String jsonString = JSON.toJSONString(entity, SERIALIZE_CONFIG, features(prettyFormat));
 
         return jsonString;
     }
 
+    /**
+     * 将任意java对象直接序列化成UTF-8编码的json字节，不经过中间的字符串
+     * fastjson内部使用线程本地的缓冲区，序列化时不会每次都分配新的缓冲区
+     * @param entity 要序列化的对象
+     * @return json字节，对象为null时返回空数组
+     */
+    public static <T> byte[] entityToJsonBytes(T entity) {
+        if(entity == null) {
+            return new byte[0];
+        }
+
+        return JSON.toJSONBytes(StandardCharsets.UTF_8, entity, SERIALIZE_CONFIG, null, null,
+                JSON.DEFAULT_GENERATE_FEATURE, features(prettyFormat));
+    }
+
+    /**
+     * 将任意java对象序列化成UTF-8编码的json并直接写入输出流
+     * @param entity 要序列化的对象
+     * @param outputStream 输出流，不会被关闭
+     * @return 写入的字节数
+     */
+    public static <T> int writeJsonTo(T entity, OutputStream outputStream) throws IOException {
+        return writeJsonTo(entity, outputStream, prettyFormat);
+    }
+
+    /**
+     * 将任意java对象序列化成UTF-8编码的json并直接写入输出流
+     * @param entity 要序列化的对象
+     * @param outputStream 输出流，不会被关闭
+     * @param prettyFormat 是否格式化输出
+     * @return 写入的字节数
+     */
+    public static <T> int writeJsonTo(T entity, OutputStream outputStream, boolean prettyFormat) throws IOException {
+        return JSON.writeJSONString(outputStream, StandardCharsets.UTF_8, entity, SERIALIZE_CONFIG, null, null,
+                JSON.DEFAULT_GENERATE_FEATURE, features(prettyFormat));
+    }
+
+    private static SerializerFeature[] features(boolean prettyFormat) {
+        return prettyFormat ? PRETTY_FEATURES : COMPACT_FEATURES;
+    }
+
     /**
      * json字符串转换为任意java对象
      * 支持转换成集合
@@ -34,4 +123,92 @@ public class FastJsonUtils {
 
         return entity;
     }
+
+    /**
+     * 边读字节流边解析json，只占用JSONReader的字符缓冲区，不会把整个流先读成字符串
+     * @param inputStream json字节流，不会被关闭
+     * @param charset 编码
+     * @param type 目标类型，可以是Class或TypeReference.getType()得到的泛型类型
+     * @param <T>
+     * @return 流为空时返回null
+     */
+    public static <T> T jsonStreamToEntity(InputStream inputStream, Charset charset, Type type) throws IOException {
+        //JSON.parseObject(InputStream...)会先把整个流读成字符串，这里改用JSONReader
+        PushbackReader in = new PushbackReader(new InputStreamReader(inputStream, charset), 1);
+        int first = in.read();
+        if (first == -1) {
+            return null;
+        }
+        in.unread(first);
+        //JSONReader关闭时才会把字符缓冲区还给ThreadLocal，底层的流由调用方负责关闭
+        try (JSONReader reader = new JSONReader(new NonClosingReader(in))) {
+            return reader.readObject(type);
+        }
+    }
+
+    /**
+     * 从字节数组的一部分解析json
+     * @param bytes json字节
+     * @param offset 起始位置
+     * @param length 长度
+     * @param charset 编码
+     * @param type 目标类型，可以是Class或TypeReference.getType()得到的泛型类型
+     * @param <T>
+     * @return 长度为0时返回null
+     */
+    public static <T> T jsonBytesToEntity(byte[] bytes, int offset, int length, Charset charset, Type type) {
+        return JSON.parseObject(bytes, offset, length, charset, type);
+    }
+
+    /**
+     * 边读字节流边解析json，支持List&lt;User&gt;这样的泛型集合
+     * @param inputStream json字节流，不会被关闭
+     * @param charset 编码
+     * @param typeReference 目标类型，如new TypeReference&lt;List&lt;User&gt;&gt;(){}
+     * @param <T>
+     * @return 流为空时返回null
+     */
+    public static <T> T jsonStreamToEntity(InputStream inputStream, Charset charset, TypeReference<T> typeReference) throws IOException {
+        return jsonStreamToEntity(inputStream, charset, typeReference.getType());
+    }
+
+    /**
+     * 逐个解析json数组中的元素，适用于很大的数组，不会把整个数组读入内存
+     * @param inputStream json数组的字节流，不会被关闭
+     * @param charset 编码
+     * @param type 元素类型
+     * @param consumer 每解析出一个元素就回调一次
+     * @param <T>
+     * @return 元素个数
+     */
+    public static <T> long jsonArrayStreamToEntities(InputStream inputStream, Charset charset, Type type, Consumer<T> consumer) {
+        long count = 0;
+
+        //JSONReader关闭时才会把字符缓冲区还给ThreadLocal，底层的流由调用方负责关闭
+        try (JSONReader reader = new JSONReader(new NonClosingReader(new InputStreamReader(inputStream, charset)))) {
+            reader.startArray();
+            while (reader.hasNext()) {
+                T element = reader.readObject(type);
+                consumer.accept(element);
+                count++;
+            }
+            reader.endArray();
+        }
+
+        return count;
+    }
+
+    /**
+     * close时不关闭底层流的Reader
+     */
+    private static class NonClosingReader extends FilterReader {
+
+        private NonClosingReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
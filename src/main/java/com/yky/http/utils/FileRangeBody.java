@@ -0,0 +1,105 @@
+package com.yky.http.utils;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * multipart上传的文件内容，可以只上传文件的一段
+ * 上传时由FileChannel.transferTo直接把文件内容写到输出流，不需要先把文件读到byte数组里
+ * @author wuhualu
+ */
+public class FileRangeBody extends AbstractContentBody {
+
+    /**
+     * 每次transferTo的最大字节数
+     */
+    private static final long TRANSFER_SIZE = 1024 * 1024;
+
+    private final Path path;
+
+    private final long position;
+
+    private final long length;
+
+    private final String filename;
+
+    public FileRangeBody(Path path, long position, long length, ContentType contentType, String filename) {
+        super(contentType);
+        this.path = path;
+        this.position = position;
+        this.length = length;
+        this.filename = filename;
+    }
+
+    /**
+     * 上传整个文件，文件名做URLEncode防止服务端收到的文件名乱码
+     * @param path 文件路径
+     * @return 文件内容
+     * @throws IOException 文件不存在或不可读
+     */
+    public static FileRangeBody of(Path path) throws IOException {
+        //文件内容在发送时才读取，这里先检查，避免上传到一半才失败
+        if (!Files.isReadable(path)) {
+            throw new AccessDeniedException(path.toString(), null, "文件不可读");
+        }
+        return of(path, 0, Files.size(path));
+    }
+
+    /**
+     * 上传文件的一段，文件名做URLEncode防止服务端收到的文件名乱码
+     * @param path 文件路径
+     * @param position 起始位置
+     * @param length 长度
+     * @return 文件内容
+     */
+    public static FileRangeBody of(Path path, long position, long length) throws UnsupportedEncodingException {
+        String filename = URLEncoder.encode(path.getFileName().toString(), "utf-8");
+        return new FileRangeBody(path, position, length, ContentType.DEFAULT_BINARY, filename);
+    }
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        //输出流不能被关闭，这里只关闭文件
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long current = position;
+            long end = position + length;
+            while (current < end) {
+                long n = fileChannel.transferTo(current, Math.min(TRANSFER_SIZE, end - current), target);
+                if (n <= 0) {
+                    throw new IOException("文件在上传过程中被截断: " + path);
+                }
+                current += n;
+            }
+        }
+        out.flush();
+    }
+
+    @Override
+    public String getTransferEncoding() {
+        return MIME.ENC_BINARY;
+    }
+
+    @Override
+    public long getContentLength() {
+        return length;
+    }
+}
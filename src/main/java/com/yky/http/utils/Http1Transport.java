@@ -0,0 +1,24 @@
+package com.yky.http.utils;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+
+import java.io.IOException;
+
+/**
+ * 默认的传输层，使用HttpClientManager中共享的HTTP/1.1连接池
+ * @author wuhualu
+ */
+public class Http1Transport implements HttpTransport {
+
+    public static final Http1Transport INSTANCE = new Http1Transport();
+
+    private Http1Transport() {
+    }
+
+    @Override
+    public CloseableHttpResponse execute(HttpRequestBase request, HttpClientContext context) throws IOException {
+        return HttpClientManager.getHttpClient().execute(request, context);
+    }
+}
@@ -0,0 +1,192 @@
+package com.yky.http.utils;
+
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.nio.support.classic.SharedInputBuffer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 收到响应头后立即交给调用方，响应体通过有界缓冲区以流的形式读取
+ * 调用方读取得慢时不再扩大流控窗口，服务端会暂停发送，内存占用不超过缓冲区大小。
+ * @author wuhualu
+ */
+class Http2ResponseConsumer implements AsyncResponseConsumer<Void> {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 提前关闭后最多丢弃的响应体字节数，超过后不再扩大流控窗口，服务端暂停发送
+     */
+    static final long DISCARD_LIMIT = 1024 * 1024;
+
+    private final SharedInputBuffer buffer = new SharedInputBuffer(BUFFER_SIZE);
+
+    private final CompletableFuture<HttpResponse> headers = new CompletableFuture<>();
+
+    private volatile EntityDetails entityDetails;
+
+    private volatile FutureCallback<Void> resultCallback;
+
+    private volatile boolean ended;
+
+    private volatile Exception failure;
+
+    private volatile CapacityChannel capacityChannel;
+
+    private volatile boolean discarding;
+
+    private final AtomicLong discarded = new AtomicLong();
+
+    /**
+     * @return 收到响应头时完成
+     */
+    CompletableFuture<HttpResponse> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return 响应体的长度和类型，没有响应体时为null
+     */
+    EntityDetails getEntityDetails() {
+        return entityDetails;
+    }
+
+    boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * 中止读取，阻塞在读取上的线程会返回
+     */
+    void abort() {
+        buffer.abort();
+    }
+
+    /**
+     * 调用方不再读取，中止读取并丢弃剩余的响应体。
+     * HttpCore 5.2在请求已发送完（如GET）时取消流不会发送RST_STREAM，只能继续接收直到流结束，
+     * 丢弃的字节数超过DISCARD_LIMIT后停止扩大流控窗口
+     */
+    void discard() {
+        discarding = true;
+        //读出缓冲区中已有的数据，由缓冲区按正常的读取流程扩大流控窗口，之后收到的数据在consume中直接丢弃
+        byte[] skip = new byte[HttpClientUtils.BUFFER_SIZE];
+        try {
+            while (!ended && buffer.length() > 0 && buffer.read(skip, 0, skip.length) > 0) {
+                //丢弃
+            }
+        } catch (IOException e) {
+            //连接已经关闭
+        }
+        buffer.abort();
+    }
+
+    InputStream getContent() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                int b = buffer.read();
+                if (b == -1) {
+                    checkFailure();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = buffer.read(b, off, len);
+                if (n == -1) {
+                    checkFailure();
+                }
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return buffer.length();
+            }
+        };
+    }
+
+    private void checkFailure() throws IOException {
+        Exception e = failure;
+        if (e != null) {
+            throw e instanceof IOException ? (IOException) e : new IOException("HTTP/2响应读取失败", e);
+        }
+        if (!ended) {
+            throw new IOException("HTTP/2响应已中止");
+        }
+    }
+
+    @Override
+    public void consumeResponse(HttpResponse response, EntityDetails entityDetails, HttpContext context, FutureCallback<Void> resultCallback) {
+        this.entityDetails = entityDetails;
+        this.resultCallback = resultCallback;
+        if (entityDetails == null) {
+            ended = true;
+            buffer.markEndStream();
+            resultCallback.completed(null);
+        }
+        headers.complete(response);
+    }
+
+    @Override
+    public void informationResponse(HttpResponse response, HttpContext context) {
+        //忽略1xx响应
+    }
+
+    @Override
+    public void failed(Exception cause) {
+        failure = cause;
+        buffer.abort();
+        headers.completeExceptionally(cause);
+    }
+
+    @Override
+    public void updateCapacity(CapacityChannel capacityChannel) throws IOException {
+        this.capacityChannel = capacityChannel;
+        buffer.updateCapacity(capacityChannel);
+    }
+
+    @Override
+    public void consume(ByteBuffer src) throws IOException {
+        if (!discarding) {
+            buffer.fill(src);
+            return;
+        }
+        int length = src.remaining();
+        src.position(src.limit());
+        CapacityChannel channel = capacityChannel;
+        if (channel != null && discarded.addAndGet(length) <= DISCARD_LIMIT) {
+            channel.update(length);
+        }
+    }
+
+    @Override
+    public void streamEnd(List<? extends Header> trailers) {
+        ended = true;
+        buffer.markEndStream();
+        FutureCallback<Void> callback = resultCallback;
+        if (callback != null) {
+            callback.completed(null);
+        }
+    }
+
+    @Override
+    public void releaseResources() {
+        if (!ended) {
+            buffer.abort();
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.yky.http.utils;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.H2AsyncClientBuilder;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.message.BasicHttpRequest;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityProducer;
+import org.apache.hc.core5.http.nio.support.BasicRequestProducer;
+import org.apache.hc.core5.http.nio.support.classic.AbstractClassicEntityProducer;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.Timeout;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于HttpClient 5的HTTP/2传输层，同一主机的并发请求复用一个连接(多路复用)，需要引入httpclient5依赖
+ * https地址通过ALPN协商HTTP/2；http地址默认走HTTP/1.1，通过addH2cHosts指定的内部服务直接使用h2c(不经过Upgrade)。
+ * 主机第一次HTTP/2请求就失败时(不支持HTTP/2)，该主机在fallbackDuration内改用fallback传输层(默认Http1Transport)，并用HTTP/1.1重发这个请求。
+ * 响应体以流的形式读取，不会整个读入内存。HTTP/2请求不经过HTTP/1.1连接池，响应缓存和连接阶段的耗时指标对其不生效。
+ * 使用：HttpClientUtils.setTransport(Http2Transport.custom().addH2cHosts("http://order-service:8080").build())
+ * @author wuhualu
+ */
+public class Http2Transport implements HttpTransport, Closeable {
+
+    private static Logger logger = LoggerFactory.getLogger(Http2Transport.class);
+
+    private static final ProtocolVersion HTTP_2 = new ProtocolVersion("HTTP", 2, 0);
+
+    /**
+     * HTTP/2中不允许出现的连接相关的请求头，以及由传输层生成的请求头
+     */
+    private static final Set<String> EXCLUDED_HEADERS = new HashSet<>(Arrays.asList(
+            "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade", "te", "host", "content-length"));
+
+    /**
+     * 小于该值且可重复读取的请求体一次性发送，否则以流的形式发送
+     */
+    private static final int BUFFERED_ENTITY_SIZE = 64 * 1024;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final CloseableHttpAsyncClient client;
+
+    private final HttpTransport fallback;
+
+    private final Set<String> h2cHosts;
+
+    private final boolean tls;
+
+    private final long fallbackNanos;
+
+    /**
+     * 改用HTTP/1.1的主机及截止时间
+     */
+    private final ConcurrentMap<String, Long> http1Hosts = new ConcurrentHashMap<>();
+
+    /**
+     * 已经成功完成过HTTP/2请求的主机，之后的失败不再降级
+     */
+    private final Set<String> h2Hosts = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * 以流的形式写请求体的线程
+     */
+    private final ExecutorService producerExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "http2-producer-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Http2Transport(Builder builder) {
+        this.fallback = builder.fallback;
+        this.h2cHosts = Collections.unmodifiableSet(new HashSet<>(builder.h2cHosts));
+        this.tls = builder.tls;
+        this.fallbackNanos = TimeUnit.MILLISECONDS.toNanos(builder.fallbackDuration);
+        this.client = H2AsyncClientBuilder.create()
+                .setIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(builder.ioThreads).build())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(builder.connectTimeout)).build())
+                //重试由RetryPolicy负责
+                .disableAutomaticRetries()
+                .build();
+        this.client.start();
+    }
+
+    public static Builder custom() {
+        return new Builder();
+    }
+
+    /**
+     * @param route scheme://host:port
+     * @return 该主机当前是否使用HTTP/2
+     */
+    public boolean isHttp2(String route) {
+        Long until = http1Hosts.get(route);
+        if (until != null) {
+            if (System.nanoTime() - until < 0) {
+                return false;
+            }
+            http1Hosts.remove(route, until);
+        }
+        return route.startsWith("https:") ? tls : h2cHosts.contains(route);
+    }
+
+    @Override
+    public CloseableHttpResponse execute(HttpRequestBase request, HttpClientContext context) throws IOException {
+        String route = URIUtils.extractHost(request.getURI()).toURI();
+        if (!isHttp2(route)) {
+            return fallback.execute(request, context);
+        }
+
+        try {
+            CloseableHttpResponse response = executeHttp2(request);
+            h2Hosts.add(route);
+            return response;
+        } catch (IOException e) {
+            //连接失败或超时说明主机不可用，与是否支持HTTP/2无关
+            if (h2Hosts.contains(route) || e instanceof ConnectException || e instanceof InterruptedIOException
+                    || request.isAborted() || !isRepeatable(request)) {
+                throw e;
+            }
+            logger.warn("HTTP/2请求失败，{}ms内改用HTTP/1.1, 主机:{}, 异常:{}", TimeUnit.NANOSECONDS.toMillis(fallbackNanos), route, e.toString());
+            http1Hosts.put(route, System.nanoTime() + fallbackNanos);
+            request.reset();
+            return fallback.execute(request, context);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private CloseableHttpResponse executeHttp2(HttpRequestBase request) throws IOException {
+        URI uri = request.getURI();
+        BasicHttpRequest h2Request = new BasicHttpRequest(request.getMethod(), uri);
+        for (Header header : request.getAllHeaders()) {
+            if (!EXCLUDED_HEADERS.contains(header.getName().toLowerCase(Locale.ROOT))) {
+                h2Request.addHeader(header.getName(), header.getValue());
+            }
+        }
+
+        //HTTP/1.1中由RequestContent根据实体添加
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null && entity.getContentEncoding() != null && !h2Request.containsHeader("Content-Encoding")) {
+                h2Request.addHeader("Content-Encoding", entity.getContentEncoding().getValue());
+            }
+        }
+
+        org.apache.hc.client5.http.protocol.HttpClientContext h2Context = org.apache.hc.client5.http.protocol.HttpClientContext.create();
+        RequestConfig config = request.getConfig();
+        long waitMillis = 0;
+        if (config != null) {
+            org.apache.hc.client5.http.config.RequestConfig.Builder h2Config = org.apache.hc.client5.http.config.RequestConfig.custom()
+                    .setRedirectsEnabled(config.isRedirectsEnabled());
+            if (config.getSocketTimeout() > 0) {
+                h2Config.setResponseTimeout(Timeout.ofMilliseconds(config.getSocketTimeout()));
+            }
+            if (config.getConnectTimeout() > 0) {
+                h2Config.setConnectTimeout(Timeout.ofMilliseconds(config.getConnectTimeout()));
+            }
+            if (config.getConnectionRequestTimeout() > 0) {
+                h2Config.setConnectionRequestTimeout(Timeout.ofMilliseconds(config.getConnectionRequestTimeout()));
+            }
+            h2Context.setRequestConfig(h2Config.build());
+            if (config.getSocketTimeout() > 0) {
+                waitMillis = (long) config.getSocketTimeout() + Math.max(config.getConnectTimeout(), 0);
+            }
+        }
+
+        Http2ResponseConsumer consumer = new Http2ResponseConsumer();
+        Future<Void> exchange = client.execute(new BasicRequestProducer(h2Request, entityProducer(request)), consumer, null, h2Context, null);
+        //request.abort()时取消HTTP/2流
+        request.setCancellable(() -> {
+            consumer.abort();
+            return exchange.cancel(true);
+        });
+
+        org.apache.hc.core5.http.HttpResponse h2Response;
+        try {
+            h2Response = waitMillis > 0 ? consumer.getHeaders().get(waitMillis, TimeUnit.MILLISECONDS) : consumer.getHeaders().get();
+        } catch (TimeoutException e) {
+            exchange.cancel(true);
+            throw new SocketTimeoutException("等待HTTP/2响应超时");
+        } catch (InterruptedException e) {
+            exchange.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待HTTP/2响应时被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("HTTP/2请求失败", cause);
+        } catch (java.util.concurrent.CancellationException e) {
+            throw new InterruptedIOException("HTTP/2请求已中止");
+        }
+
+        return toResponse(h2Response, consumer);
+    }
+
+    private AsyncEntityProducer entityProducer(HttpRequestBase request) throws IOException {
+        if (!(request instanceof HttpEntityEnclosingRequest)) {
+            return null;
+        }
+        HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+        if (entity == null) {
+            return null;
+        }
+
+        org.apache.hc.core5.http.ContentType contentType = entity.getContentType() == null
+                ? null : org.apache.hc.core5.http.ContentType.parse(entity.getContentType().getValue());
+        long length = entity.getContentLength();
+        if (entity.isRepeatable() && length >= 0 && length <= BUFFERED_ENTITY_SIZE) {
+            return new BasicAsyncEntityProducer(EntityUtils.toByteArray(entity), contentType);
+        }
+
+        return new AbstractClassicEntityProducer(HttpClientUtils.BUFFER_SIZE, contentType, producerExecutor) {
+            @Override
+            protected void produceData(org.apache.hc.core5.http.ContentType contentType, OutputStream outputStream) throws IOException {
+                entity.writeTo(outputStream);
+            }
+        };
+    }
+
+    private static CloseableHttpResponse toResponse(org.apache.hc.core5.http.HttpResponse h2Response, Http2ResponseConsumer consumer) {
+        Http2Response response = new Http2Response(new BasicStatusLine(HTTP_2, h2Response.getCode(), h2Response.getReasonPhrase()),
+                consumer);
+        for (org.apache.hc.core5.http.Header header : h2Response.getHeaders()) {
+            response.addHeader(header.getName(), header.getValue());
+        }
+
+        EntityDetails details = consumer.getEntityDetails();
+        if (details != null) {
+            BasicHttpEntity entity = new BasicHttpEntity();
+            entity.setContent(consumer.getContent());
+            entity.setContentLength(details.getContentLength());
+            entity.setContentType(details.getContentType());
+            entity.setContentEncoding(details.getContentEncoding());
+            response.setEntity(entity);
+        }
+        return response;
+    }
+
+    private static boolean isRepeatable(HttpRequestBase request) {
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            return entity == null || entity.isRepeatable();
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        client.close(CloseMode.GRACEFUL);
+        producerExecutor.shutdown();
+    }
+
+    /**
+     * HTTP/2的响应，没读完就关闭时丢弃剩余的响应体，让这个流正常结束，不影响同一连接上的其他请求
+     */
+    private static class Http2Response extends BasicHttpResponse implements CloseableHttpResponse {
+
+        private final Http2ResponseConsumer consumer;
+
+        private Http2Response(BasicStatusLine statusLine, Http2ResponseConsumer consumer) {
+            super(statusLine);
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void close() {
+            if (!consumer.isEnded()) {
+                consumer.discard();
+            }
+        }
+    }
+
+    public static class Builder {
+
+        private final Set<String> h2cHosts = new HashSet<>();
+
+        private boolean tls = true;
+
+        private long fallbackDuration = 600000;
+
+        private int ioThreads = Runtime.getRuntime().availableProcessors();
+
+        private long connectTimeout = 5000;
+
+        private HttpTransport fallback = Http1Transport.INSTANCE;
+
+        /**
+         * @param hosts 直接使用h2c(明文HTTP/2)的主机，如http://order-service:8080
+         */
+        public Builder addH2cHosts(String... hosts) {
+            for (String host : hosts) {
+                h2cHosts.add(URIUtils.extractHost(URI.create(host)).toURI());
+            }
+            return this;
+        }
+
+        /**
+         * @param tls https地址是否尝试HTTP/2，默认true
+         */
+        public Builder setTls(boolean tls) {
+            this.tls = tls;
+            return this;
+        }
+
+        /**
+         * @param fallbackDuration 主机不支持HTTP/2时改用HTTP/1.1的时间,ms，之后再次尝试HTTP/2，默认10分钟
+         */
+        public Builder setFallbackDuration(long fallbackDuration) {
+            this.fallbackDuration = fallbackDuration;
+            return this;
+        }
+
+        /**
+         * @param ioThreads IO Reactor线程数，默认为CPU核数
+         */
+        public Builder setIoThreads(int ioThreads) {
+            this.ioThreads = ioThreads;
+            return this;
+        }
+
+        /**
+         * @param connectTimeout 建立连接的超时时间,ms，默认5000
+         */
+        public Builder setConnectTimeout(long connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * @param fallback 不使用HTTP/2的主机所用的传输层，默认Http1Transport
+         */
+        public Builder setFallback(HttpTransport fallback) {
+            this.fallback = fallback;
+            return this;
+        }
+
+        /**
+         * 创建并启动传输层，不再使用时调用close
+         */
+        public Http2Transport build() {
+            return new Http2Transport(this);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * 异步请求工具类，与HttpClientUtils中的同步方法一一对应
+ * 请求在NIO的IO Reactor上执行，不会阻塞调用线程，少量线程即可驱动大量并发请求。
+ * 返回的CompletableFuture被cancel时会中止底层的请求；请求失败时future以异常结束，而不是返回null。
+ * @author wuhualu
+ */
+public class HttpAsyncClientUtils {
+
+    private static Logger logger = LoggerFactory.getLogger(HttpAsyncClientUtils.class);
+
+    /**
+     * 默认最大同时进行中的请求数
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1000;
+
+    private static volatile Semaphore inFlight = new Semaphore(DEFAULT_MAX_IN_FLIGHT);
+
+    /**
+     * 设置最大同时进行中的请求数，超出限制的请求会直接以RejectedExecutionException失败，不会排队
+     * @param maxInFlight 最大进行中请求数
+     */
+    public static void setMaxInFlight(int maxInFlight) {
+        inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * @return 还可以发起的异步请求数
+     */
+    static int availablePermits() {
+        return inFlight.availablePermits();
+    }
+
+    /**
+     * 发送请求
+     * @param requestBase 请求
+     * @param converter 响应内容转换
+     * @return 响应内容
+     */
+    static <T> CompletableFuture<T> execute(HttpRequestBase requestBase, Function<String, T> converter) {
+        ExchangeFuture<T> future = new ExchangeFuture<>();
+
+        Semaphore semaphore = inFlight;
+        if (!semaphore.tryAcquire()) {
+            future.completeExceptionally(new RejectedExecutionException("进行中的异步请求数已达上限"));
+            return future;
+        }
+
+        FutureCallback<HttpResponse> callback = new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                semaphore.release();
+                try {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("URL:{} Method:{} code:{}", requestBase.getURI(), requestBase.getMethod(),
+                                response.getStatusLine().getStatusCode());
+                    }
+
+                    //没有响应体(如204)时返回null，与同步请求一致
+                    HttpEntity entity = response.getEntity();
+                    if (entity == null) {
+                        future.complete(null);
+                        return;
+                    }
+
+                    //获得实体内容，按响应头中的编码解码，没有时使用UTF-8
+                    String entityString = EntityUtils.toString(entity, HttpClientUtils.getCharset(entity));
+
+                    future.complete(converter.apply(entityString));
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                semaphore.release();
+                logger.error("遇到异常，异步消息发送失败, URL:{}", requestBase.getURI(), e);
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled() {
+                semaphore.release();
+                future.cancel(false);
+            }
+        };
+
+        try {
+            future.exchange = HttpClientManager.getHttpAsyncClient().execute(requestBase, callback);
+        } catch (RuntimeException e) {
+            semaphore.release();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        //在exchange赋值之前就被cancel的情况
+        if (future.isCancelled()) {
+            future.exchange.cancel(true);
+        }
+
+        return future;
+    }
+
+    private static CompletableFuture<String> execute(HttpRequestBase requestBase) {
+        return execute(requestBase, Function.identity());
+    }
+
+    /**
+     * 异步发送带参的GET请求，参数说明同HttpClientUtils.requestGet
+     */
+    public static CompletableFuture<String> requestGetAsync(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap) {
+        return execute(HttpClientUtils.createGet(url, timeOut, headers, entityMap));
+    }
+
+    /**
+     * 异步发送不带参的GET请求
+     * @param url 请求地址
+     * @param timeOut 超时时间
+     * @return
+     */
+    public static CompletableFuture<String> requestGetAsync(String url, Integer timeOut) {
+        return requestGetAsync(url, timeOut, null, null);
+    }
+
+    /**
+     * 异步发送带参的GET请求，并将响应的JSON转换为指定类型
+     * @param clazz 响应类型
+     */
+    public static <R> CompletableFuture<R> requestGetAsync(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap, Class<R> clazz) {
+        return execute(HttpClientUtils.createGet(url, timeOut, headers, entityMap),
+                s -> FastJsonUtils.jsonStringToEntity(s, clazz));
+    }
+
+    /**
+     * 异步发送带参的post请求，参数说明同HttpClientUtils.requestPost
+     */
+    public static CompletableFuture<String> requestPostAsync(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap) {
+        return execute(HttpClientUtils.createPost(url, timeOut, headers, entityMap));
+    }
+
+    /**
+     * 异步发送普通POST表单请求(不带文件)，参数说明同HttpClientUtils.requestFormPost
+     */
+    public static CompletableFuture<String> requestFormPostAsync(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap) {
+        return execute(HttpClientUtils.createFormPost(url, timeOut, headers, entityMap));
+    }
+
+    /**
+     * 异步发送带JSON的POST请求，参数说明同HttpClientUtils.requestJsonPost
+     */
+    public static CompletableFuture<String> requestJsonPostAsync(String url, Integer timeOut, Map<String,String> headers, String jsonString) {
+        return execute(HttpClientUtils.createJsonPost(url, timeOut, headers, jsonString));
+    }
+
+    /**
+     * 异步发送带JSON的POST请求
+     * @param entity 消息体,支持Map、自定义类。
+     */
+    public static <T> CompletableFuture<String> requestJsonPostAsync(String url, Integer timeOut, Map<String,String> headers, T entity) {
+        return execute(HttpClientUtils.createJsonPost(url, timeOut, headers, entity));
+    }
+
+    /**
+     * 异步发送带JSON的POST请求，并将响应的JSON转换为指定类型
+     * @param entity 消息体,支持Map、自定义类。
+     * @param clazz 响应类型
+     */
+    public static <T, R> CompletableFuture<R> requestJsonPostAsync(String url, Integer timeOut, Map<String,String> headers, T entity, Class<R> clazz) {
+        return execute(HttpClientUtils.createJsonPost(url, timeOut, headers, entity),
+                s -> FastJsonUtils.jsonStringToEntity(s, clazz));
+    }
+
+    /**
+     * cancel时同时中止底层请求的CompletableFuture
+     */
+    private static class ExchangeFuture<T> extends CompletableFuture<T> {
+
+        private volatile Future<HttpResponse> exchange;
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Future<HttpResponse> current = exchange;
+            if (cancelled && current != null) {
+                current.cancel(true);
+            }
+            return cancelled;
+        }
+    }
+}
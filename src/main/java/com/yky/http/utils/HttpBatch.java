@@ -0,0 +1,343 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 批量并发请求
+ * 同一主机(scheme://host:port)同时进行的请求数不超过maxPerHost，其余请求排队，前面的请求完成后才发出，不会占用线程等待。
+ * 超过截止时间后，排队的请求不再发送，进行中的请求被中止，它们的结果以TimeoutException失败。
+ * JVM支持虚拟线程(JDK 21+)时每个请求在一个虚拟线程中执行，否则使用固定大小的守护线程池。
+ * @author wuhualu
+ */
+public class HttpBatch {
+
+    private static Logger logger = LoggerFactory.getLogger(HttpBatch.class);
+
+    /**
+     * 默认每个主机同时进行的请求数
+     */
+    public static final int DEFAULT_MAX_PER_HOST = 8;
+
+    /**
+     * 默认截止时间,ms
+     */
+    public static final long DEFAULT_TIMEOUT = 30000;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private static final boolean VIRTUAL_THREADS;
+
+    private static final ExecutorService EXECUTOR;
+
+    static {
+        ExecutorService executor = newVirtualThreadExecutor();
+        VIRTUAL_THREADS = executor != null;
+        if (executor == null) {
+            //线程数与连接池的最大连接数相同，更多的线程也只会等待连接
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(HttpClientManager.DEFAULT_MAX_TOTAL, HttpClientManager.DEFAULT_MAX_TOTAL,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "http-batch-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        EXECUTOR = executor;
+    }
+
+    /**
+     * 通过反射调用Executors.newVirtualThreadPerTaskExecutor，编译和运行都不依赖新版本的JDK
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method method = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return 是否使用虚拟线程执行请求
+     */
+    public static boolean isVirtualThreads() {
+        return VIRTUAL_THREADS;
+    }
+
+    /**
+     * 按默认的并发数和截止时间执行，参数说明同execute(requests, maxPerHost, timeOut)
+     */
+    public static <T> BatchResponse<T> execute(List<BatchRequest<T>> requests) {
+        return execute(requests, DEFAULT_MAX_PER_HOST, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * 并发执行所有请求，等待全部完成或超过截止时间后返回
+     * @param requests 请求列表
+     * @param maxPerHost 每个主机同时进行的最大请求数
+     * @param timeOut 整个批量请求的截止时间,ms
+     * @return 结果，顺序与requests相同
+     */
+    public static <T> BatchResponse<T> execute(List<BatchRequest<T>> requests, int maxPerHost, long timeOut) {
+        Batch<T> batch = new Batch<>(requests, maxPerHost, timeOut, null);
+        batch.start();
+        try {
+            batch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        batch.expire();
+
+        List<BatchResult<T>> results = new ArrayList<>(requests.size());
+        int failures = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            BatchResult<T> result = batch.results.get(i);
+            results.add(result);
+            if (!result.isSuccess()) {
+                failures++;
+            }
+        }
+        if (failures > 0) {
+            logger.warn("批量请求完成, 共{}个, 失败{}个", requests.size(), failures);
+        }
+        return new BatchResponse<>(results);
+    }
+
+    /**
+     * 并发执行所有请求，按完成的先后顺序返回结果
+     * 返回的Stream是惰性的，消费时阻塞等待下一个完成的请求；超过截止时间后剩余的请求以TimeoutException失败。
+     * @param requests 请求列表
+     * @param maxPerHost 每个主机同时进行的最大请求数
+     * @param timeOut 整个批量请求的截止时间,ms
+     * @return 按完成顺序排列的结果，通过BatchResult.getIndex()对应到输入的请求
+     */
+    public static <T> Stream<BatchResult<T>> stream(List<BatchRequest<T>> requests, int maxPerHost, long timeOut) {
+        BlockingQueue<BatchResult<T>> completed = new LinkedBlockingQueue<>();
+        Batch<T> batch = new Batch<>(requests, maxPerHost, timeOut, completed);
+        batch.start();
+
+        Iterator<BatchResult<T>> iterator = new Iterator<BatchResult<T>>() {
+
+            private int delivered;
+
+            @Override
+            public boolean hasNext() {
+                return delivered < requests.size();
+            }
+
+            @Override
+            public BatchResult<T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                BatchResult<T> result = null;
+                try {
+                    long remaining = batch.deadline - System.nanoTime();
+                    result = remaining > 0 ? completed.poll(remaining, TimeUnit.NANOSECONDS) : completed.poll();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (result == null) {
+                    //超过截止时间，剩余的结果由expire立即放入队列
+                    batch.expire();
+                    result = completed.poll();
+                }
+                delivered++;
+                return result;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliterator(iterator, requests.size(), Spliterator.SIZED | Spliterator.NONNULL), false)
+                .onClose(batch::expire);
+    }
+
+    /**
+     * 一次批量请求的执行状态
+     */
+    private static class Batch<T> {
+
+        private final List<BatchRequest<T>> requests;
+
+        private final int maxPerHost;
+
+        private final long deadline;
+
+        private final BlockingQueue<BatchResult<T>> completed;
+
+        private final AtomicReferenceArray<BatchResult<T>> results;
+
+        /**
+         * 进行中的请求，超过截止时间时用于中止
+         */
+        private final AtomicReferenceArray<HttpRequestBase> inFlight;
+
+        private final AtomicInteger remaining;
+
+        private final Map<String, HostQueue> hosts = new HashMap<>();
+
+        private volatile boolean expired;
+
+        private Batch(List<BatchRequest<T>> requests, int maxPerHost, long timeOut, BlockingQueue<BatchResult<T>> completed) {
+            this.requests = requests;
+            this.maxPerHost = Math.max(1, maxPerHost);
+            this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeOut);
+            this.completed = completed;
+            this.results = new AtomicReferenceArray<>(requests.size());
+            this.inFlight = new AtomicReferenceArray<>(requests.size());
+            this.remaining = new AtomicInteger(requests.size());
+        }
+
+        private void start() {
+            for (int i = 0; i < requests.size(); i++) {
+                hosts.computeIfAbsent(requests.get(i).getRoute(), key -> new HostQueue()).pending.add(i);
+            }
+            for (HostQueue host : hosts.values()) {
+                dispatch(host);
+            }
+        }
+
+        /**
+         * 在并发数允许的范围内发出排队的请求
+         */
+        private void dispatch(HostQueue host) {
+            while (!host.pending.isEmpty()) {
+                int active = host.active.get();
+                if (active >= maxPerHost) {
+                    return;
+                }
+                if (!host.active.compareAndSet(active, active + 1)) {
+                    continue;
+                }
+                Integer index = host.pending.poll();
+                if (index == null) {
+                    host.active.decrementAndGet();
+                    continue;
+                }
+                try {
+                    EXECUTOR.execute(() -> run(index, host));
+                } catch (RejectedExecutionException e) {
+                    host.active.decrementAndGet();
+                    complete(index, new BatchResult<>(index, 0, null, e));
+                }
+            }
+        }
+
+        private void run(int index, HostQueue host) {
+            try {
+                if (!expired) {
+                    complete(index, execute(index));
+                }
+            } finally {
+                host.active.decrementAndGet();
+                dispatch(host);
+            }
+        }
+
+        private BatchResult<T> execute(int index) {
+            BatchRequest<T> request = requests.get(index);
+            HttpRequestBase requestBase;
+            try {
+                requestBase = request.createRequest();
+            } catch (RuntimeException e) {
+                return new BatchResult<>(index, 0, null, e);
+            }
+
+            inFlight.set(index, requestBase);
+            if (expired) {
+                requestBase.abort();
+            }
+            try (CloseableHttpResponse response = RequestExecutor.execute(requestBase)) {
+                try {
+                    HttpEntity entity = response.getEntity();
+                    return new BatchResult<>(index, response.getStatusLine().getStatusCode(), request.read(requestBase, entity), null);
+                } finally {
+                    HttpMetrics.complete(response);
+                }
+            } catch (Exception e) {
+                //被expire中止的请求与排队的请求一样以TimeoutException失败
+                return new BatchResult<>(index, 0, null, expired ? timeout() : e);
+            } finally {
+                inFlight.set(index, null);
+            }
+        }
+
+        private void complete(int index, BatchResult<T> result) {
+            if (!results.compareAndSet(index, null, result)) {
+                return;
+            }
+            if (completed != null) {
+                completed.add(result);
+            }
+            if (remaining.decrementAndGet() == 0) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        private synchronized void await() throws InterruptedException {
+            while (remaining.get() > 0) {
+                long wait = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (wait <= 0) {
+                    return;
+                }
+                wait(wait);
+            }
+        }
+
+        /**
+         * 截止时间到达：不再发送排队的请求，中止进行中的请求，未完成的请求以TimeoutException失败
+         */
+        private void expire() {
+            if (remaining.get() == 0) {
+                return;
+            }
+            expired = true;
+            for (int i = 0; i < requests.size(); i++) {
+                HttpRequestBase requestBase = inFlight.get(i);
+                if (requestBase != null) {
+                    requestBase.abort();
+                }
+                complete(i, new BatchResult<>(i, 0, null, timeout()));
+            }
+        }
+
+        private static TimeoutException timeout() {
+            return new TimeoutException("批量请求超过截止时间");
+        }
+    }
+
+    private static class HostQueue {
+
+        private final Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger active = new AtomicInteger();
+    }
+}
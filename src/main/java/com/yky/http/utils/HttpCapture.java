@@ -0,0 +1,209 @@
+package com.yky.http.utils;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpMessage;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.entity.ContentType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按规则抽样抓取请求和响应，用于排查线上问题，不需要打开debug日志，默认关闭，关闭时每个请求只多一次volatile读
+ * 抓取的请求写入固定大小的环形缓冲区，写满后覆盖最早的，写入只需一次原子自增，不加锁。通过dump()随时取出。如
+ * HttpCapture.enable(CapturePolicy.custom().setSampleRate(0.01).setLatencyThreshold(1000).build())
+ * @author wuhualu
+ */
+public class HttpCapture {
+
+    private static volatile CapturePolicy policy;
+
+    private static volatile Buffer buffer = new Buffer(1);
+
+    /**
+     * 按规则开始抓取，之前抓取的内容会被清空
+     * @param capturePolicy 通过CapturePolicy.custom()...build()创建
+     */
+    public static synchronized void enable(CapturePolicy capturePolicy) {
+        buffer = new Buffer(capturePolicy.getCapacity());
+        policy = capturePolicy;
+    }
+
+    /**
+     * 停止抓取，已经抓取的内容仍然可以dump
+     */
+    public static void disable() {
+        policy = null;
+    }
+
+    public static boolean isEnabled() {
+        return policy != null;
+    }
+
+    /**
+     * @return 缓冲区中的请求，按发送顺序排列
+     */
+    public static List<CapturedExchange> dump() {
+        return buffer.snapshot();
+    }
+
+    /**
+     * 清空已经抓取的内容
+     */
+    public static synchronized void clear() {
+        buffer = new Buffer(buffer.slots.length());
+    }
+
+    /**
+     * @return 当前的规则，关闭时返回null
+     */
+    static CapturePolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * 收到响应头后调用，满足规则时记录请求和响应头，响应体在调用方读取时记录
+     * @param wireRequest 实际发送的请求，包含HttpClient添加的请求头，没有时为null
+     * @param start 开始发送的时间,ns
+     */
+    static void onResponse(CapturePolicy policy, HttpRequestBase request, HttpRequest wireRequest, HttpResponse response, long start) {
+        long latency = System.nanoTime() - start;
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (!policy.shouldCapture(URIUtils.extractHost(request.getURI()).toURI(), statusCode, latency)) {
+            return;
+        }
+
+        CapturedExchange exchange = new CapturedExchange(System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(latency),
+                request.getMethod(), request.getURI().toString(), headers(policy, wireRequest != null ? wireRequest : request),
+                requestBody(policy, request), statusCode, headers(policy, response), TimeUnit.NANOSECONDS.toMicros(latency), null);
+        HttpEntity entity = response.getEntity();
+        if (entity != null) {
+            response.setEntity(new CapturingHttpEntity(entity, exchange, policy.getMaxBodySize(), charset(entity)));
+        }
+        buffer.add(exchange);
+    }
+
+    /**
+     * 请求失败时调用
+     */
+    static void onFailure(CapturePolicy policy, HttpRequestBase request, HttpRequest wireRequest, Exception e, long start) {
+        long latency = System.nanoTime() - start;
+        if (!policy.shouldCapture(URIUtils.extractHost(request.getURI()).toURI(), -1, latency)) {
+            return;
+        }
+
+        buffer.add(new CapturedExchange(System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(latency),
+                request.getMethod(), request.getURI().toString(), headers(policy, wireRequest != null ? wireRequest : request),
+                requestBody(policy, request), -1, Collections.emptyList(), TimeUnit.NANOSECONDS.toMicros(latency), e.toString()));
+    }
+
+    private static List<String> headers(CapturePolicy policy, HttpMessage message) {
+        Header[] headers = message.getAllHeaders();
+        List<String> lines = new ArrayList<>(headers.length);
+        for (Header header : headers) {
+            lines.add(header.getName() + ": " + (policy.isRedacted(header.getName()) ? "***" : header.getValue()));
+        }
+        return lines;
+    }
+
+    /**
+     * 只记录可以重复读取的请求体，流式的请求体已经发送完，无法再读取
+     */
+    private static String requestBody(CapturePolicy policy, HttpRequestBase request) {
+        if (!(request instanceof HttpEntityEnclosingRequest)) {
+            return null;
+        }
+        HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+        if (entity == null) {
+            return null;
+        }
+        //压缩的请求体记录压缩前的内容，请求头中仍是Content-Encoding: gzip
+        if (entity instanceof CompressingHttpEntity) {
+            entity = ((CompressingHttpEntity) entity).getUncompressedEntity();
+        }
+        if (!entity.isRepeatable()) {
+            return "<不可重复读取的请求体, length=" + entity.getContentLength() + ">";
+        }
+
+        byte[] buffer = new byte[Math.max(0, policy.getMaxBodySize())];
+        int length = 0;
+        boolean truncated = false;
+        try (InputStream inputStream = entity.getContent()) {
+            int n;
+            while (length < buffer.length && (n = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+                length += n;
+            }
+            truncated = length == buffer.length && inputStream.read() != -1;
+        } catch (IOException | RuntimeException e) {
+            return "<读取请求体失败: " + e + ">";
+        }
+        return text(buffer, length, charset(entity), truncated);
+    }
+
+    static String text(byte[] buffer, int length, Charset charset, boolean truncated) {
+        String text = new String(buffer, 0, length, charset);
+        return truncated ? text + "...<已截断>" : text;
+    }
+
+    private static Charset charset(HttpEntity entity) {
+        try {
+            ContentType contentType = ContentType.get(entity);
+            if (contentType != null && contentType.getCharset() != null) {
+                return contentType.getCharset();
+            }
+        } catch (RuntimeException e) {
+            //Content-Type不合法时按UTF-8记录
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * 固定大小的环形缓冲区，写入时原子地取得序号，写到序号对应的位置
+     */
+    private static class Buffer {
+
+        private final AtomicReferenceArray<CapturedExchange> slots;
+
+        private final int mask;
+
+        private final AtomicLong next = new AtomicLong();
+
+        private Buffer(int capacity) {
+            int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+            this.slots = new AtomicReferenceArray<>(capacity <= 1 ? 1 : size);
+            this.mask = slots.length() - 1;
+        }
+
+        private void add(CapturedExchange exchange) {
+            long sequence = next.getAndIncrement();
+            exchange.sequence = sequence;
+            slots.set((int) (sequence & mask), exchange);
+        }
+
+        private List<CapturedExchange> snapshot() {
+            List<CapturedExchange> exchanges = new ArrayList<>(slots.length());
+            for (int i = 0; i < slots.length(); i++) {
+                CapturedExchange exchange = slots.get(i);
+                if (exchange != null) {
+                    exchanges.add(exchange);
+                }
+            }
+            exchanges.sort(Comparator.comparingLong(exchange -> exchange.sequence));
+            return exchanges;
+        }
+    }
+}
@@ -0,0 +1,512 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.DeflateInputStreamFactory;
+import org.apache.http.client.entity.InputStreamFactory;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 全局共享的HttpClient管理器
+ * 内部维护一个基于PoolingHttpClientConnectionManager的线程安全客户端，所有请求复用连接池中的长连接，
+ * 避免每次请求都重新建立TCP/TLS连接。后台线程会定期清理过期和空闲的连接，JVM退出时自动关闭。
+ * @author wuhualu
+ */
+public class HttpClientManager {
+
+    private static Logger logger = LoggerFactory.getLogger(HttpClientManager.class);
+
+    /**
+     * 连接池最大连接数
+     */
+    public static final int DEFAULT_MAX_TOTAL = 200;
+
+    /**
+     * 每个路由(host:port)的最大连接数
+     */
+    public static final int DEFAULT_MAX_PER_ROUTE = 50;
+
+    /**
+     * 服务端没有返回Keep-Alive头时，连接保持的时间,单位ms
+     */
+    public static final long DEFAULT_KEEP_ALIVE = 30000;
+
+    /**
+     * 连接空闲超过该时间后会被后台线程关闭,单位ms
+     */
+    public static final long DEFAULT_MAX_IDLE_TIME = 60000;
+
+    private static int maxTotal = DEFAULT_MAX_TOTAL;
+
+    private static int maxPerRoute = DEFAULT_MAX_PER_ROUTE;
+
+    private static long keepAlive = DEFAULT_KEEP_ALIVE;
+
+    private static long maxIdleTime = DEFAULT_MAX_IDLE_TIME;
+
+    /**
+     * 预热连接时最多同时建立的连接数
+     */
+    private static final int WARM_UP_THREADS = 16;
+
+    /**
+     * 重新初始化后，旧客户端在借出的连接全部归还后关闭，最多等待该时间,ms
+     */
+    private static final long RETIRE_TIMEOUT = 60000;
+
+    /**
+     * 检查旧客户端是否还有借出连接的间隔,ms
+     */
+    private static final long RETIRE_CHECK_INTERVAL = 200;
+
+    private static final ScheduledExecutorService RETIRE_TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "http-client-retire");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 等待关闭的旧客户端，shutdown时立即关闭
+     */
+    private static final Set<CloseableHttpClient> RETIRING = ConcurrentHashMap.newKeySet();
+
+    private static PoolingHttpClientConnectionManager connectionManager;
+
+    private static volatile DnsResolver dnsResolver;
+
+    private static volatile CloseableHttpClient httpClient;
+
+    private static volatile CloseableHttpAsyncClient httpAsyncClient;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(HttpClientManager::shutdown, "http-client-shutdown"));
+    }
+
+    /**
+     * 获取共享的HttpClient，首次调用时按默认参数初始化
+     * @return 线程安全的HttpClient
+     */
+    public static CloseableHttpClient getHttpClient() {
+        CloseableHttpClient client = httpClient;
+        if (client == null) {
+            synchronized (HttpClientManager.class) {
+                client = httpClient;
+                if (client == null) {
+                    init(maxTotal, maxPerRoute, keepAlive, maxIdleTime);
+                    client = httpClient;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * 获取连接池，用于调整单个路由的连接数或查看连接池状态
+     * @return 连接池
+     */
+    public static PoolingHttpClientConnectionManager getConnectionManager() {
+        getHttpClient();
+        return connectionManager;
+    }
+
+    /**
+     * 按指定参数(重新)初始化连接池，旧的客户端在进行中的请求完成后关闭
+     * @param maxTotal 连接池最大连接数
+     * @param maxPerRoute 每个路由的最大连接数
+     * @param keepAlive 服务端没有返回Keep-Alive头时连接的保持时间,ms
+     * @param maxIdleTime 空闲连接的最大存活时间,ms
+     */
+    public static synchronized void init(int maxTotal, int maxPerRoute, long keepAlive, long maxIdleTime) {
+        init(maxTotal, maxPerRoute, keepAlive, maxIdleTime, dnsResolver);
+    }
+
+    /**
+     * 按指定参数和DNS解析(重新)初始化连接池，旧的客户端在进行中的请求完成后关闭。启动时同时设置两者，只初始化一次
+     * @param maxTotal 连接池最大连接数
+     * @param maxPerRoute 每个路由的最大连接数
+     * @param keepAlive 服务端没有返回Keep-Alive头时连接的保持时间,ms
+     * @param maxIdleTime 空闲连接的最大存活时间,ms
+     * @param resolver 连接池使用的DNS解析，如CachingDnsResolver.custom().build()，传入null表示使用系统默认的解析
+     */
+    public static synchronized void init(int maxTotal, int maxPerRoute, long keepAlive, long maxIdleTime, DnsResolver resolver) {
+        HttpClientManager.dnsResolver = resolver;
+        HttpClientManager.maxTotal = maxTotal;
+        HttpClientManager.maxPerRoute = maxPerRoute;
+        HttpClientManager.keepAlive = keepAlive;
+        HttpClientManager.maxIdleTime = maxIdleTime;
+
+        PoolingHttpClientConnectionManager manager = new MeteredConnectionManager(dnsResolver);
+        manager.setMaxTotal(maxTotal);
+        manager.setDefaultMaxPerRoute(maxPerRoute);
+        //ClientProfile和LoadBalancer中单独设置的主机最大连接数
+        ClientProfiles.applyMaxPerRoute(manager);
+        LoadBalancers.applyMaxPerRoute(manager);
+
+        //开启响应缓存时使用带缓存的builder
+        CloseableHttpClient client = HttpResponseCache.createBuilder()
+                .setConnectionManager(manager)
+                .setKeepAliveStrategy(keepAliveStrategy(keepAlive))
+                //边读边解压gzip/deflate响应
+                .setContentDecoderRegistry(contentDecoders())
+                //开启HttpMetrics时统计各阶段耗时
+                .setRequestExecutor(new MeteredRequestExecutor())
+                //后台线程清理过期连接和空闲连接
+                .evictExpiredConnections()
+                .evictIdleConnections(maxIdleTime, TimeUnit.MILLISECONDS)
+                .build();
+
+        CloseableHttpClient old = httpClient;
+        PoolingHttpClientConnectionManager oldManager = connectionManager;
+        connectionManager = manager;
+        httpClient = client;
+
+        retire(old, oldManager);
+        logger.info("HttpClient连接池初始化完成, maxTotal={}, maxPerRoute={}", maxTotal, maxPerRoute);
+    }
+
+    /**
+     * 按上一次的参数重新初始化，用于开启或关闭响应缓存等需要重建客户端的配置变更
+     */
+    static synchronized void reinit() {
+        if (httpClient != null) {
+            init(maxTotal, maxPerRoute, keepAlive, maxIdleTime);
+        }
+    }
+
+    /**
+     * 设置连接池使用的DNS解析，已经初始化时会按上一次的参数重新初始化
+     * @param resolver 如CachingDnsResolver.custom().build()，传入null表示使用系统默认的解析
+     */
+    public static synchronized void setDnsResolver(DnsResolver resolver) {
+        dnsResolver = resolver;
+        reinit();
+    }
+
+    /**
+     * @return 连接池使用的DNS解析，没有设置时返回null
+     */
+    public static DnsResolver getDnsResolver() {
+        return dnsResolver;
+    }
+
+    /**
+     * 预热连接池：解析主机并为每个主机建立指定数量的长连接(包括TLS握手)，放回连接池供之后的请求直接复用
+     * 建议在启动完成、开始接收流量之前调用，避免发布后的第一批请求都要等待DNS和建立连接
+     * @param hosts scheme://host:port，路径部分会被忽略
+     * @param connectionsPerRoute 每个主机建立的连接数，不超过该主机的最大连接数，所有主机的连接总数不超过连接池的最大连接数
+     * @param timeout 整个预热过程最多等待的时间,ms，超时或失败的连接不影响启动
+     * @return 预热后连接池中可复用的连接数
+     */
+    public static int warmUp(Collection<String> hosts, int connectionsPerRoute, long timeout) {
+        PoolingHttpClientConnectionManager manager = getConnectionManager();
+        Set<HttpRoute> routes = new LinkedHashSet<>();
+        for (String host : hosts) {
+            routes.add(route(host));
+        }
+        if (routes.isEmpty() || connectionsPerRoute <= 0) {
+            return 0;
+        }
+
+        DnsResolver resolver = dnsResolver;
+        if (resolver instanceof CachingDnsResolver) {
+            List<String> hostNames = new ArrayList<>();
+            routes.forEach(route -> hostNames.add(route.getTargetHost().getHostName()));
+            ((CachingDnsResolver) resolver).prefetch(hostNames);
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(WARM_UP_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "http-warm-up-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        WarmUp warmUp = new WarmUp(manager);
+        //连接全部建立后才放回，总数超过连接池上限时后面的连接会一直等到超时，所以总数不超过空闲的名额，各主机轮流分配
+        int available = manager.getMaxTotal() - manager.getTotalStats().getLeased();
+        for (int i = 0; i < connectionsPerRoute && available > 0; i++) {
+            for (HttpRoute route : routes) {
+                if (available > 0 && i < manager.getMaxPerRoute(route)) {
+                    executor.execute(() -> warmUp.open(route, timeout));
+                    available--;
+                }
+            }
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //所有连接都建立后才放回连接池，否则后面的任务会直接拿到前面刚放回的连接
+        int opened = warmUp.release();
+        logger.info("HttpClient连接池预热完成, 主机数={}, 连接数={}", routes.size(), opened);
+        return opened;
+    }
+
+    /**
+     * 设置主机的最大连接数
+     * @param hosts scheme://host:port，没有端口时使用默认端口，与DefaultRoutePlanner一致
+     */
+    static void setMaxPerRoute(PoolingHttpClientConnectionManager manager, Collection<String> hosts, int max) {
+        for (String host : hosts) {
+            manager.setMaxPerRoute(route(host), max);
+        }
+    }
+
+    /**
+     * @param host scheme://host:port，没有端口时使用默认端口，与DefaultRoutePlanner一致，路径部分会被忽略
+     * @return 不经过代理的路由
+     */
+    private static HttpRoute route(String host) {
+        HttpHost target = withDefaultPort(URIUtils.extractHost(URI.create(host)));
+        return new HttpRoute(target, null, "https".equalsIgnoreCase(target.getSchemeName()));
+    }
+
+    /**
+     * @return 没有端口时补上scheme的默认端口，与DefaultRoutePlanner一致，http://svc和http://svc:80是同一个主机
+     */
+    static HttpHost withDefaultPort(HttpHost host) {
+        if (host.getPort() > 0) {
+            return host;
+        }
+        boolean secure = "https".equalsIgnoreCase(host.getSchemeName());
+        return new HttpHost(host.getHostName(), secure ? 443 : 80, host.getSchemeName());
+    }
+
+    /**
+     * 获取共享的异步HttpClient，首次调用时按默认参数初始化并启动IO Reactor
+     * @return 基于NIO的异步HttpClient
+     */
+    public static CloseableHttpAsyncClient getHttpAsyncClient() {
+        CloseableHttpAsyncClient client = httpAsyncClient;
+        if (client == null) {
+            synchronized (HttpClientManager.class) {
+                client = httpAsyncClient;
+                if (client == null) {
+                    initAsync(DEFAULT_MAX_TOTAL, DEFAULT_MAX_PER_ROUTE, DEFAULT_KEEP_ALIVE,
+                            Runtime.getRuntime().availableProcessors());
+                    client = httpAsyncClient;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * 按指定参数(重新)初始化异步客户端，旧的异步客户端会被关闭
+     * @param maxTotal 连接池最大连接数
+     * @param maxPerRoute 每个路由的最大连接数
+     * @param keepAlive 服务端没有返回Keep-Alive头时连接的保持时间,ms
+     * @param ioThreads IO Reactor线程数，少量线程即可驱动大量并发连接
+     */
+    public static synchronized void initAsync(int maxTotal, int maxPerRoute, long keepAlive, int ioThreads) {
+        PoolingNHttpClientConnectionManager manager;
+        try {
+            IOReactorConfig reactorConfig = IOReactorConfig.custom().setIoThreadCount(ioThreads).build();
+            manager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactorConfig));
+        } catch (IOReactorException e) {
+            throw new IllegalStateException("IO Reactor初始化失败", e);
+        }
+        manager.setMaxTotal(maxTotal);
+        manager.setDefaultMaxPerRoute(maxPerRoute);
+
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setConnectionManager(manager)
+                .setKeepAliveStrategy(keepAliveStrategy(keepAlive))
+                .build();
+        client.start();
+
+        CloseableHttpAsyncClient old = httpAsyncClient;
+        httpAsyncClient = client;
+
+        close(old);
+        logger.info("异步HttpClient初始化完成, maxTotal={}, maxPerRoute={}, ioThreads={}", maxTotal, maxPerRoute, ioThreads);
+    }
+
+    /**
+     * 关闭共享的HttpClient并释放连接池，之后再次调用getHttpClient会按默认参数重新初始化
+     */
+    public static synchronized void shutdown() {
+        CloseableHttpClient old = httpClient;
+        httpClient = null;
+        connectionManager = null;
+        close(old);
+        for (CloseableHttpClient retiring : RETIRING) {
+            if (RETIRING.remove(retiring)) {
+                close(retiring);
+            }
+        }
+
+        CloseableHttpAsyncClient oldAsync = httpAsyncClient;
+        httpAsyncClient = null;
+        close(oldAsync);
+    }
+
+    /**
+     * 优先使用服务端返回的Keep-Alive时间，没有则使用默认值
+     * @param keepAlive 默认保持时间,ms
+     * @return 长连接策略
+     */
+    private static ConnectionKeepAliveStrategy keepAliveStrategy(long keepAlive) {
+        return (HttpResponse response, HttpContext context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? duration : keepAlive;
+        };
+    }
+
+    /**
+     * 与默认的解压方式相同，gzip使用更大的缓冲区，减少读取压缩数据时的系统调用次数
+     * @return 按Content-Encoding选择的解压方式
+     */
+    private static Map<String, InputStreamFactory> contentDecoders() {
+        InputStreamFactory gzip = inputStream -> new GZIPInputStream(inputStream, HttpClientUtils.BUFFER_SIZE);
+        Map<String, InputStreamFactory> decoders = new LinkedHashMap<>();
+        decoders.put("gzip", gzip);
+        decoders.put("x-gzip", gzip);
+        decoders.put("deflate", DeflateInputStreamFactory.getInstance());
+        return decoders;
+    }
+
+    /**
+     * 预热过程中建立的连接，全部建立完成后统一放回连接池
+     */
+    private static class WarmUp {
+
+        private final PoolingHttpClientConnectionManager manager;
+
+        private final List<HttpClientConnection> connections = new ArrayList<>();
+
+        /**
+         * 已经失败过的路由，不再继续建立连接，也不重复记录日志
+         */
+        private final Set<HttpRoute> failedRoutes = ConcurrentHashMap.newKeySet();
+
+        private boolean released;
+
+        private WarmUp(PoolingHttpClientConnectionManager manager) {
+            this.manager = manager;
+        }
+
+        private void open(HttpRoute route, long timeout) {
+            if (failedRoutes.contains(route)) {
+                return;
+            }
+            HttpClientConnection connection;
+            try {
+                connection = manager.requestConnection(route, null).get(timeout, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                fail(route, e);
+                return;
+            }
+            try {
+                if (!connection.isOpen()) {
+                    int connectTimeout = ClientProfiles.get(URI.create(route.getTargetHost().toURI())).getConnectTimeout();
+                    HttpClientContext context = HttpClientContext.create();
+                    manager.connect(connection, route, connectTimeout > 0 ? (int) Math.min(connectTimeout, timeout) : (int) timeout, context);
+                    manager.routeComplete(connection, route, context);
+                }
+            } catch (IOException | RuntimeException e) {
+                manager.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+                fail(route, e);
+                return;
+            }
+            synchronized (this) {
+                if (!released) {
+                    connections.add(connection);
+                    return;
+                }
+            }
+            //预热已经超时结束，直接放回
+            manager.releaseConnection(connection, null, keepAlive, TimeUnit.MILLISECONDS);
+        }
+
+        private void fail(HttpRoute route, Exception e) {
+            if (failedRoutes.add(route)) {
+                logger.warn("预热连接失败, route:{}, 异常:{}", route, e.toString());
+            }
+        }
+
+        private int release() {
+            List<HttpClientConnection> opened;
+            synchronized (this) {
+                released = true;
+                opened = new ArrayList<>(connections);
+            }
+            for (HttpClientConnection connection : opened) {
+                manager.releaseConnection(connection, null, keepAlive, TimeUnit.MILLISECONDS);
+            }
+            return opened.size();
+        }
+    }
+
+    /**
+     * 替换后的旧客户端：其他线程可能还在用它发送请求或读取响应体，立即关闭会中断这些请求。
+     * 先关闭空闲连接，等借出的连接全部归还或超过RETIRE_TIMEOUT后再关闭
+     */
+    private static void retire(CloseableHttpClient client, PoolingHttpClientConnectionManager manager) {
+        if (client == null) {
+            return;
+        }
+        manager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+        RETIRING.add(client);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RETIRE_TIMEOUT);
+        //替换前取到旧客户端的请求可能还没有借出连接，至少等待一个检查间隔
+        RETIRE_TIMER.schedule(() -> closeWhenReleased(client, manager, deadline), RETIRE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    private static void closeWhenReleased(CloseableHttpClient client, PoolingHttpClientConnectionManager manager, long deadline) {
+        if (manager.getTotalStats().getLeased() > 0 && System.nanoTime() - deadline < 0) {
+            RETIRE_TIMER.schedule(() -> closeWhenReleased(client, manager, deadline), RETIRE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+            return;
+        }
+        if (RETIRING.remove(client)) {
+            close(client);
+        }
+    }
+
+    private static void close(Closeable client) {
+        if (client == null) {
+            return;
+        }
+        try {
+            client.close();
+        } catch (IOException e) {
+            logger.warn("关闭HttpClient失败", e);
+        }
+    }
+}
@@ -1,35 +1,46 @@
 package com.yky.http.utils;
 
+import com.alibaba.fastjson.TypeReference;
 import org.apache.http.HttpEntity;
-import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 
 import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.entity.mime.content.ContentBody;
 
 /**
  * @author wuhualu
@@ -38,86 +49,268 @@ public class HttpClientUtils {
 
     private static Logger logger = LoggerFactory.getLogger(HttpClientUtils.class);
 
+    /**
+     * 按块读取响应时的缓冲区大小
+     */
+    static final int BUFFER_SIZE = 8192;
+
+    /**
+     * 写入文件时每次transferFrom的最大字节数
+     */
+    private static final long TRANSFER_SIZE = 1024 * 1024;
+
 
     /**
-     * 发送GET请求
+     * 发送请求，响应内容读取为字符串
+     * 开启SingleFlight后，并发的相同GET请求只会发送一次
      * @param requestBase
      */
     private static String execute(HttpRequestBase requestBase) {
-        try (
-                //创建一个HttpClient对象
-                CloseableHttpClient httpClient = HttpClientBuilder.create().build();
-
-                //创建响应模型
-                CloseableHttpResponse response = httpClient.execute(requestBase);
-                ) {
+        if (SingleFlight.isEnabled()) {
+            return SingleFlight.execute(requestBase, () -> executeForString(requestBase));
+        }
+        return executeForString(requestBase);
+    }
 
+    private static String executeForString(HttpRequestBase requestBase) {
+        return execute(requestBase, response -> {
             //获得响应实体
             HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                return null;
+            }
 
-            //获得实体内容,设置编码，防止响应乱码
-            String entityString = EntityUtils.toString(entity, StandardCharsets.UTF_8);
+            //获得实体内容,设置编码，防止响应乱码。读入池中的数组，超过maxBodySize时中止
+            Charset charset = getCharset(entity);
+            String entityString = ResponseBodyReader.read(requestBase, entity, (buffer, length) -> new String(buffer, 0, length, charset));
 
             //获得响应状态码
             int statusCode = response.getStatusLine().getStatusCode();
 
-            logger.debug("URL:" + requestBase.getURI());
-            logger.debug("Method:" + requestBase.getMethod());
-            logger.debug("code:" + statusCode);
-            logger.debug("响应内容为:" + entityString);
+            if (logger.isDebugEnabled()) {
+                logger.debug("URL:{} Method:{} code:{}", requestBase.getURI(), requestBase.getMethod(), statusCode);
+            }
+            //完整的响应内容只在trace级别输出，线上排查问题使用HttpCapture抽样抓取
+            if (logger.isTraceEnabled()) {
+                logger.trace("响应内容为:{}", entityString);
+            }
 
             return entityString;
+        });
+    }
+
+    /**
+     * 设置重试和对冲请求的策略，默认不重试
+     * @param retryPolicy 通过RetryPolicy.custom()...build()创建，传入null表示不重试
+     */
+    public static void setRetryPolicy(RetryPolicy retryPolicy) {
+        RequestExecutor.setRetryPolicy(retryPolicy);
+    }
+
+    /**
+     * 设置发送请求的传输层，默认为基于连接池的HTTP/1.1。替换时不会关闭原来的传输层
+     * @param transport 如Http2Transport.custom().build()，传入null表示恢复默认
+     */
+    public static void setTransport(HttpTransport transport) {
+        RequestExecutor.setTransport(transport);
+    }
+
+    /**
+     * 注册一组主机共用的客户端配置，同名的配置会被替换
+     * @param profile 通过ClientProfile.custom(name)...build()创建
+     */
+    public static void addProfile(ClientProfile profile) {
+        ClientProfiles.add(profile);
+    }
+
+    /**
+     * 移除客户端配置，对应的主机改用默认配置。已经设置的主机最大连接数不会恢复
+     * @param name 配置名称
+     */
+    public static void removeProfile(String name) {
+        ClientProfiles.remove(name);
+    }
+
+    /**
+     * 设置没有匹配到ClientProfile的主机使用的默认配置，默认连接超时和获取连接超时都是5000ms
+     * @param profile 传入null表示恢复默认
+     */
+    public static void setDefaultProfile(ClientProfile profile) {
+        ClientProfiles.setDefault(profile);
+    }
+
+    /**
+     * 获取请求该地址时使用的客户端配置
+     * @param url 请求地址
+     * @return 匹配的ClientProfile，没有则返回默认配置
+     */
+    public static ClientProfile getProfile(String url) {
+        return ClientProfiles.get(URI.create(url));
+    }
+
+    /**
+     * 注册客户端负载均衡，之后lb://name/path形式的地址会被分发到它的实例上，同名的会被替换
+     * @param loadBalancer 通过LoadBalancer.custom(name)...build()创建
+     */
+    public static void addLoadBalancer(LoadBalancer loadBalancer) {
+        LoadBalancers.add(loadBalancer);
+    }
+
+    public static void removeLoadBalancer(String name) {
+        LoadBalancers.remove(name);
+    }
+
+    /**
+     * @param name 服务名
+     * @return 注册的LoadBalancer，没有则返回null，可以用来更新实例列表或查看实例状态
+     */
+    public static LoadBalancer getLoadBalancer(String name) {
+        return LoadBalancers.get(name);
+    }
+
+    /**
+     * 在当前线程中以指定的响应体大小上限执行请求，优先于ClientProfile中的maxBodySize
+     * 如：HttpClientUtils.withMaxBodySize(1024 * 1024, () -> HttpClientUtils.requestGet(url, 5000))
+     * @param maxBodySize 响应体的大小上限,字节，-1表示不限制
+     * @param call 发送请求
+     * @return call的返回值，响应体超限时请求方法返回null
+     */
+    public static <T> T withMaxBodySize(long maxBodySize, Supplier<T> call) {
+        return ResponseBodyReader.withMaxBodySize(maxBodySize, call);
+    }
+
+    /**
+     * 在当前线程中以一个共同的截止时间执行一次或多次请求，嵌套调用时取更早的截止时间
+     * 获取连接、建立连接、读取、重定向和重试都只能使用剩余的时间，到期时中止请求，剩余时间通过ClientProfile的deadlineHeader传给下游
+     * 如：HttpClientUtils.withDeadline(800, () -> HttpClientUtils.requestGet(url, 5000))
+     * @param timeoutMillis 从现在开始的剩余时间,ms
+     * @param call 发送请求
+     * @return call的返回值，超过截止时间时请求方法返回null并记录DeadlineExceededException
+     */
+    public static <T> T withDeadline(long timeoutMillis, Supplier<T> call) {
+        return Deadline.with(Deadline.after(timeoutMillis), call);
+    }
+
+    /**
+     * 设置按主机熔断的策略，熔断器打开时请求直接抛出CircuitBreakerOpenException，默认不熔断
+     * @param circuitBreakerPolicy 通过CircuitBreakerPolicy.custom()...build()创建，传入null表示关闭
+     */
+    public static void setCircuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+        RequestExecutor.setCircuitBreakerPolicy(circuitBreakerPolicy);
+    }
+
+    /**
+     * 设置按路由自适应限制并发数的策略，超过上限的请求直接抛出ConcurrencyLimitExceededException，默认不限制
+     * @param concurrencyLimitPolicy 通过ConcurrencyLimitPolicy.custom()...build()创建，传入null表示关闭
+     */
+    public static void setConcurrencyLimitPolicy(ConcurrencyLimitPolicy concurrencyLimitPolicy) {
+        RequestExecutor.setConcurrencyLimitPolicy(concurrencyLimitPolicy);
+    }
+
+    /**
+     * 设置按路由限制请求速率的策略，超过速率时按策略的Mode等待或抛出RateLimitExceededException，默认不限制
+     * 收到429/503时会按Retry-After暂停发送并降低速率
+     * @param rateLimitPolicy 通过RateLimitPolicy.custom()...build()创建，传入null表示关闭
+     */
+    public static void setRateLimitPolicy(RateLimitPolicy rateLimitPolicy) {
+        RequestExecutor.setRateLimitPolicy(rateLimitPolicy);
+    }
+
+    /**
+     * 发送请求，使用HttpClientManager中共享的连接池，失败时按RetryPolicy重试
+     * @param requestBase
+     * @param handler 响应处理，处理完成后连接归还连接池
+     */
+    static <T> T execute(HttpRequestBase requestBase, ResponseHandler<T> handler) {
+        try (
+                //创建响应模型,关闭响应后连接会归还连接池
+                CloseableHttpResponse response = RequestExecutor.execute(requestBase);
+                ) {
+
+            try {
+                return handler.handleResponse(response);
+            } finally {
+                HttpMetrics.complete(response);
+            }
 
         } catch (IOException e) {
-            e.printStackTrace();
-            logger.error("遇到异常，消息发送失败");
+            logger.error("遇到异常，消息发送失败, URL:{}", requestBase.getURI(), e);
         }
 
         return null;
     }
 
     /**
-     * 解析请求参数
-     * @param map 请求参数的map集合
-     * @return
+     * 发送请求，以流的形式返回响应内容。流读完或关闭后连接才会归还连接池，调用方必须关闭返回的流
+     * @param requestBase
+     * @return 响应内容的流，请求失败时返回null
      */
-    private static String getParams(Map<String,Object> map) {
+    private static InputStream executeForStream(HttpRequestBase requestBase) {
+        try {
+            CloseableHttpResponse response = RequestExecutor.execute(requestBase);
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("URL:{} Method:{} code:{}", requestBase.getURI(), requestBase.getMethod(),
+                        response.getStatusLine().getStatusCode());
+            }
 
-        if(map == null || map.size() == 0) {
-            return "";
+            return new ResponseInputStream(response);
+        } catch (IOException e) {
+            logger.error("遇到异常，消息发送失败, URL:{}", requestBase.getURI(), e);
         }
 
-        StringBuffer params = new StringBuffer();
+        return null;
+    }
 
-        try {
-            //使用EntrySet遍历map
-            for (Map.Entry<String,Object> entry : map.entrySet()) {
-                //拿到value,判断是不是字符串
-                if(entry.getValue() instanceof String) {
-                    //字符串在这里做一下编码,防止汉字乱码
-                    params.append(entry.getKey() + "=" + URLEncoder.encode((String) entry.getValue(),"utf-8"));
-                } else {
-                    params.append(entry.getKey() + "=" + entry.getValue());
-                }
-                //添加连接符
-                params.append("&");
+    /**
+     * 发送请求，响应体读入池化的字节缓冲区后直接按字节解析json，不经过中间的字符串
+     * @param requestBase
+     * @param type 响应类型
+     * @return 响应为空或请求失败时返回null
+     */
+    private static <T> T executeForJson(HttpRequestBase requestBase, Type type) {
+        return execute(requestBase, response -> {
+            HttpEntity entity = response.getEntity();
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("URL:{} Method:{} code:{}", requestBase.getURI(), requestBase.getMethod(),
+                        response.getStatusLine().getStatusCode());
             }
-            //删除最后一个&符号
-            params.deleteCharAt(params.length() - 1);
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-        }
 
-        return "?" + params.toString();
+            if (entity == null) {
+                return null;
+            }
+
+            Charset charset = getCharset(entity);
+            return ResponseBodyReader.read(requestBase, entity,
+                    (buffer, length) -> FastJsonUtils.<T>jsonBytesToEntity(buffer, 0, length, charset, type));
+        });
     }
 
+    /**
+     * 获取响应的编码，响应头中没有指定时使用UTF-8
+     * @param entity 响应实体
+     * @return 编码
+     */
+    static Charset getCharset(HttpEntity entity) {
+        Charset charset = null;
+        try {
+            ContentType contentType = ContentType.get(entity);
+            if (contentType != null) {
+                charset = contentType.getCharset();
+            }
+        } catch (RuntimeException e) {
+            logger.debug("无法解析响应的Content-Type: {}", e.getMessage());
+        }
+        return charset == null ? StandardCharsets.UTF_8 : charset;
+    }
 
     /**
      * 封装请求头
      * @param headers
      * @param requestBase
      */
-    private static void setHeaders(Map<String,String> headers, HttpRequestBase requestBase) {
+    static void setHeaders(Map<String,String> headers, HttpRequestBase requestBase) {
         if(headers != null && headers.size() > 0) {
             for (Map.Entry<String,String> entry : headers.entrySet()) {
 
@@ -131,19 +324,13 @@ public class HttpClientUtils {
     }
 
 
-    private static void setConfig(Integer timeOut, HttpRequestBase requestBase) {
-        //配置超时时间
-        RequestConfig requestConfig = RequestConfig.custom()
-                //设置连接超时,单位ms
-                .setConnectTimeout(5000)
-                //设置请求超时时间,单位ms
-                .setConnectionRequestTimeout(5000)
-                //socket读写超时时间,单位ms
-                .setSocketTimeout(timeOut)
-                //设置是否允许重定向(默认为true)
-                .setRedirectsEnabled(true).build();
-
-        requestBase.setConfig(requestConfig);
+    /**
+     * 按请求的主机设置ClientProfile中预先构造好的RequestConfig和默认请求头
+     * @param timeOut socket超时时间,ms，为null时使用ClientProfile中的值
+     * @param requestBase
+     */
+    static void setConfig(Integer timeOut, HttpRequestBase requestBase) {
+        ClientProfiles.get(requestBase).apply(timeOut, requestBase);
     }
 
     /**
@@ -155,12 +342,15 @@ public class HttpClientUtils {
      * @return
      */
     public static String requestGet(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap) {
+        return execute(createGet(url, timeOut, headers, entityMap));
+    }
 
+    /**
+     * 构造带参的GET请求，参数说明同requestGet
+     */
+    static HttpGet createGet(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap) {
         //拼接请求参数到URL后面
-        url += getParams(entityMap);
-
-        //创建GET请求
-        HttpGet httpGet = new HttpGet(url);
+        HttpGet httpGet = new HttpGet(UrlBuilder.toUri(url, entityMap));
 
         //设置头部
         setHeaders(headers, httpGet);
@@ -168,7 +358,178 @@ public class HttpClientUtils {
         //配置超时时间
         setConfig(timeOut, httpGet);
 
-        return execute(httpGet);
+        return httpGet;
+    }
+
+    /**
+     * 发送带参的GET请求，响应的json按字节直接转换为指定类型
+     * @param url 请求地址
+     * @param timeOut socket超时时间，ms
+     * @param headers 请求头部，如果不需要请传入null
+     * @param entityMap 请求参数，key-value形式，最后会拼接到url后面
+     * @param clazz 响应类型
+     * @return 响应为空或请求失败时返回null
+     */
+    public static <T> T requestGet(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap, Class<T> clazz) {
+        return executeForJson(createGet(url, timeOut, headers, entityMap), clazz);
+    }
+
+    /**
+     * 发送带参的GET请求，响应的json按字节直接转换为指定的泛型类型，如List&lt;User&gt;
+     * @param url 请求地址
+     * @param timeOut socket超时时间，ms
+     * @param headers 请求头部，如果不需要请传入null
+     * @param entityMap 请求参数，key-value形式，最后会拼接到url后面
+     * @param typeReference 响应类型，如new TypeReference&lt;List&lt;User&gt;&gt;(){}
+     * @return 响应为空或请求失败时返回null
+     */
+    public static <T> T requestGet(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap, TypeReference<T> typeReference) {
+        return executeForJson(createGet(url, timeOut, headers, entityMap), typeReference.getType());
+    }
+
+    /**
+     * 发送带参的GET请求，响应是json数组时逐个解析元素并回调，适用于很大的数组
+     * @param url 请求地址
+     * @param timeOut socket超时时间，ms
+     * @param headers 请求头部，如果不需要请传入null
+     * @param entityMap 请求参数，key-value形式，最后会拼接到url后面
+     * @param elementType 数组元素类型
+     * @param consumer 每解析出一个元素就回调一次
+     * @return 元素个数，请求失败时返回-1
+     */
+    public static <T> long requestGetJsonArray(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap, Class<T> elementType, Consumer<T> consumer) {
+        Long count = execute(createGet(url, timeOut, headers, entityMap), response -> {
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                return 0L;
+            }
+
+            try (InputStream inputStream = entity.getContent()) {
+                return FastJsonUtils.jsonArrayStreamToEntities(inputStream, getCharset(entity), elementType, consumer);
+            }
+        });
+
+        return count == null ? -1 : count;
+    }
+
+    /**
+     * 发送带参的GET请求，以流的形式返回响应内容，适用于大响应体，避免整个响应读入内存
+     * 流读完或关闭后连接才会归还连接池，请使用try-with-resources关闭返回的流
+     * @param url 请求地址
+     * @param timeOut socket超时时间，ms
+     * @param headers 请求头部，如果不需要请传入null
+     * @param entityMap 请求参数，key-value形式，最后会拼接到url后面
+     * @return 响应内容的流，请求失败时返回null
+     */
+    public static InputStream requestGetForStream(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap) {
+        return executeForStream(createGet(url, timeOut, headers, entityMap));
+    }
+
+    /**
+     * 发送带参的GET请求，以Channel的形式返回响应内容，参数说明同requestGetForStream
+     * @return 响应内容的Channel，请求失败时返回null
+     */
+    public static ReadableByteChannel requestGetForChannel(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap) {
+        InputStream inputStream = requestGetForStream(url, timeOut, headers, entityMap);
+        return inputStream == null ? null : Channels.newChannel(inputStream);
+    }
+
+    /**
+     * 发送带参的GET请求，响应内容按块回调给consumer，不会在内存中保留整个响应
+     * @param url 请求地址
+     * @param timeOut socket超时时间，ms
+     * @param headers 请求头部，如果不需要请传入null
+     * @param entityMap 请求参数，key-value形式，最后会拼接到url后面
+     * @param consumer 响应内容的处理
+     * @return 读取的字节数，请求失败时返回-1
+     */
+    public static long requestGet(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap, ChunkConsumer consumer) {
+        Long total = execute(createGet(url, timeOut, headers, entityMap), response -> {
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                return 0L;
+            }
+
+            long count = 0;
+            byte[] buffer = BufferPool.acquire(BUFFER_SIZE);
+            try (InputStream inputStream = entity.getContent()) {
+                int n;
+                while ((n = inputStream.read(buffer)) != -1) {
+                    consumer.accept(buffer, 0, n);
+                    count += n;
+                }
+            } finally {
+                BufferPool.release(buffer);
+            }
+            return count;
+        });
+
+        return total == null ? -1 : total;
+    }
+
+    /**
+     * 下载文件，响应内容直接写入文件，不经过字符串转换
+     * 响应状态码不是2xx时不会写入文件
+     * @param url 请求地址
+     * @param timeOut socket超时时间，ms
+     * @param headers 请求头部，如果不需要请传入null
+     * @param entityMap 请求参数，key-value形式，最后会拼接到url后面
+     * @param file 保存的文件，已存在则覆盖
+     * @return 写入的字节数，下载失败时返回-1
+     */
+    public static long download(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap, File file) {
+        Long total = execute(createGet(url, timeOut, headers, entityMap), response -> {
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode < 200 || statusCode >= 300) {
+                logger.error("下载失败, URL:{}, code:{}", url, statusCode);
+                return -1L;
+            }
+
+            HttpEntity entity = response.getEntity();
+            try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                if (entity == null) {
+                    return 0L;
+                }
+                return transfer(entity.getContent(), fileChannel);
+            }
+        });
+
+        return total == null ? -1 : total;
+    }
+
+    /**
+     * 分段并行下载大文件，每段使用连接池中的一个连接，直接写入文件的对应位置
+     * 服务端不支持Range或文件较小时，退化为单连接下载。每段失败时会单独重试
+     * @param url 请求地址
+     * @param timeOut socket超时时间，ms
+     * @param headers 请求头部，如果不需要请传入null
+     * @param file 保存的文件，已存在则覆盖
+     * @param parallelism 并行下载的段数，不要超过连接池每个路由的最大连接数
+     * @return 写入的字节数，下载失败时返回-1，分段下载开始后失败时会删除未下载完整的文件
+     */
+    public static long download(String url, Integer timeOut, Map<String,String> headers, File file, int parallelism) {
+        return new RangeDownloader(url, timeOut, headers, file, parallelism).download();
+    }
+
+    /**
+     * 将流写入文件，每次transferFrom最多TRANSFER_SIZE字节
+     * 源是普通的InputStream，Channels.newChannel内部仍会经过一个字节数组复制，不是零拷贝；
+     * 省去的只是自己维护缓冲区和循环写入，以及把响应转换成字符串
+     * @param inputStream 源
+     * @param fileChannel 目标文件
+     * @return 写入的字节数
+     */
+    static long transfer(InputStream inputStream, FileChannel fileChannel) throws IOException {
+        long position = fileChannel.position();
+        long start = position;
+        try (ReadableByteChannel source = Channels.newChannel(inputStream)) {
+            long n;
+            while ((n = fileChannel.transferFrom(source, position, TRANSFER_SIZE)) > 0) {
+                position += n;
+            }
+        }
+        return position - start;
     }
 
     /**
@@ -190,11 +551,15 @@ public class HttpClientUtils {
      * @return
      */
     public static String requestPost(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap) {
-        //拼接请求参数到URL后面
-        url += getParams(entityMap);
+        return execute(createPost(url, timeOut, headers, entityMap));
+    }
 
-        //创建POST请求
-        HttpPost httpPost = new HttpPost(url);
+    /**
+     * 构造参数拼接在URL后面的POST请求，参数说明同requestPost
+     */
+    static HttpPost createPost(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap) {
+        //拼接请求参数到URL后面
+        HttpPost httpPost = new HttpPost(UrlBuilder.toUri(url, entityMap));
 
         setHeaders(headers,httpPost);
 
@@ -204,7 +569,7 @@ public class HttpClientUtils {
         //配置超时时间
         setConfig(timeOut, httpPost);
 
-        return execute(httpPost);
+        return httpPost;
     }
 
     /**
@@ -228,6 +593,13 @@ public class HttpClientUtils {
      * @return
      */
     public static String requestFormPost(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap) {
+        return execute(createFormPost(url, timeOut, headers, entityMap));
+    }
+
+    /**
+     * 构造普通POST表单请求(不带文件)，参数说明同requestFormPost
+     */
+    static HttpPost createFormPost(String url, Integer timeOut, Map<String,String> headers, Map<String,Object> entityMap) {
         //创建POST请求
         HttpPost httpPost = new HttpPost(url);
 
@@ -263,7 +635,7 @@ public class HttpClientUtils {
         //配置超时时间
         setConfig(timeOut, httpPost);
 
-        return execute(httpPost);
+        return httpPost;
     }
 
     /**
@@ -275,6 +647,34 @@ public class HttpClientUtils {
      * @return
      */
     public static String requestJsonPost(String url, Integer timeOut, Map<String,String> headers, String jsonString) {
+        return execute(createJsonPost(url, timeOut, headers, jsonString));
+    }
+
+    /**
+     * 构造带JSON的POST请求，参数说明同requestJsonPost
+     */
+    static HttpPost createJsonPost(String url, Integer timeOut, Map<String,String> headers, String jsonString) {
+        //防止中文乱码
+        StringEntity stringEntity = new StringEntity(jsonString,"UTF-8");
+
+        return createJsonPost(url, timeOut, headers, stringEntity);
+    }
+
+    /**
+     * 构造带JSON的POST请求，对象直接序列化为UTF-8字节发送，不经过中间的字符串
+     * @param entity 消息体,支持Map、自定义类，字符串会被当作json直接发送
+     */
+    static <T> HttpPost createJsonPost(String url, Integer timeOut, Map<String,String> headers, T entity) {
+        if (entity instanceof String) {
+            return createJsonPost(url, timeOut, headers, (String) entity);
+        }
+
+        ByteArrayEntity byteArrayEntity = new ByteArrayEntity(FastJsonUtils.entityToJsonBytes(entity), ContentType.APPLICATION_JSON);
+
+        return createJsonPost(url, timeOut, headers, byteArrayEntity);
+    }
+
+    private static HttpPost createJsonPost(String url, Integer timeOut, Map<String,String> headers, HttpEntity httpEntity) {
         //创建post请求
         HttpPost httpPost = new HttpPost(url);
 
@@ -283,14 +683,11 @@ public class HttpClientUtils {
 
         setHeaders(headers, httpPost);
 
-        //防止中文乱码
-        StringEntity stringEntity = new StringEntity(jsonString,"UTF-8");
-
-        httpPost.setEntity(stringEntity);
+        httpPost.setEntity(httpEntity);
 
         setConfig(timeOut, httpPost);
 
-        return execute(httpPost);
+        return httpPost;
     }
 
     /**
@@ -302,9 +699,93 @@ public class HttpClientUtils {
      * @return
      */
     public static <T>  String requestJsonPost(String url, Integer timeOut, Map<String,String> headers, T entity) {
-        String jsonString = FastJsonUtils.entityToJsonString(entity);
+        return execute(createJsonPost(url, timeOut, headers, entity));
+    }
+
+    /**
+     * 发送带JSON的POST请求，响应的json按字节直接转换为指定类型
+     * @param url 请求地址
+     * @param timeOut 超时时间
+     * @param headers 请求头部，如果不需要请传入null
+     * @param entity 消息体,支持Map、自定义类，字符串会被当作json直接发送
+     * @param clazz 响应类型
+     * @return 响应为空或请求失败时返回null
+     */
+    public static <T, R> R requestJsonPost(String url, Integer timeOut, Map<String,String> headers, T entity, Class<R> clazz) {
+        return executeForJson(createJsonPost(url, timeOut, headers, entity), clazz);
+    }
+
+    /**
+     * 发送带JSON的POST请求，响应的json按字节直接转换为指定的泛型类型，如List&lt;User&gt;
+     * @param url 请求地址
+     * @param timeOut 超时时间
+     * @param headers 请求头部，如果不需要请传入null
+     * @param entity 消息体,支持Map、自定义类，字符串会被当作json直接发送
+     * @param typeReference 响应类型，如new TypeReference&lt;List&lt;User&gt;&gt;(){}
+     * @return 响应为空或请求失败时返回null
+     */
+    public static <T, R> R requestJsonPost(String url, Integer timeOut, Map<String,String> headers, T entity, TypeReference<R> typeReference) {
+        return executeForJson(createJsonPost(url, timeOut, headers, entity), typeReference.getType());
+    }
+
+    /**
+     * 发送json数组的POST请求，元素边遍历边序列化，以chunked方式发送，不会在内存中拼出整个数组
+     * 元素只能遍历一次，请求失败时不会重试
+     * @param url 请求地址
+     * @param timeOut 超时时间
+     * @param headers 请求头部，如果不需要请传入null
+     * @param elements 数组元素，支持Map、自定义类
+     * @return 请求失败时返回null
+     */
+    public static <T> String requestJsonArrayPost(String url, Integer timeOut, Map<String,String> headers, Iterator<T> elements) {
+        return execute(createJsonStreamPost(url, timeOut, headers, new JsonStreamEntity(elements, false)));
+    }
 
-        return requestJsonPost(url,timeOut,headers,jsonString);
+    /**
+     * 发送json数组的POST请求，参数说明同requestJsonArrayPost(url, timeOut, headers, Iterator)
+     * @param elements 数组元素，请求结束后关闭
+     */
+    public static <T> String requestJsonArrayPost(String url, Integer timeOut, Map<String,String> headers, Stream<T> elements) {
+        try (Stream<T> stream = elements) {
+            return execute(createJsonStreamPost(url, timeOut, headers, new JsonStreamEntity(stream.iterator(), false)));
+        }
+    }
+
+    /**
+     * 发送NDJSON(每行一个json)的POST请求，Content-Type: application/x-ndjson，其他同requestJsonArrayPost
+     * @param url 请求地址
+     * @param timeOut 超时时间
+     * @param headers 请求头部，如果不需要请传入null
+     * @param elements 每行的对象，支持Map、自定义类
+     * @return 请求失败时返回null
+     */
+    public static <T> String requestNdjsonPost(String url, Integer timeOut, Map<String,String> headers, Iterator<T> elements) {
+        return execute(createJsonStreamPost(url, timeOut, headers, new JsonStreamEntity(elements, true)));
+    }
+
+    /**
+     * 发送NDJSON的POST请求，参数说明同requestNdjsonPost(url, timeOut, headers, Iterator)
+     * @param elements 每行的对象，请求结束后关闭
+     */
+    public static <T> String requestNdjsonPost(String url, Integer timeOut, Map<String,String> headers, Stream<T> elements) {
+        try (Stream<T> stream = elements) {
+            return execute(createJsonStreamPost(url, timeOut, headers, new JsonStreamEntity(stream.iterator(), true)));
+        }
+    }
+
+    private static HttpPost createJsonStreamPost(String url, Integer timeOut, Map<String,String> headers, JsonStreamEntity entity) {
+        HttpPost httpPost = new HttpPost(url);
+
+        //Content-Type由实体决定(json数组或NDJSON)
+        httpPost.setHeader(entity.getContentType());
+
+        setHeaders(headers, httpPost);
+
+        httpPost.setEntity(entity);
+
+        setConfig(timeOut, httpPost);
+
+        return httpPost;
     }
 
     /**
@@ -315,31 +796,54 @@ public class HttpClientUtils {
      * @param entityMap 消息体，如果想传数组的话，请用Collection或继承自Collection的类,如List，ArrayList等
      * @param filesKey 文件在表单的key
      * @param fileNames 要上传的文件路径名，支持多个文件
-     * @return
+     * @return 请求失败或任何一个文件读取失败时返回null，不会只上传其中一部分文件
      */
     public static String requestFormPost(String url, Integer timeOut, Map<String,String> headers, Map<String,String> entityMap, String filesKey, String... fileNames) {
-        //创建POST请求
-        HttpPost httpPost = new HttpPost(url);
-
-        MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create();
-
+        List<ContentBody> files = new LinkedList<>();
 
         if (fileNames == null || fileNames.length == 0) {
             logger.warn("文件列表为空");
         } else {
             for (String fileName : fileNames) {
-                File file = new File(fileName);
                 //多个文件的话，使用同一个key就行，后端用数组或集合进行接收即可
                 try {
                     // 防止服务端收到的文件名乱码。 我们这里可以先将文件名URLEncode，然后服务端拿到文件名时在URLDecode。就能避免乱码问题。
                     // 文件名其实是放在请求头的Content-Disposition里面进行传输的，如其值为form-data; name="files"; filename="头像.jpg"
-                    multipartEntityBuilder.addBinaryBody(filesKey, file, ContentType.DEFAULT_BINARY, URLEncoder.encode(file.getName(), "utf-8"));
-                } catch (UnsupportedEncodingException e) {
-                    e.printStackTrace();
+                    files.add(FileRangeBody.of(Paths.get(fileName)));
+                } catch (IOException e) {
+                    logger.error("读取文件失败: {}", fileName, e);
+                    return null;
                 }
             }
         }
 
+        return requestFormPost(url, timeOut, headers, entityMap, filesKey, null, files.toArray(new ContentBody[0]));
+    }
+
+    /**
+     * 发送带文件的POST请求,Content-Type: multipart/form-data
+     * 文件内容在发送时才读取并直接写到连接上，不会整个读入内存
+     * @param url 请求地址
+     * @param timeOut 超时时间
+     * @param headers 请求头
+     * @param entityMap 普通表单参数
+     * @param filesKey 文件在表单的key
+     * @param listener 上传进度回调，不需要请传入null
+     * @param files 要上传的内容，文件或文件的一段请用FileRangeBody.of，InputStream请用InputStreamBody(长度未知时使用chunked传输)
+     * @return
+     */
+    public static String requestFormPost(String url, Integer timeOut, Map<String,String> headers, Map<String,String> entityMap, String filesKey, ProgressListener listener, ContentBody... files) {
+        //创建POST请求
+        HttpPost httpPost = new HttpPost(url);
+
+        MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create();
+
+        if (files != null) {
+            for (ContentBody file : files) {
+                multipartEntityBuilder.addPart(filesKey, file);
+            }
+        }
+
         if (entityMap != null && entityMap.size() > 0) {
             // 其它参数(注:自定义contentType，设置UTF-8是为了防止服务端拿到的参数出现乱码)
             ContentType contentType = ContentType.create("text/plain", Charset.forName("UTF-8"));
@@ -353,7 +857,11 @@ public class HttpClientUtils {
 
         setHeaders(headers, httpPost);
 
-        httpPost.setEntity(multipartEntityBuilder.build());
+        HttpEntity entity = multipartEntityBuilder.build();
+        httpPost.setEntity(listener == null ? entity : new ProgressHttpEntity(entity, listener));
+
+        //配置超时时间
+        setConfig(timeOut, httpPost);
 
         return execute(httpPost);
     }
@@ -364,10 +872,33 @@ public class HttpClientUtils {
      * @param timeOut 超时时间
      * @param headers 请求头
      * @param fileNames 要上传的文件路径名，支持多个文件
-     * @return
+     * @return 请求失败或任何一个文件读取失败时返回null
      */
     public static String requestFilePost(String url, Integer timeOut, Map<String,String> headers, String filesKey, String... fileNames) {
         return requestFormPost(url, timeOut, headers, null, filesKey, fileNames);
     }
 
+    /**
+     * 发送带文件的POST请求,Content-Type: multipart/form-data，并回调上传进度
+     * @param url 请求地址
+     * @param timeOut 超时时间
+     * @param headers 请求头
+     * @param filesKey 文件在表单的key
+     * @param listener 上传进度回调
+     * @param files 要上传的文件，支持多个文件
+     * @return 请求失败或读取文件失败时返回null
+     */
+    public static String requestFilePost(String url, Integer timeOut, Map<String,String> headers, String filesKey, ProgressListener listener, Path... files) {
+        ContentBody[] bodies = new ContentBody[files.length];
+        try {
+            for (int i = 0; i < files.length; i++) {
+                bodies[i] = FileRangeBody.of(files[i]);
+            }
+        } catch (IOException e) {
+            logger.error("读取文件失败", e);
+            return null;
+        }
+        return requestFormPost(url, timeOut, headers, null, filesKey, listener, bodies);
+    }
+
 }
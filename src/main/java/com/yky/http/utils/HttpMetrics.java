@@ -0,0 +1,151 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 请求指标，默认关闭，关闭时每个请求只多一次volatile读
+ * 开启后按路由统计总耗时和连接池等待、建立连接、首字节、读取响应体各阶段的耗时直方图，以及收发字节数和状态码次数。
+ * 通过addRecorder可以把每次请求的指标导出到其他监控系统，如
+ * HttpMetrics.addRecorder(new MicrometerHttpMetricsRecorder(meterRegistry))
+ * @author wuhualu
+ */
+public class HttpMetrics {
+
+    private static Logger logger = LoggerFactory.getLogger(HttpMetrics.class);
+
+    private static volatile boolean enabled = false;
+
+    private static final ConcurrentMap<String, RouteMetrics> ROUTES = new ConcurrentHashMap<>();
+
+    private static final List<HttpMetricsRecorder> RECORDERS = new CopyOnWriteArrayList<>();
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 注册指标的接收方，并开启指标统计
+     * @param recorder 接收方
+     */
+    public static void addRecorder(HttpMetricsRecorder recorder) {
+        RECORDERS.add(recorder);
+        enabled = true;
+    }
+
+    public static void removeRecorder(HttpMetricsRecorder recorder) {
+        RECORDERS.remove(recorder);
+    }
+
+    /**
+     * @param route scheme://host:port，如http://127.0.0.1:8080
+     * @return 路由的累计指标，没有请求过时返回null
+     */
+    public static RouteMetrics getRouteMetrics(String route) {
+        return ROUTES.get(route);
+    }
+
+    /**
+     * @return 所有路由的累计指标
+     */
+    public static Collection<RouteMetrics> getRouteMetrics() {
+        return Collections.unmodifiableCollection(ROUTES.values());
+    }
+
+    /**
+     * @return 连接池的状态：已借出、空闲、等待中的请求数和最大连接数
+     */
+    public static PoolStats getPoolStats() {
+        return HttpClientManager.getConnectionManager().getTotalStats();
+    }
+
+    /**
+     * 清空累计的指标
+     */
+    public static void reset() {
+        ROUTES.clear();
+    }
+
+    /**
+     * 请求开始，关闭时返回null
+     */
+    static RequestMetrics start(HttpRequestBase request, HttpContext context) {
+        if (!enabled) {
+            return null;
+        }
+        RequestMetrics metrics = new RequestMetrics(URIUtils.extractHost(request.getURI()).toURI(), request.getMethod());
+        metrics.attach(context);
+        return metrics;
+    }
+
+    /**
+     * 收到响应头，没有响应体时请求结束，否则在响应体读完或关闭时结束
+     */
+    static void onResponse(RequestMetrics metrics, HttpResponse response) {
+        metrics.detach();
+        metrics.onHeaders(response.getStatusLine().getStatusCode());
+
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            finish(metrics);
+        } else {
+            response.setEntity(new MeteredHttpEntity(entity, metrics));
+        }
+    }
+
+    static void onFailure(RequestMetrics metrics, Exception e) {
+        metrics.detach();
+        metrics.onFailure(e);
+        finish(metrics);
+    }
+
+    /**
+     * 响应关闭时调用，响应体没有读取就关闭的请求在这里结束
+     */
+    static void complete(HttpResponse response) {
+        if (response != null && response.getEntity() instanceof MeteredHttpEntity) {
+            finish(((MeteredHttpEntity) response.getEntity()).getMetrics());
+        }
+    }
+
+    static void finish(RequestMetrics metrics) {
+        if (!metrics.finish()) {
+            return;
+        }
+
+        RouteMetrics route = ROUTES.get(metrics.getRoute());
+        if (route == null) {
+            route = ROUTES.computeIfAbsent(metrics.getRoute(), RouteMetrics::new);
+        }
+        route.record(metrics);
+
+        for (HttpMetricsRecorder recorder : RECORDERS) {
+            try {
+                recorder.record(metrics);
+            } catch (RuntimeException e) {
+                logger.warn("记录请求指标失败, recorder:{}", recorder, e);
+            }
+        }
+    }
+}
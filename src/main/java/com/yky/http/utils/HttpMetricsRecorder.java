@@ -0,0 +1,15 @@
+package com.yky.http.utils;
+
+/**
+ * 请求指标的接收方，通过HttpMetrics.addRecorder注册，可以将指标导出到Micrometer等监控系统
+ * 在请求完成(响应体读完或关闭)的线程中同步调用，实现中不要做耗时操作
+ * @author wuhualu
+ */
+public interface HttpMetricsRecorder {
+
+    /**
+     * 记录一次请求的指标
+     * @param metrics 请求指标，只在本次调用中有效，不要保存引用
+     */
+    void record(RequestMetrics metrics);
+}
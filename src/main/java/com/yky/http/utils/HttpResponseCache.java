@@ -0,0 +1,166 @@
+package com.yky.http.utils;
+
+import org.apache.http.client.cache.CacheResponseStatus;
+import org.apache.http.client.cache.HttpCacheContext;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.cache.CacheConfig;
+import org.apache.http.impl.client.cache.CachingHttpClientBuilder;
+import org.apache.http.protocol.HttpContext;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内的HTTP响应缓存，默认关闭
+ * 开启后GET请求遵循Cache-Control、Expires缓存响应，过期后使用ETag、Last-Modified发送条件请求，服务端返回304时复用缓存内容。
+ * 缓存按条目数和总字节数限制大小，超出后淘汰最久未访问的条目，较大的响应体可以存放到堆外内存。
+ * @author wuhualu
+ */
+public class HttpResponseCache {
+
+    /**
+     * 默认最大缓存条目数
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /**
+     * 默认缓存总字节数上限
+     */
+    public static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * 默认单个响应体的最大字节数，超过的不缓存
+     */
+    public static final long DEFAULT_MAX_OBJECT_SIZE = 1024 * 1024;
+
+    private static volatile BoundedHttpCacheStorage storage;
+
+    private static CacheConfig cacheConfig;
+
+    private static OffHeapResourceFactory resourceFactory;
+
+    private static final LongAdder hitCount = new LongAdder();
+
+    private static final LongAdder missCount = new LongAdder();
+
+    private static final LongAdder validatedCount = new LongAdder();
+
+    /**
+     * 按默认参数开启响应缓存，全部缓存在堆内
+     */
+    public static void enable() {
+        enable(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES, DEFAULT_MAX_OBJECT_SIZE, -1);
+    }
+
+    /**
+     * 开启响应缓存，已有的缓存内容会被清空
+     * @param maxEntries 最大缓存条目数
+     * @param maxBytes 缓存总字节数上限
+     * @param maxObjectSize 单个响应体的最大字节数，超过的不缓存
+     * @param offHeapThreshold 响应体达到该字节数时存放到堆外内存，小于0表示全部放在堆内
+     */
+    public static void enable(int maxEntries, long maxBytes, long maxObjectSize, long offHeapThreshold) {
+        synchronized (HttpResponseCache.class) {
+            cacheConfig = CacheConfig.custom()
+                    .setMaxCacheEntries(maxEntries)
+                    .setMaxObjectSize(maxObjectSize)
+                    .build();
+            resourceFactory = new OffHeapResourceFactory(offHeapThreshold);
+            storage = new BoundedHttpCacheStorage(maxEntries, maxBytes);
+        }
+        HttpClientManager.reinit();
+    }
+
+    /**
+     * 关闭响应缓存并清空缓存内容
+     */
+    public static void disable() {
+        synchronized (HttpResponseCache.class) {
+            storage = null;
+            cacheConfig = null;
+            resourceFactory = null;
+        }
+        HttpClientManager.reinit();
+    }
+
+    public static boolean isEnabled() {
+        return storage != null;
+    }
+
+    /**
+     * 创建HttpClientBuilder，开启缓存时返回带缓存的builder
+     * @return builder
+     */
+    static synchronized HttpClientBuilder createBuilder() {
+        if (storage == null) {
+            return HttpClientBuilder.create();
+        }
+        return CachingHttpClientBuilder.create()
+                .setCacheConfig(cacheConfig)
+                .setResourceFactory(resourceFactory)
+                .setHttpCacheStorage(storage);
+    }
+
+    /**
+     * 统计本次请求的缓存命中情况
+     * @param context 请求上下文
+     */
+    static void record(HttpContext context) {
+        if (storage == null) {
+            return;
+        }
+        CacheResponseStatus status = HttpCacheContext.adapt(context).getCacheResponseStatus();
+        if (status == null) {
+            return;
+        }
+        switch (status) {
+            case CACHE_HIT:
+                hitCount.increment();
+                break;
+            case VALIDATED:
+                validatedCount.increment();
+                break;
+            case CACHE_MISS:
+                missCount.increment();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @return 直接命中缓存的次数
+     */
+    public static long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return 未命中缓存的次数
+     */
+    public static long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return 条件请求返回304，复用缓存内容的次数
+     */
+    public static long getValidatedCount() {
+        return validatedCount.sum();
+    }
+
+    /**
+     * @return 当前缓存条目数
+     */
+    public static int getEntryCount() {
+        BoundedHttpCacheStorage current = storage;
+        return current == null ? 0 : current.getEntryCount();
+    }
+
+    /**
+     * @return 当前缓存的响应体总字节数
+     */
+    public static long getTotalBytes() {
+        BoundedHttpCacheStorage current = storage;
+        return current == null ? 0 : current.getTotalBytes();
+    }
+}
@@ -0,0 +1,24 @@
+package com.yky.http.utils;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+
+import java.io.IOException;
+
+/**
+ * 发送请求的传输层，通过HttpClientUtils.setTransport替换
+ * 重试、熔断、并发限制和指标都在传输层之上，对所有实现都生效。默认实现是基于连接池的HTTP/1.1(Http1Transport)。
+ * @author wuhualu
+ */
+public interface HttpTransport {
+
+    /**
+     * 发送一次请求
+     * @param request 请求，实现需要支持request.abort()中止请求
+     * @param context 本次请求的上下文
+     * @return 响应，由调用方关闭
+     * @throws IOException 请求失败
+     */
+    CloseableHttpResponse execute(HttpRequestBase request, HttpClientContext context) throws IOException;
+}
@@ -0,0 +1,98 @@
+package com.yky.http.utils;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * 边遍历边序列化的json请求体，以chunked方式发送，内存中只保留当前元素序列化后的字节
+ * 支持json数组([a,b,c])和NDJSON(每行一个json)两种格式。元素只能遍历一次，所以请求不能重试。
+ * 只能通过writeTo发送，getContent抛出UnsupportedOperationException；isRepeatable为false，HttpCapture等不会读取它的内容。
+ * @author wuhualu
+ */
+class JsonStreamEntity extends AbstractHttpEntity {
+
+    static final ContentType APPLICATION_NDJSON = ContentType.create("application/x-ndjson", StandardCharsets.UTF_8);
+
+    private static final byte[] ARRAY_START = {'['};
+
+    private static final byte[] ARRAY_END = {']'};
+
+    private static final byte[] COMMA = {','};
+
+    private static final byte[] NEW_LINE = {'\n'};
+
+    private final Iterator<?> elements;
+
+    private final boolean ndjson;
+
+    private volatile boolean consumed;
+
+    /**
+     * @param elements 要发送的元素
+     * @param ndjson true为NDJSON，false为json数组
+     */
+    JsonStreamEntity(Iterator<?> elements, boolean ndjson) {
+        this.elements = elements;
+        this.ndjson = ndjson;
+        setContentType((ndjson ? APPLICATION_NDJSON : ContentType.APPLICATION_JSON).toString());
+        setChunked(true);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return false;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return !consumed;
+    }
+
+    @Override
+    public InputStream getContent() {
+        throw new UnsupportedOperationException("流式的请求体只能通过writeTo发送");
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        if (consumed) {
+            throw new IllegalStateException("流式的请求体只能发送一次");
+        }
+        consumed = true;
+
+        try {
+            if (ndjson) {
+                while (elements.hasNext()) {
+                    //NDJSON每行一个json，不能格式化输出
+                    FastJsonUtils.writeJsonTo(elements.next(), outStream, false);
+                    outStream.write(NEW_LINE);
+                }
+            } else {
+                outStream.write(ARRAY_START);
+                boolean first = true;
+                while (elements.hasNext()) {
+                    if (!first) {
+                        outStream.write(COMMA);
+                    }
+                    first = false;
+                    FastJsonUtils.writeJsonTo(elements.next(), outStream);
+                }
+                outStream.write(ARRAY_END);
+            }
+        } catch (RuntimeException e) {
+            //遍历或序列化失败时中止请求，按IO异常处理
+            throw new IOException("序列化请求体失败", e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.yky.http.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 记录最近的请求耗时并计算分位数，记录时无锁
+ * 分位数每秒最多重新计算一次，计算时对最近的样本排序
+ * @author wuhualu
+ */
+class LatencyTracker {
+
+    private static final long REFRESH_INTERVAL = 1_000_000_000L;
+
+    private final AtomicLongArray samples;
+
+    private final AtomicLong index = new AtomicLong();
+
+    private final double percentile;
+
+    private volatile long cachedValue = -1;
+
+    private volatile long cachedAt;
+
+    /**
+     * @param size 保留的样本数
+     * @param percentile 要计算的分位数，如0.95
+     */
+    LatencyTracker(int size, double percentile) {
+        this.samples = new AtomicLongArray(size);
+        this.percentile = percentile;
+        this.cachedAt = System.nanoTime() - REFRESH_INTERVAL;
+    }
+
+    /**
+     * 记录一次耗时
+     * @param millis 耗时,ms
+     */
+    void record(long millis) {
+        samples.set((int) (index.getAndIncrement() % samples.length()), millis);
+    }
+
+    /**
+     * @return 最近样本的分位数,ms，样本不足时返回-1
+     */
+    long get() {
+        long now = System.nanoTime();
+        if (now - cachedAt < REFRESH_INTERVAL) {
+            return cachedValue;
+        }
+
+        int count = (int) Math.min(index.get(), samples.length());
+        long value = -1;
+        //样本太少时分位数没有意义
+        if (count >= 20) {
+            long[] copy = new long[count];
+            for (int i = 0; i < count; i++) {
+                copy[i] = samples.get(i);
+            }
+            Arrays.sort(copy);
+            value = copy[Math.min(count - 1, (int) (count * percentile))];
+        }
+        cachedValue = value;
+        cachedAt = now;
+        return value;
+    }
+}
@@ -0,0 +1,274 @@
+package com.yky.http.utils;
+
+import org.apache.http.client.utils.URIUtils;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端负载均衡，通过LoadBalancer.custom(name)...build()创建，HttpClientUtils.addLoadBalancer注册后，
+ * 请求地址写成lb://name/path即可，每次尝试(包括重试和对冲请求)都会重新选择实例。
+ * 选择：随机取两个实例，选负载(peak EWMA耗时 x 进行中的请求数)较低的一个。
+ * 摘除：实例连续失败(IO异常或5xx)达到consecutiveFailures次后摘除ejectionTime，多次摘除时时长递增，
+ * 被摘除的实例不超过maxEjectionPercent，所有实例都被摘除时仍然选择其中一个。
+ * 每个实例在连接池中是独立的路由，可以通过setMaxPerEndpoint设置单个实例的最大连接数。
+ * @author wuhualu
+ */
+public class LoadBalancer {
+
+    static final String SCHEME = "lb";
+
+    static final int MAX_EJECTION_MULTIPLIER = 10;
+
+    private final String name;
+
+    private final int consecutiveFailures;
+
+    private final long ejectionNanos;
+
+    private final double maxEjectionPercent;
+
+    private final long decayNanos;
+
+    private final double alpha;
+
+    private final int maxPerEndpoint;
+
+    private volatile Endpoint[] endpoints;
+
+    private LoadBalancer(Builder builder) {
+        this.name = builder.name;
+        this.consecutiveFailures = builder.consecutiveFailures;
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(builder.ejectionTime);
+        this.maxEjectionPercent = builder.maxEjectionPercent;
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(builder.decayTime);
+        this.alpha = builder.alpha;
+        this.maxPerEndpoint = builder.maxPerEndpoint;
+        this.endpoints = create(builder.endpoints, new Endpoint[0]);
+    }
+
+    /**
+     * @param name 服务名，请求地址为lb://name/path
+     */
+    public static Builder custom(String name) {
+        return new Builder(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return Collections.unmodifiableList(Arrays.asList(endpoints));
+    }
+
+    /**
+     * 更新实例列表(如服务发现推送)，仍然存在的实例保留其统计数据，正在进行的请求不受影响
+     * @param hosts 实例地址，如http://10.0.0.1:8080
+     */
+    public synchronized void setEndpoints(String... hosts) {
+        this.endpoints = create(normalize(Arrays.asList(hosts)), endpoints);
+        if (maxPerEndpoint > 0) {
+            HttpClientManager.setMaxPerRoute(HttpClientManager.getConnectionManager(), getHosts(), maxPerEndpoint);
+        }
+    }
+
+    private Endpoint[] create(Set<String> hosts, Endpoint[] current) {
+        List<Endpoint> list = new ArrayList<>(hosts.size());
+        for (String host : hosts) {
+            Endpoint endpoint = null;
+            for (Endpoint existing : current) {
+                if (existing.getHost().equals(host)) {
+                    endpoint = existing;
+                    break;
+                }
+            }
+            list.add(endpoint == null ? new Endpoint(host, this) : endpoint);
+        }
+        return list.toArray(new Endpoint[0]);
+    }
+
+    private static Set<String> normalize(List<String> hosts) {
+        Set<String> set = new LinkedHashSet<>();
+        for (String host : hosts) {
+            set.add(URIUtils.extractHost(URI.create(host)).toURI());
+        }
+        return set;
+    }
+
+    Set<String> getHosts() {
+        Set<String> hosts = new LinkedHashSet<>();
+        for (Endpoint endpoint : endpoints) {
+            hosts.add(endpoint.getHost());
+        }
+        return hosts;
+    }
+
+    /**
+     * 按power of two choices选择实例
+     * @throws RequestRejectedException 没有任何实例时抛出
+     */
+    Endpoint choose() {
+        Endpoint[] current = endpoints;
+        int n = current.length;
+        if (n == 0) {
+            throw new RequestRejectedException("服务没有可用的实例: " + name);
+        }
+        if (n == 1) {
+            return current[0];
+        }
+
+        //被摘除的实例不参与选择，随机位置上的实例被摘除时顺延到下一个
+        long now = System.nanoTime();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(n);
+        Endpoint a = next(current, i, null, now);
+        if (a == null) {
+            //所有实例都被摘除
+            return current[i];
+        }
+        Endpoint b = next(current, random.nextInt(n), a, now);
+        if (b == null) {
+            return a;
+        }
+        return a.cost(now) <= b.cost(now) ? a : b;
+    }
+
+    private static Endpoint next(Endpoint[] endpoints, int start, Endpoint exclude, long now) {
+        int n = endpoints.length;
+        for (int k = 0; k < n; k++) {
+            Endpoint endpoint = endpoints[(start + k) % n];
+            if (endpoint != exclude && !endpoint.isEjected(now)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 摘除实例，已摘除的实例达到maxEjectionPercent时不再摘除
+     */
+    void eject(Endpoint endpoint) {
+        Endpoint[] current = endpoints;
+        long now = System.nanoTime();
+        int ejected = 0;
+        for (Endpoint e : current) {
+            if (e.isEjected(now)) {
+                ejected++;
+            }
+        }
+        if (ejected + 1 > current.length * maxEjectionPercent) {
+            return;
+        }
+        endpoint.eject(now);
+    }
+
+    int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    long getEjectionNanos() {
+        return ejectionNanos;
+    }
+
+    long getDecayNanos() {
+        return decayNanos;
+    }
+
+    double getAlpha() {
+        return alpha;
+    }
+
+    int getMaxPerEndpoint() {
+        return maxPerEndpoint;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadBalancer{name=" + name + ", endpoints=" + Arrays.toString(endpoints) + "}";
+    }
+
+    public static class Builder {
+
+        private final String name;
+
+        private Set<String> endpoints = new LinkedHashSet<>();
+
+        private int consecutiveFailures = 5;
+
+        private long ejectionTime = 30000;
+
+        private double maxEjectionPercent = 0.5;
+
+        private long decayTime = 10000;
+
+        private double alpha = 0.3;
+
+        private int maxPerEndpoint;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param hosts 实例地址，如http://10.0.0.1:8080，路径部分会被忽略
+         */
+        public Builder addEndpoints(String... hosts) {
+            this.endpoints.addAll(normalize(Arrays.asList(hosts)));
+            return this;
+        }
+
+        /**
+         * @param consecutiveFailures 连续失败多少次后摘除实例，默认5
+         */
+        public Builder setConsecutiveFailures(int consecutiveFailures) {
+            this.consecutiveFailures = consecutiveFailures;
+            return this;
+        }
+
+        /**
+         * @param ejectionTime 第一次摘除的时长,ms，第n次连续摘除为n倍(最多10倍)，默认30000
+         */
+        public Builder setEjectionTime(long ejectionTime) {
+            this.ejectionTime = ejectionTime;
+            return this;
+        }
+
+        /**
+         * @param maxEjectionPercent 最多摘除的实例比例，0~1，默认0.5
+         */
+        public Builder setMaxEjectionPercent(double maxEjectionPercent) {
+            this.maxEjectionPercent = maxEjectionPercent;
+            return this;
+        }
+
+        /**
+         * @param decayTime 耗时移动平均的衰减时间常数,ms，实例变快后平均耗时按该速度下降，默认10000
+         * @param alpha 每个新样本的权重，0~1，默认0.3
+         */
+        public Builder setEwma(long decayTime, double alpha) {
+            this.decayTime = decayTime;
+            this.alpha = alpha;
+            return this;
+        }
+
+        /**
+         * @param maxPerEndpoint 连接池中每个实例的最大连接数，默认0，使用连接池的默认值
+         */
+        public Builder setMaxPerEndpoint(int maxPerEndpoint) {
+            this.maxPerEndpoint = maxPerEndpoint;
+            return this;
+        }
+
+        public LoadBalancer build() {
+            return new LoadBalancer(this);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.yky.http.utils;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 已注册的LoadBalancer，按服务名查找
+ * @author wuhualu
+ */
+class LoadBalancers {
+
+    private static final ConcurrentMap<String, LoadBalancer> BALANCERS = new ConcurrentHashMap<>();
+
+    private LoadBalancers() {
+    }
+
+    /**
+     * @return lb://name形式的地址对应的LoadBalancer，其他地址返回null
+     * @throws RequestRejectedException 服务名没有注册时抛出
+     */
+    static LoadBalancer get(URI uri) {
+        if (uri == null || !LoadBalancer.SCHEME.equalsIgnoreCase(uri.getScheme())) {
+            return null;
+        }
+        LoadBalancer balancer = BALANCERS.get(uri.getHost());
+        if (balancer == null) {
+            throw new RequestRejectedException("服务没有注册LoadBalancer: " + uri.getHost());
+        }
+        return balancer;
+    }
+
+    static LoadBalancer get(String name) {
+        return BALANCERS.get(name);
+    }
+
+    static void add(LoadBalancer balancer) {
+        BALANCERS.put(balancer.getName(), balancer);
+        if (balancer.getMaxPerEndpoint() > 0) {
+            HttpClientManager.setMaxPerRoute(HttpClientManager.getConnectionManager(), balancer.getHosts(), balancer.getMaxPerEndpoint());
+        }
+    }
+
+    static void remove(String name) {
+        BALANCERS.remove(name);
+    }
+
+    /**
+     * 连接池重建后重新设置各实例的最大连接数
+     */
+    static void applyMaxPerRoute(PoolingHttpClientConnectionManager manager) {
+        for (LoadBalancer balancer : BALANCERS.values()) {
+            if (balancer.getMaxPerEndpoint() > 0) {
+                HttpClientManager.setMaxPerRoute(manager, balancer.getHosts(), balancer.getMaxPerEndpoint());
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统计连接池等待时间和建立连接耗时的连接池，没有开启HttpMetrics时与PoolingHttpClientConnectionManager相同
+ * @author wuhualu
+ */
+class MeteredConnectionManager extends PoolingHttpClientConnectionManager {
+
+    /**
+     * @param dnsResolver DNS解析，为null时使用系统默认的解析
+     */
+    MeteredConnectionManager(DnsResolver dnsResolver) {
+        super(RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", SSLConnectionSocketFactory.getSocketFactory())
+                .build(), dnsResolver);
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+        ConnectionRequest request = super.requestConnection(route, state);
+        RequestMetrics metrics = HttpMetrics.isEnabled() ? RequestMetrics.current() : null;
+        if (metrics == null) {
+            return request;
+        }
+
+        return new ConnectionRequest() {
+            @Override
+            public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+                    throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                long start = System.nanoTime();
+                try {
+                    return request.get(timeout, timeUnit);
+                } finally {
+                    metrics.addPoolWait(System.nanoTime() - start);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+
+    @Override
+    public void connect(HttpClientConnection managedConn, HttpRoute route, int connectTimeout, HttpContext context) throws IOException {
+        RequestMetrics metrics = RequestMetrics.from(context);
+        long start = System.nanoTime();
+        try {
+            super.connect(managedConn, route, connectTimeout, context);
+        } finally {
+            if (metrics != null) {
+                metrics.addConnect(System.nanoTime() - start);
+            }
+        }
+    }
+}
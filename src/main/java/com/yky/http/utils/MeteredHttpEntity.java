@@ -0,0 +1,88 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 统计响应体读取耗时和字节数的实体，读到末尾或关闭时结束本次请求的指标
+ * @author wuhualu
+ */
+class MeteredHttpEntity extends HttpEntityWrapper {
+
+    private final RequestMetrics metrics;
+
+    MeteredHttpEntity(HttpEntity wrappedEntity, RequestMetrics metrics) {
+        super(wrappedEntity);
+        this.metrics = metrics;
+    }
+
+    RequestMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return new MeteredInputStream(super.getContent());
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        try (InputStream inputStream = getContent()) {
+            byte[] buffer = new byte[HttpClientUtils.BUFFER_SIZE];
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                outStream.write(buffer, 0, n);
+            }
+        }
+    }
+
+    private class MeteredInputStream extends FilterInputStream {
+
+        private MeteredInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                HttpMetrics.finish(metrics);
+            } else {
+                metrics.addBytesReceived(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                HttpMetrics.finish(metrics);
+            } else {
+                metrics.addBytesReceived(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            metrics.addBytesReceived(skipped);
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                HttpMetrics.finish(metrics);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 统计首字节耗时、发送字节数和压缩的响应体字节数的HttpRequestExecutor
+ * @author wuhualu
+ */
+class MeteredRequestExecutor extends HttpRequestExecutor {
+
+    @Override
+    public HttpResponse execute(HttpRequest request, HttpClientConnection conn, HttpContext context) throws IOException, HttpException {
+        RequestMetrics metrics = RequestMetrics.from(context);
+        if (metrics == null) {
+            return super.execute(request, conn, context);
+        }
+
+        long sent = conn.getMetrics().getSentBytesCount();
+        long start = System.nanoTime();
+        HttpResponse response = super.execute(request, conn, context);
+        metrics.onExchange(System.nanoTime() - start, conn.getMetrics().getSentBytesCount() - sent);
+
+        //在解压之前统计压缩的响应体的字节数
+        HttpEntity entity = response.getEntity();
+        if (entity != null && entity.getContentEncoding() != null) {
+            response.setEntity(new CountingEntity(entity, metrics));
+        }
+        return response;
+    }
+
+    private static class CountingEntity extends HttpEntityWrapper {
+
+        private final RequestMetrics metrics;
+
+        private CountingEntity(HttpEntity wrappedEntity, RequestMetrics metrics) {
+            super(wrappedEntity);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new FilterInputStream(super.getContent()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b != -1) {
+                        metrics.addCompressedBytesReceived(1);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n > 0) {
+                        metrics.addCompressedBytesReceived(n);
+                    }
+                    return n;
+                }
+            };
+        }
+
+        @Override
+        public void writeTo(OutputStream outStream) throws IOException {
+            try (InputStream inputStream = getContent()) {
+                byte[] buffer = new byte[HttpClientUtils.BUFFER_SIZE];
+                int n;
+                while ((n = inputStream.read(buffer)) != -1) {
+                    outStream.write(buffer, 0, n);
+                }
+            }
+        }
+    }
+}
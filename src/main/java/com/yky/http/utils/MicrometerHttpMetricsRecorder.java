@@ -0,0 +1,95 @@
+package com.yky.http.utils;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.apache.http.pool.PoolStats;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 将请求指标导出到Micrometer，需要引入micrometer-core依赖
+ * Spring Boot中引入actuator后可以注入MeterRegistry，然后调用
+ * HttpMetrics.addRecorder(new MicrometerHttpMetricsRecorder(meterRegistry))，指标会出现在/actuator/metrics中。
+ * 指标：http.client.requests(按route、method、status)，http.client.pool.wait、http.client.connect、
+ * http.client.ttfb、http.client.body.read(按route)，http.client.bytes.sent、http.client.bytes.received(按route)，
+ * 压缩前后的http.client.bytes.sent.uncompressed、http.client.bytes.received.compressed(按route)，
+ * 以及连接池的http.client.pool.leased、available、pending、max
+ * @author wuhualu
+ */
+public class MicrometerHttpMetricsRecorder implements HttpMetricsRecorder {
+
+    private final MeterRegistry registry;
+
+    private final ConcurrentMap<String, RouteMeters> routes = new ConcurrentHashMap<>();
+
+    public MicrometerHttpMetricsRecorder(MeterRegistry registry) {
+        this.registry = registry;
+        poolGauge("http.client.pool.leased", PoolStats::getLeased);
+        poolGauge("http.client.pool.available", PoolStats::getAvailable);
+        poolGauge("http.client.pool.pending", PoolStats::getPending);
+        poolGauge("http.client.pool.max", PoolStats::getMax);
+    }
+
+    private void poolGauge(String name, ToDoubleFunction<PoolStats> value) {
+        //连接池重新初始化后会换成新的对象，每次都重新获取
+        Gauge.builder(name, HttpMetrics.class, type -> value.applyAsDouble(HttpMetrics.getPoolStats()))
+                .register(registry);
+    }
+
+    @Override
+    public void record(RequestMetrics metrics) {
+        String status = metrics.getException() != null
+                ? metrics.getException().getClass().getSimpleName()
+                : String.valueOf(metrics.getStatusCode());
+        registry.timer("http.client.requests", "route", metrics.getRoute(), "method", metrics.getMethod(), "status", status)
+                .record(metrics.getTotalNanos(), TimeUnit.NANOSECONDS);
+
+        RouteMeters meters = routes.get(metrics.getRoute());
+        if (meters == null) {
+            meters = routes.computeIfAbsent(metrics.getRoute(), RouteMeters::new);
+        }
+        record(meters.poolWait, metrics.getPoolWaitNanos());
+        record(meters.connect, metrics.getConnectNanos());
+        record(meters.timeToFirstByte, metrics.getTimeToFirstByteNanos());
+        record(meters.bodyRead, metrics.getBodyReadNanos());
+        meters.bytesSent.record(metrics.getBytesSent());
+        meters.bytesReceived.record(metrics.getBytesReceived());
+        meters.uncompressedBytesSent.record(metrics.getUncompressedBytesSent());
+        meters.compressedBytesReceived.record(metrics.getCompressedBytesReceived());
+    }
+
+    private static void record(Timer timer, long nanos) {
+        if (nanos >= 0) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private class RouteMeters {
+        private final Timer poolWait;
+        private final Timer connect;
+        private final Timer timeToFirstByte;
+        private final Timer bodyRead;
+        private final DistributionSummary bytesSent;
+        private final DistributionSummary bytesReceived;
+        private final DistributionSummary uncompressedBytesSent;
+        private final DistributionSummary compressedBytesReceived;
+
+        private RouteMeters(String route) {
+            Tags tags = Tags.of("route", route);
+            poolWait = registry.timer("http.client.pool.wait", tags);
+            connect = registry.timer("http.client.connect", tags);
+            timeToFirstByte = registry.timer("http.client.ttfb", tags);
+            bodyRead = registry.timer("http.client.body.read", tags);
+            bytesSent = DistributionSummary.builder("http.client.bytes.sent").baseUnit("bytes").tags(tags).register(registry);
+            bytesReceived = DistributionSummary.builder("http.client.bytes.received").baseUnit("bytes").tags(tags).register(registry);
+            uncompressedBytesSent = DistributionSummary.builder("http.client.bytes.sent.uncompressed").baseUnit("bytes").tags(tags).register(registry);
+            compressedBytesReceived = DistributionSummary.builder("http.client.bytes.received.compressed").baseUnit("bytes").tags(tags).register(registry);
+        }
+    }
+}
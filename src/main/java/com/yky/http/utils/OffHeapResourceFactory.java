@@ -0,0 +1,116 @@
+package com.yky.http.utils;
+
+import org.apache.http.client.cache.InputLimit;
+import org.apache.http.client.cache.Resource;
+import org.apache.http.client.cache.ResourceFactory;
+import org.apache.http.impl.client.cache.HeapResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 缓存响应体的存储方式：小于阈值的响应体放在堆内，大于等于阈值的放在堆外的DirectByteBuffer中，减少大对象对GC的压力
+ * @author wuhualu
+ */
+class OffHeapResourceFactory implements ResourceFactory {
+
+    private final long offHeapThreshold;
+
+    /**
+     * @param offHeapThreshold 响应体达到该字节数时存放到堆外，小于0表示全部放在堆内
+     */
+    OffHeapResourceFactory(long offHeapThreshold) {
+        this.offHeapThreshold = offHeapThreshold;
+    }
+
+    @Override
+    public Resource generate(String requestId, InputStream inputStream, InputLimit limit) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[2048];
+        long total = 0;
+        int n;
+        while ((n = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, n);
+            total += n;
+            if (limit != null && total > limit.getValue()) {
+                //超过单个缓存对象的大小限制，不再继续读取，由缓存模块放弃缓存该响应
+                limit.reached();
+                break;
+            }
+        }
+        return createResource(outputStream.toByteArray());
+    }
+
+    @Override
+    public Resource copy(String requestId, Resource resource) throws IOException {
+        if (resource instanceof DirectResource) {
+            //缓存的内容不会被修改，可以直接共享
+            return resource;
+        }
+        try (InputStream inputStream = resource.getInputStream()) {
+            return generate(requestId, inputStream, null);
+        }
+    }
+
+    private Resource createResource(byte[] bytes) {
+        if (offHeapThreshold < 0 || bytes.length < offHeapThreshold) {
+            return new HeapResource(bytes);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+        return new DirectResource(buffer);
+    }
+
+    /**
+     * 存放在堆外内存的响应体，内存在对象不可达后由GC回收
+     */
+    static class DirectResource implements Resource {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient ByteBuffer buffer;
+
+        DirectResource(ByteBuffer buffer) {
+            this.buffer = buffer.asReadOnlyBuffer();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            ByteBuffer view = buffer.duplicate();
+            return new InputStream() {
+                @Override
+                public int read() {
+                    return view.hasRemaining() ? view.get() & 0xff : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (!view.hasRemaining()) {
+                        return -1;
+                    }
+                    int n = Math.min(len, view.remaining());
+                    view.get(b, off, n);
+                    return n;
+                }
+
+                @Override
+                public int available() {
+                    return view.remaining();
+                }
+            };
+        }
+
+        @Override
+        public long length() {
+            return buffer.capacity();
+        }
+
+        @Override
+        public void dispose() {
+            //DirectByteBuffer不可达后由GC释放，这里不需要处理
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 统计请求体发送进度的HttpEntity
+ * 总长度未知时(如包含InputStream的内容)使用chunked传输
+ * @author wuhualu
+ */
+class ProgressHttpEntity extends HttpEntityWrapper {
+
+    private final ProgressListener listener;
+
+    ProgressHttpEntity(HttpEntity wrappedEntity, ProgressListener listener) {
+        super(wrappedEntity);
+        this.listener = listener;
+    }
+
+    @Override
+    public boolean isChunked() {
+        return getContentLength() < 0 || super.isChunked();
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        long total = getContentLength();
+        super.writeTo(new FilterOutputStream(outStream) {
+            private long transferred;
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                listener.onProgress(++transferred, total);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                transferred += len;
+                listener.onProgress(transferred, total);
+            }
+        });
+    }
+}
@@ -0,0 +1,15 @@
+package com.yky.http.utils;
+
+/**
+ * 上传进度回调，在发送请求的线程中调用，不要在回调里做耗时操作
+ * @author wuhualu
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    /**
+     * @param transferred 已发送的字节数
+     * @param total 总字节数，未知时为-1
+     */
+    void onProgress(long transferred, long total);
+}
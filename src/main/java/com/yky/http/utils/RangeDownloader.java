@@ -0,0 +1,310 @@
+package com.yky.http.utils;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分段并行下载
+ * 先用HEAD请求确认服务端支持Range并获取文件大小，然后把文件分成多段，每段用一个连接并行下载，
+ * 直接按位置写入预先分配好大小的文件。某一段失败时只重试这一段(从已写入的位置继续)，服务端不支持Range时退化为单连接下载。
+ * @author wuhualu
+ */
+class RangeDownloader {
+
+    private static Logger logger = LoggerFactory.getLogger(RangeDownloader.class);
+
+    /**
+     * 每段失败后的最大重试次数
+     */
+    private static final int MAX_RETRIES = 3;
+
+    /**
+     * 小于该大小的文件不分段
+     */
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 下载失败后等待其他段停止的最长时间,ms
+     */
+    private static final long CANCEL_TIMEOUT = 5000;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final String url;
+
+    private final Integer timeOut;
+
+    private final Map<String, String> headers;
+
+    private final File file;
+
+    private final int parallelism;
+
+    /**
+     * 进行中的分段请求，某一段失败时中止其他段
+     */
+    private final Set<HttpGet> requests = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean cancelled;
+
+    RangeDownloader(String url, Integer timeOut, Map<String, String> headers, File file, int parallelism) {
+        this.url = url;
+        this.timeOut = timeOut;
+        this.headers = headers;
+        this.file = file;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 开始下载
+     * @return 写入的字节数，下载失败时返回-1
+     */
+    long download() {
+        Probe probe = probe();
+        if (probe == null || !probe.acceptRanges || probe.length < MIN_SEGMENT_SIZE * 2 || parallelism <= 1) {
+            logger.debug("不分段下载, URL:{}", url);
+            return HttpClientUtils.download(url, timeOut, headers, null, file);
+        }
+
+        List<Segment> segments = split(probe.length);
+        boolean rangeIgnored = false;
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            //预先分配文件大小，各段直接写入自己的位置
+            randomAccessFile.setLength(probe.length);
+            FileChannel fileChannel = randomAccessFile.getChannel();
+
+            ExecutorService executor = Executors.newFixedThreadPool(segments.size(), runnable -> {
+                Thread thread = new Thread(runnable, "range-download-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for (Segment segment : segments) {
+                    futures.add(executor.submit(() -> fetchWithRetry(segment, probe.etag, fileChannel)));
+                }
+
+                for (Future<Boolean> future : futures) {
+                    if (!future.get()) {
+                        rangeIgnored = true;
+                    }
+                }
+            } finally {
+                cancel(executor);
+            }
+        } catch (IOException | ExecutionException e) {
+            logger.error("分段下载失败, URL:{}", url, e);
+            deletePartialFile();
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            deletePartialFile();
+            return -1;
+        }
+
+        if (rangeIgnored) {
+            //服务端实际没有按Range返回(或文件在下载过程中变了)，退化为单连接重新下载
+            logger.warn("服务端未按Range返回，改为单连接下载, URL:{}", url);
+            long total = HttpClientUtils.download(url, timeOut, headers, null, file);
+            if (total < 0) {
+                deletePartialFile();
+            }
+            return total;
+        }
+
+        return probe.length;
+    }
+
+    /**
+     * 停止还在下载的段：中止进行中的请求并等待线程结束，避免返回后还有段在重试或写入已删除的文件
+     */
+    private void cancel(ExecutorService executor) {
+        cancelled = true;
+        for (HttpGet request : requests) {
+            request.abort();
+        }
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(CANCEL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                logger.warn("分段下载线程没有及时停止, URL:{}", url);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 删除已经预先分配了大小、但没有下载完整的文件，避免调用方把它当成下载好的文件
+     */
+    private void deletePartialFile() {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            logger.warn("删除未下载完整的文件失败: {}", file, e);
+        }
+    }
+
+    /**
+     * 用HEAD请求确认服务端是否支持Range并获取文件大小
+     */
+    private Probe probe() {
+        HttpHead httpHead = new HttpHead(url);
+        HttpClientUtils.setHeaders(headers, httpHead);
+        HttpClientUtils.setConfig(timeOut, httpHead);
+
+        return HttpClientUtils.execute(httpHead, response -> {
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                return null;
+            }
+            Probe probe = new Probe();
+            Header acceptRanges = response.getFirstHeader(HttpHeaders.ACCEPT_RANGES);
+            probe.acceptRanges = acceptRanges != null && "bytes".equalsIgnoreCase(acceptRanges.getValue().trim());
+            probe.length = contentLength(response.getFirstHeader(HttpHeaders.CONTENT_LENGTH));
+            Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+            probe.etag = etag == null ? null : etag.getValue();
+            return probe;
+        });
+    }
+
+    /**
+     * @return Content-Length的值，没有或格式不正确时返回-1
+     */
+    private long contentLength(Header header) {
+        if (header == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(header.getValue().trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Content-Length格式不正确: {}, URL:{}", header.getValue(), url);
+            return -1;
+        }
+    }
+
+    private List<Segment> split(long length) {
+        int count = (int) Math.min(parallelism, length / MIN_SEGMENT_SIZE);
+        long size = length / count;
+        List<Segment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long start = i * size;
+            long end = i == count - 1 ? length - 1 : start + size - 1;
+            segments.add(new Segment(start, end));
+        }
+        return segments;
+    }
+
+    /**
+     * 下载一段，失败时从已写入的位置继续重试
+     * @return false表示服务端没有按Range返回
+     */
+    private boolean fetchWithRetry(Segment segment, String etag, FileChannel fileChannel) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            if (cancelled) {
+                throw new IOException("其他段下载失败，已取消, bytes=" + segment.position + "-" + segment.end);
+            }
+            Boolean result = fetch(segment, etag, fileChannel);
+            if (result != null && (!result || segment.isDone())) {
+                return result;
+            }
+            if (attempt >= MAX_RETRIES) {
+                throw new IOException("分段下载失败, bytes=" + segment.position + "-" + segment.end);
+            }
+            logger.warn("分段下载失败，第{}次重试, bytes={}-{}", attempt + 1, segment.position, segment.end);
+        }
+    }
+
+    /**
+     * @return true表示请求正常结束，false表示服务端没有按Range返回，null表示请求失败
+     */
+    private Boolean fetch(Segment segment, String etag, FileChannel fileChannel) {
+        HttpGet httpGet = new HttpGet(url);
+        HttpClientUtils.setHeaders(headers, httpGet);
+        httpGet.setHeader(HttpHeaders.RANGE, "bytes=" + segment.position + "-" + segment.end);
+        //If-Range只能使用强校验的ETag
+        if (etag != null && !etag.startsWith("W/")) {
+            //文件变化时服务端会返回完整内容(200)，而不是206
+            httpGet.setHeader(HttpHeaders.IF_RANGE, etag);
+        }
+        HttpClientUtils.setConfig(timeOut, httpGet);
+
+        requests.add(httpGet);
+        try {
+            return HttpClientUtils.execute(httpGet, response -> {
+                if (response.getStatusLine().getStatusCode() != HttpStatus.SC_PARTIAL_CONTENT) {
+                    return false;
+                }
+                HttpEntity entity = response.getEntity();
+                if (entity == null) {
+                    return true;
+                }
+                byte[] buffer = new byte[BUFFER_SIZE];
+                try (InputStream inputStream = entity.getContent()) {
+                    int n;
+                    while (!segment.isDone() && !cancelled && (n = inputStream.read(buffer)) != -1) {
+                        n = (int) Math.min(n, segment.end - segment.position + 1);
+                        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, n);
+                        while (byteBuffer.hasRemaining()) {
+                            //按位置写入，多个线程写同一个FileChannel是安全的
+                            segment.position += fileChannel.write(byteBuffer, segment.position);
+                        }
+                    }
+                }
+                return true;
+            });
+        } finally {
+            requests.remove(httpGet);
+        }
+    }
+
+    private static class Probe {
+        private boolean acceptRanges;
+        private long length;
+        private String etag;
+    }
+
+    private static class Segment {
+        /**
+         * 下一个要写入的位置，重试时从这里继续
+         */
+        private long position;
+
+        private final long end;
+
+        private Segment(long start, long end) {
+            this.position = start;
+            this.end = end;
+        }
+
+        private boolean isDone() {
+            return position > end;
+        }
+    }
+}
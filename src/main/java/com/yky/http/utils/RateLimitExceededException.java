@@ -0,0 +1,24 @@
+package com.yky.http.utils;
+
+/**
+ * 目标路由的请求速率已达上限(或服务端要求等待Retry-After)，在允许的等待时间内拿不到许可，请求没有发送
+ * @author wuhualu
+ */
+public class RateLimitExceededException extends RequestRejectedException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long waitMillis;
+
+    public RateLimitExceededException(String route, long waitMillis) {
+        super("请求速率已达上限，需要等待" + waitMillis + "ms，请求被拒绝: " + route);
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * @return 还需要等待多久才能发送,ms
+     */
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+}
@@ -0,0 +1,220 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.Header;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按路由限制请求速率的策略，通过RateLimitPolicy.custom()...build()创建，创建后不可修改
+ * 每个路由(scheme://host:port)有独立的RateLimiter，可以为单个主机设置不同的速率，没有设置的主机使用默认速率，
+ * 默认速率不大于0时只限制单独设置过的主机。超过速率时的处理方式见Mode。
+ * @author wuhualu
+ */
+public class RateLimitPolicy {
+
+    /**
+     * 超过速率时的处理方式
+     */
+    public enum Mode {
+        /**
+         * 立即抛出RateLimitExceededException
+         */
+        REJECT,
+        /**
+         * 允许burst个请求的突发，超出后等待，需要等待的时间超过maxWait时抛出RateLimitExceededException
+         */
+        WAIT,
+        /**
+         * 不允许突发，请求按固定间隔均匀发出，需要等待的时间超过maxWait时抛出RateLimitExceededException
+         */
+        SMOOTH
+    }
+
+    private final double permitsPerSecond;
+
+    private final int burst;
+
+    private final Map<String, double[]> hostRates;
+
+    private final Mode mode;
+
+    private final long maxWaitNanos;
+
+    private final boolean retryAfterEnabled;
+
+    private final long maxRetryAfterNanos;
+
+    private final double backoffRatio;
+
+    private final double minRateRatio;
+
+    private final double recoveryStep;
+
+    private final ConcurrentMap<String, RateLimiter> limiters = new ConcurrentHashMap<>();
+
+    private RateLimitPolicy(Builder builder) {
+        this.permitsPerSecond = builder.permitsPerSecond;
+        this.burst = builder.burst;
+        this.hostRates = new HashMap<>(builder.hostRates);
+        this.mode = builder.mode;
+        this.maxWaitNanos = builder.mode == Mode.REJECT ? 0 : TimeUnit.MILLISECONDS.toNanos(builder.maxWait);
+        this.retryAfterEnabled = builder.retryAfterEnabled;
+        this.maxRetryAfterNanos = TimeUnit.MILLISECONDS.toNanos(builder.maxRetryAfter);
+        this.backoffRatio = builder.backoffRatio;
+        this.minRateRatio = builder.minRateRatio;
+        this.recoveryStep = builder.recoveryStep;
+    }
+
+    public static Builder custom() {
+        return new Builder();
+    }
+
+    /**
+     * 获取路由对应的限流器，没有则创建
+     * @param route scheme://host:port
+     * @return 限流器，路由不限流时返回null
+     */
+    public RateLimiter getRateLimiter(String route) {
+        RateLimiter limiter = limiters.get(route);
+        if (limiter == null) {
+            double[] rate = hostRates.get(route);
+            if (rate == null && permitsPerSecond <= 0) {
+                return null;
+            }
+            double rps = rate == null ? permitsPerSecond : rate[0];
+            int size = mode == Mode.SMOOTH ? 1 : (int) (rate == null ? burst : rate[1]);
+            limiter = limiters.computeIfAbsent(route, key -> new RateLimiter(key, rps, size, this));
+        }
+        return limiter;
+    }
+
+    long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    double getMinRateRatio() {
+        return minRateRatio;
+    }
+
+    double getRecoveryStep() {
+        return recoveryStep;
+    }
+
+    /**
+     * 解析响应中的Retry-After，支持秒数和HTTP日期两种格式
+     * @return 需要等待的时长,ns，没有或不能解析时返回-1
+     */
+    long getRetryAfterNanos(HttpResponse response) {
+        if (!retryAfterEnabled) {
+            return -1;
+        }
+        Header header = response.getFirstHeader("Retry-After");
+        if (header == null) {
+            return -1;
+        }
+        String value = header.getValue().trim();
+        long nanos;
+        try {
+            nanos = TimeUnit.SECONDS.toNanos(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            if (date == null) {
+                return -1;
+            }
+            nanos = TimeUnit.MILLISECONDS.toNanos(date.getTime() - System.currentTimeMillis());
+        }
+        return nanos <= 0 ? -1 : Math.min(nanos, maxRetryAfterNanos);
+    }
+
+    public static class Builder {
+
+        private double permitsPerSecond;
+
+        private int burst = 1;
+
+        private final Map<String, double[]> hostRates = new HashMap<>();
+
+        private Mode mode = Mode.WAIT;
+
+        private long maxWait = 1000;
+
+        private boolean retryAfterEnabled = true;
+
+        private long maxRetryAfter = 60000;
+
+        private double backoffRatio = 0.5;
+
+        private double minRateRatio = 0.1;
+
+        private double recoveryStep = 0.01;
+
+        /**
+         * @param permitsPerSecond 没有单独设置的主机的默认速率，每秒请求数，默认0不限制
+         * @param burst 允许的突发请求数，默认1
+         */
+        public Builder setRate(double permitsPerSecond, int burst) {
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * @param host 主机，如https://api.partner.com，路径部分会被忽略
+         * @param permitsPerSecond 该主机的速率，每秒请求数
+         * @param burst 允许的突发请求数
+         */
+        public Builder setRate(String host, double permitsPerSecond, int burst) {
+            this.hostRates.put(URIUtils.extractHost(URI.create(host)).toURI(), new double[]{permitsPerSecond, burst});
+            return this;
+        }
+
+        /**
+         * @param mode 超过速率时的处理方式，默认WAIT
+         * @param maxWait WAIT和SMOOTH模式下最多等待的时间,ms，默认1000
+         */
+        public Builder setMode(Mode mode, long maxWait) {
+            this.mode = mode;
+            this.maxWait = maxWait;
+            return this;
+        }
+
+        /**
+         * @param retryAfterEnabled 收到429/503时是否按Retry-After暂停发送，默认true
+         * @param maxRetryAfter Retry-After的上限,ms，默认60000
+         */
+        public Builder setRetryAfter(boolean retryAfterEnabled, long maxRetryAfter) {
+            this.retryAfterEnabled = retryAfterEnabled;
+            this.maxRetryAfter = maxRetryAfter;
+            return this;
+        }
+
+        /**
+         * @param backoffRatio 收到429时速率乘以该值，0~1，默认0.5
+         * @param minRateRatio 速率最低降到设置值的多少，默认0.1
+         * @param recoveryStep 每个成功的请求速率恢复设置值的多少，默认0.01
+         */
+        public Builder setAdaptive(double backoffRatio, double minRateRatio, double recoveryStep) {
+            this.backoffRatio = backoffRatio;
+            this.minRateRatio = minRateRatio;
+            this.recoveryStep = recoveryStep;
+            return this;
+        }
+
+        public RateLimitPolicy build() {
+            return new RateLimitPolicy(this);
+        }
+    }
+}
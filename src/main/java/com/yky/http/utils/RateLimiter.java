@@ -0,0 +1,136 @@
+package com.yky.http.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个路由的限流器，由RateLimitPolicy按路由创建
+ * 采用GCRA(令牌桶的等价形式)：只保存一个理论到达时间(TAT)，每个请求把它推后一个发放间隔，
+ * 请求时间早于TAT - 突发容量时需要等待，通过CAS更新，没有锁也没有后台线程。
+ * 收到429/503时按Retry-After暂停发送，并把速率乘以backoffRatio，之后每个成功的请求逐渐恢复。
+ * @author wuhualu
+ */
+public class RateLimiter {
+
+    private final String route;
+
+    private final double permitsPerSecond;
+
+    private final int burst;
+
+    private final RateLimitPolicy policy;
+
+    /**
+     * 理论到达时间,ns
+     */
+    private final AtomicLong tat = new AtomicLong(System.nanoTime());
+
+    /**
+     * 当前速率相对于permitsPerSecond的比例，double以long的位模式保存以便CAS
+     */
+    private final AtomicLong rateFactor = new AtomicLong(Double.doubleToLongBits(1));
+
+    /**
+     * 服务端要求在此之前不要发送,ns，0表示没有限制
+     */
+    private final AtomicLong blockedUntil = new AtomicLong();
+
+    RateLimiter(String route, double permitsPerSecond, int burst, RateLimitPolicy policy) {
+        this.route = route;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.policy = policy;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * @return 当前的速率，每秒请求数
+     */
+    public double getRate() {
+        return permitsPerSecond * Double.longBitsToDouble(rateFactor.get());
+    }
+
+    /**
+     * 获取一个许可，需要等待时在当前线程中等待
+     * @param maxWaitNanos 最多等待的时间，0表示不等待
+     * @throws RateLimitExceededException 在maxWaitNanos内拿不到许可时抛出，不消耗许可
+     */
+    void acquire(long maxWaitNanos) throws InterruptedException {
+        long wait = reserve(maxWaitNanos);
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * 预约一个许可
+     * @return 需要等待的时间,ns
+     */
+    long reserve(long maxWaitNanos) {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / getRate());
+        long tolerance = interval * (burst - 1);
+        while (true) {
+            long now = System.nanoTime();
+            long blocked = blockedUntil.get();
+            //Retry-After期间不能发送，突发容量也不能提前
+            long earliest = blocked != 0 && blocked - now > 0 ? blocked : now;
+
+            long current = tat.get();
+            long arrival = current - earliest > 0 ? current : earliest;
+            //current - tolerance之前不能发送
+            long wait = Math.max(earliest - now, current - tolerance - now);
+            if (wait > maxWaitNanos) {
+                throw new RateLimitExceededException(route, TimeUnit.NANOSECONDS.toMillis(wait));
+            }
+            if (tat.compareAndSet(current, arrival + interval)) {
+                return Math.max(wait, 0);
+            }
+        }
+    }
+
+    /**
+     * 收到响应后调用
+     * @param statusCode 响应状态码
+     * @param retryAfterNanos 响应中Retry-After的时长，没有时为-1
+     */
+    void onResponse(int statusCode, long retryAfterNanos) {
+        if (statusCode == 429 || statusCode == 503) {
+            if (retryAfterNanos > 0) {
+                long until = System.nanoTime() + retryAfterNanos;
+                long current;
+                do {
+                    current = blockedUntil.get();
+                    if (current != 0 && current - until >= 0) {
+                        break;
+                    }
+                } while (!blockedUntil.compareAndSet(current, until));
+            }
+            if (statusCode == 429) {
+                adjust(policy.getBackoffRatio(), 0);
+            }
+        } else if (statusCode < 500) {
+            adjust(1, policy.getRecoveryStep());
+        }
+    }
+
+    private void adjust(double ratio, double step) {
+        long current;
+        double next;
+        do {
+            current = rateFactor.get();
+            double factor = Double.longBitsToDouble(current);
+            next = Math.max(policy.getMinRateRatio(), Math.min(1, factor * ratio + step));
+            if (next == factor) {
+                return;
+            }
+        } while (!rateFactor.compareAndSet(current, Double.doubleToLongBits(next)));
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimiter{route=" + route + ", rate=" + String.format("%.2f", getRate()) + "/s, burst=" + burst + "}";
+    }
+}
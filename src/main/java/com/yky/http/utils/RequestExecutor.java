@@ -0,0 +1,484 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.impl.execchain.RequestAbortedException;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 请求的执行流程：按RetryPolicy重试和发送对冲请求，每次尝试通过HttpTransport发送，默认使用HttpClientManager中共享的连接池
+ * @author wuhualu
+ */
+class RequestExecutor {
+
+    private static Logger logger = LoggerFactory.getLogger(RequestExecutor.class);
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    /**
+     * 执行对冲请求的线程池
+     */
+    private static final ExecutorService HEDGE_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "http-hedge-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 到达截止时间时中止请求的定时器，请求按时完成后取消的任务会立即从队列中移除
+     */
+    private static final ScheduledThreadPoolExecutor DEADLINE_TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "http-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        DEADLINE_TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private static volatile RetryPolicy retryPolicy = RetryPolicy.NONE;
+
+    private static volatile HttpTransport transport = Http1Transport.INSTANCE;
+
+    private static volatile CircuitBreakerPolicy circuitBreakerPolicy;
+
+    private static volatile ConcurrencyLimitPolicy concurrencyLimitPolicy;
+
+    private static volatile RateLimitPolicy rateLimitPolicy;
+
+    static void setRetryPolicy(RetryPolicy policy) {
+        retryPolicy = policy == null ? RetryPolicy.NONE : policy;
+    }
+
+    static void setTransport(HttpTransport httpTransport) {
+        transport = httpTransport == null ? Http1Transport.INSTANCE : httpTransport;
+    }
+
+    static void setCircuitBreakerPolicy(CircuitBreakerPolicy policy) {
+        circuitBreakerPolicy = policy;
+    }
+
+    static void setConcurrencyLimitPolicy(ConcurrencyLimitPolicy policy) {
+        concurrencyLimitPolicy = policy;
+    }
+
+    static void setRateLimitPolicy(RateLimitPolicy policy) {
+        rateLimitPolicy = policy;
+    }
+
+    /**
+     * 执行请求，返回的响应由调用方关闭
+     * @param request 请求
+     * @return 响应
+     * @throws IOException 重试次数用完或不能重试时抛出最后一次的异常，超过截止时间时抛出DeadlineExceededException
+     */
+    static CloseableHttpResponse execute(HttpRequestBase request) throws IOException {
+        Deadline deadline = deadline(request);
+        RetryPolicy policy = retryPolicy;
+        boolean retryable = policy != RetryPolicy.NONE && policy.isRetryable(request.getMethod()) && isRepeatable(request);
+        int maxAttempts = retryable ? policy.getMaxAttempts() : 1;
+        if (retryable) {
+            policy.getBudget().deposit();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            CloseableHttpResponse response;
+            try {
+                //按分位数对冲时，样本不足前hedgeDelay为0，不发送对冲请求
+                long hedgeDelay = retryable && policy.isHedgingEnabled() ? policy.hedgeDelay() : 0;
+                response = hedgeDelay > 0
+                        ? executeHedged(request, policy, hedgeDelay, deadline) : attempt(request, policy, deadline);
+            } catch (IOException e) {
+                long delay;
+                if (attempt < maxAttempts && !request.isAborted() && policy.isRetryable(e) && (delay = retryDelay(policy, attempt, deadline)) >= 0
+                        && policy.getBudget().tryWithdraw()) {
+                    logger.warn("请求失败，准备第{}次重试, URL:{}, 异常:{}", attempt, request.getURI(), e.toString());
+                    backoff(request, delay);
+                    continue;
+                }
+                throw e;
+            }
+
+            int statusCode = response.getStatusLine().getStatusCode();
+            long delay;
+            if (attempt < maxAttempts && !request.isAborted() && policy.isRetryable(statusCode) && (delay = retryDelay(policy, attempt, deadline)) >= 0
+                    && policy.getBudget().tryWithdraw()) {
+                logger.warn("响应状态码为{}，准备第{}次重试, URL:{}", statusCode, attempt, request.getURI());
+                //读完响应体，连接可以继续复用
+                EntityUtils.consumeQuietly(response.getEntity());
+                HttpMetrics.complete(response);
+                response.close();
+                backoff(request, delay);
+                continue;
+            }
+            return response;
+        }
+    }
+
+    /**
+     * @return 当前线程通过withDeadline设置的截止时间和ClientProfile开启截止时间时调用方超时时间中更早的一个，都没有时返回null
+     */
+    private static Deadline deadline(HttpRequestBase request) {
+        Deadline deadline = Deadline.current();
+        RequestConfig config = request.getConfig();
+        if (config != null && config.getSocketTimeout() > 0 && ClientProfiles.get(request).isDeadlineEnabled()) {
+            deadline = Deadline.after(config.getSocketTimeout()).min(deadline);
+        }
+        return deadline;
+    }
+
+    /**
+     * @return 第attempt次请求失败后的等待时间,ms，等待后已经来不及再发送请求时返回-1
+     */
+    private static long retryDelay(RetryPolicy policy, int attempt, Deadline deadline) {
+        long delay = policy.backoff(attempt);
+        return deadline != null && delay >= deadline.remainingMillis() ? -1 : delay;
+    }
+
+    /**
+     * 发送一次请求，lb://name形式的地址先由LoadBalancer选择实例，发送完成后恢复原地址，以便重试时重新选择
+     */
+    private static CloseableHttpResponse attempt(HttpRequestBase request, RetryPolicy policy, Deadline deadline) throws IOException {
+        URI logical = request.getURI();
+        LoadBalancer balancer = LoadBalancers.get(logical);
+        if (balancer == null) {
+            return guard(request, policy, deadline);
+        }
+
+        Endpoint endpoint = balancer.choose();
+        request.setURI(endpoint.resolve(logical));
+        endpoint.start();
+        long start = System.nanoTime();
+        try {
+            CloseableHttpResponse response = guard(request, policy, deadline);
+            endpoint.complete(response.getStatusLine().getStatusCode() < 500, System.nanoTime() - start);
+            return response;
+        } catch (RequestRejectedException e) {
+            //请求没有发送，不计入实例的统计
+            endpoint.cancel();
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            endpoint.complete(false, System.nanoTime() - start);
+            throw e;
+        } finally {
+            request.setURI(logical);
+        }
+    }
+
+    /**
+     * 发送一次请求，超过速率时按RateLimitPolicy等待或拒绝，熔断器打开或并发数达到上限时直接拒绝
+     */
+    private static CloseableHttpResponse guard(HttpRequestBase request, RetryPolicy policy, Deadline deadline) throws IOException {
+        CircuitBreakerPolicy breakerPolicy = circuitBreakerPolicy;
+        ConcurrencyLimitPolicy limitPolicy = concurrencyLimitPolicy;
+        RateLimitPolicy ratePolicy = rateLimitPolicy;
+        if (breakerPolicy == null && limitPolicy == null && ratePolicy == null) {
+            return send(request, policy, deadline);
+        }
+
+        String route = URIUtils.extractHost(request.getURI()).toURI();
+        //先等待速率许可，等待期间不占用熔断器的半开名额和并发数
+        RateLimiter rateLimiter = ratePolicy == null ? null : ratePolicy.getRateLimiter(route);
+        if (rateLimiter != null) {
+            try {
+                long maxWait = ratePolicy.getMaxWaitNanos();
+                rateLimiter.acquire(deadline == null ? maxWait : Math.min(maxWait, deadline.remainingNanos()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("等待速率许可时被中断");
+            }
+        }
+        CircuitBreaker breaker = breakerPolicy == null ? null : breakerPolicy.getCircuitBreaker(route);
+        if (breaker != null && !breaker.tryAcquire()) {
+            throw new CircuitBreakerOpenException(route);
+        }
+        AdaptiveConcurrencyLimiter limiter = limitPolicy == null ? null : limitPolicy.getLimiter(route);
+        if (limiter != null && !limiter.tryAcquire()) {
+            if (breaker != null) {
+                breaker.release();
+            }
+            throw new ConcurrencyLimitExceededException(route, limiter.getLimit());
+        }
+
+        long start = System.nanoTime();
+        TrackedHttpResponse response;
+        try {
+            response = send(request, policy, deadline);
+        } catch (IOException | RuntimeException e) {
+            long elapsed = System.nanoTime() - start;
+            if (breaker != null) {
+                breaker.onResult(false, elapsed);
+            }
+            if (limiter != null) {
+                limiter.release(false, elapsed);
+            }
+            throw e;
+        }
+
+        //耗时按收到响应头计算，响应体的读取时间不计入
+        long elapsed = System.nanoTime() - start;
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (breaker != null) {
+            breaker.onResult(statusCode < 500, elapsed);
+        }
+        if (limiter != null) {
+            //响应体读完或关闭后才归还并发名额，读取响应体期间连接仍被占用
+            boolean success = statusCode < 500 && statusCode != 429;
+            response.onComplete(() -> limiter.release(success, elapsed));
+        }
+        if (rateLimiter != null) {
+            rateLimiter.onResponse(statusCode, ratePolicy.getRetryAfterNanos(response));
+        }
+        return response;
+    }
+
+    private static TrackedHttpResponse send(HttpRequestBase request, RetryPolicy policy, Deadline deadline) throws IOException {
+        RequestConfig config = request.getConfig();
+        ScheduledFuture<?> timer = null;
+        if (deadline != null) {
+            long remaining = deadline.remainingMillis();
+            if (remaining <= 0) {
+                throw new DeadlineExceededException("请求超过截止时间，没有发送, URL:" + request.getURI());
+            }
+            //各阶段的超时时间都不超过剩余时间，DNS解析和重定向不受超时时间限制，到期时由定时器中止
+            request.setConfig(limit(config, remaining));
+            String header = ClientProfiles.get(request).getDeadlineHeader();
+            if (header != null) {
+                request.setHeader(header, Long.toString(remaining));
+            }
+            timer = DEADLINE_TIMER.schedule(request::abort, remaining, TimeUnit.MILLISECONDS);
+        }
+
+        HttpClientContext context = HttpClientContext.create();
+        RequestMetrics metrics = HttpMetrics.start(request, context);
+        CapturePolicy capture = HttpCapture.getPolicy();
+        long start = System.nanoTime();
+
+        TrackedHttpResponse response;
+        try {
+            response = TrackedHttpResponse.wrap(transport.execute(request, context));
+        } catch (IOException | RuntimeException e) {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            if (metrics != null) {
+                HttpMetrics.onFailure(metrics, e);
+            }
+            if (capture != null) {
+                HttpCapture.onFailure(capture, request, context.getRequest(), e, start);
+            }
+            if (e instanceof IOException && deadline != null && deadline.isExpired()) {
+                throw new DeadlineExceededException("请求超过截止时间，已中止, URL:" + request.getURI(), e);
+            }
+            throw e;
+        } finally {
+            if (deadline != null) {
+                request.setConfig(config);
+            }
+        }
+        if (timer != null) {
+            //响应体读完或关闭后才取消，读取响应体也不会超过截止时间
+            ScheduledFuture<?> deadlineTimer = timer;
+            response.onComplete(() -> deadlineTimer.cancel(false));
+        }
+        //先包装抓取的响应体，HttpMetrics.complete需要最外层是MeteredHttpEntity
+        if (capture != null) {
+            HttpCapture.onResponse(capture, request, context.getRequest(), response, start);
+        }
+        if (metrics != null) {
+            HttpMetrics.onResponse(metrics, response);
+        }
+
+        policy.recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        HttpResponseCache.record(context);
+        return response;
+    }
+
+    /**
+     * 发送请求，超过对冲等待时间还没有返回时再发送一个相同的请求，取先成功返回的响应，中止另一个
+     */
+    private static CloseableHttpResponse executeHedged(HttpRequestBase request, RetryPolicy policy, long hedgeDelay,
+                                                       Deadline deadline) throws IOException {
+        //第一个请求发送期间地址会被替换为LoadBalancer选择的实例，对冲请求使用原地址重新选择
+        URI logical = request.getURI();
+        CompletableFuture<CloseableHttpResponse> primary = submit(request, policy, deadline);
+        try {
+            return primary.get(hedgeDelay, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.debug("请求超过对冲等待时间，发送对冲请求, URL:{}", request.getURI());
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            request.abort();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待响应时被中断");
+        }
+
+        //对冲请求与重试一样消耗重试预算，预算用完时只等待第一个请求，避免后端变慢时成倍增加负载
+        if (!policy.getBudget().tryWithdraw()) {
+            logger.debug("重试预算不足，不发送对冲请求, URL:{}", request.getURI());
+            return await(primary, request);
+        }
+
+        HttpRequestBase backup = copy(request);
+        backup.setURI(logical);
+        CompletableFuture<CloseableHttpResponse> secondary = submit(backup, policy, deadline);
+
+        //取先成功返回的响应，两个都失败时取后失败的异常
+        CompletableFuture<HttpRequestBase> winner = new CompletableFuture<>();
+        CloseableHttpResponse[] responses = new CloseableHttpResponse[2];
+        AtomicInteger failures = new AtomicInteger();
+        race(primary, request, 0, responses, winner, failures);
+        race(secondary, backup, 1, responses, winner, failures);
+
+        try {
+            HttpRequestBase winnerRequest = winner.get();
+            if (winnerRequest == request) {
+                backup.abort();
+                return responses[0];
+            }
+            //中止第一个请求后清除中止状态，之后按状态码重试时原请求还能发送，只有调用方的中止会停止重试
+            request.abort();
+            request.reset();
+            return responses[1];
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            request.abort();
+            backup.abort();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待响应时被中断");
+        }
+    }
+
+    private static CloseableHttpResponse await(CompletableFuture<CloseableHttpResponse> future, HttpRequestBase request) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            request.abort();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待响应时被中断");
+        }
+    }
+
+    private static void race(CompletableFuture<CloseableHttpResponse> future, HttpRequestBase request, int index,
+                             CloseableHttpResponse[] responses, CompletableFuture<HttpRequestBase> winner, AtomicInteger failures) {
+        future.whenComplete((response, e) -> {
+            if (e == null) {
+                responses[index] = response;
+                if (!winner.complete(request)) {
+                    //另一个请求已经先返回，关闭这个响应
+                    closeQuietly(response);
+                }
+            } else if (failures.incrementAndGet() == 2) {
+                winner.completeExceptionally(e);
+            }
+        });
+    }
+
+    private static CompletableFuture<CloseableHttpResponse> submit(HttpRequestBase request, RetryPolicy policy, Deadline deadline) {
+        CompletableFuture<CloseableHttpResponse> future = new CompletableFuture<>();
+        HEDGE_EXECUTOR.execute(() -> {
+            try {
+                future.complete(attempt(request, policy, deadline));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private static void backoff(HttpRequestBase request, long delay) throws InterruptedIOException {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("重试等待时被中断");
+        }
+        //等待期间被调用方或HttpBatch的截止时间中止时不再重试，reset会清除中止状态
+        if (request.isAborted()) {
+            throw new RequestAbortedException("请求已被中止，不再重试");
+        }
+        //清除上一次请求的状态，使请求可以再次发送
+        request.reset();
+    }
+
+    /**
+     * @return 各阶段超时时间都不超过剩余时间的RequestConfig
+     */
+    private static RequestConfig limit(RequestConfig config, long remaining) {
+        int budget = (int) Math.min(remaining, Integer.MAX_VALUE);
+        RequestConfig original = config == null ? RequestConfig.DEFAULT : config;
+        return RequestConfig.copy(original)
+                .setConnectionRequestTimeout(limit(original.getConnectionRequestTimeout(), budget))
+                .setConnectTimeout(limit(original.getConnectTimeout(), budget))
+                .setSocketTimeout(limit(original.getSocketTimeout(), budget))
+                .build();
+    }
+
+    private static int limit(int timeout, int budget) {
+        return timeout > 0 && timeout < budget ? timeout : budget;
+    }
+
+    private static boolean isRepeatable(HttpRequestBase request) {
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            return entity == null || entity.isRepeatable();
+        }
+        return true;
+    }
+
+    /**
+     * 复制请求。不能用clone，clone出来的请求和原请求共用同一个Cancellable，中止其中一个时另一个的连接不会被中止
+     */
+    private static HttpRequestBase copy(HttpRequestBase request) {
+        return (HttpRequestBase) RequestBuilder.copy(request).build();
+    }
+
+    private static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+
+    private static void closeQuietly(CloseableHttpResponse response) {
+        HttpMetrics.complete(response);
+        try {
+            response.close();
+        } catch (IOException e) {
+            logger.debug("关闭响应失败", e);
+        }
+    }
+}
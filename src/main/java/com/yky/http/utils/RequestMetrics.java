@@ -0,0 +1,205 @@
+package com.yky.http.utils;
+
+import org.apache.http.protocol.HttpContext;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一次请求的指标，耗时单位都是ns，没有经历的阶段为-1(如复用连接时没有建立连接的耗时)
+ * 阶段划分：连接池等待 -> 建立连接 -> 首字节(发送请求到收到响应头) -> 读取响应体
+ * @author wuhualu
+ */
+public class RequestMetrics {
+
+    static final String ATTRIBUTE = RequestMetrics.class.getName();
+
+    /**
+     * 从连接池获取连接时拿不到HttpContext，通过线程变量传递
+     */
+    private static final ThreadLocal<RequestMetrics> CURRENT = new ThreadLocal<>();
+
+    private final String route;
+
+    private final String method;
+
+    private final long start = System.nanoTime();
+
+    private long poolWaitNanos = -1;
+
+    private long connectNanos = -1;
+
+    private long timeToFirstByteNanos = -1;
+
+    private long headersAt;
+
+    private long bodyReadNanos = -1;
+
+    private long totalNanos;
+
+    private long bytesSent;
+
+    private long bytesReceived;
+
+    /**
+     * 请求体压缩节省的字节数
+     */
+    private long compressionSaved;
+
+    /**
+     * 压缩的响应体在解压前的字节数，响应没有压缩时为-1
+     */
+    private long compressedBytesReceived = -1;
+
+    private int statusCode;
+
+    private Exception exception;
+
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    RequestMetrics(String route, String method) {
+        this.route = route;
+        this.method = method;
+    }
+
+    static RequestMetrics current() {
+        return CURRENT.get();
+    }
+
+    static RequestMetrics from(HttpContext context) {
+        return context == null ? null : (RequestMetrics) context.getAttribute(ATTRIBUTE);
+    }
+
+    void attach(HttpContext context) {
+        context.setAttribute(ATTRIBUTE, this);
+        CURRENT.set(this);
+    }
+
+    void detach() {
+        CURRENT.remove();
+    }
+
+    void addPoolWait(long nanos) {
+        poolWaitNanos = Math.max(poolWaitNanos, 0) + nanos;
+    }
+
+    void addConnect(long nanos) {
+        connectNanos = Math.max(connectNanos, 0) + nanos;
+    }
+
+    /**
+     * 收到一次响应头，有重定向时会调用多次，首字节耗时取最后一次，发送字节数累加
+     */
+    void onExchange(long timeToFirstByteNanos, long bytesSent) {
+        this.timeToFirstByteNanos = timeToFirstByteNanos;
+        this.bytesSent += bytesSent;
+    }
+
+    void onHeaders(int statusCode) {
+        this.statusCode = statusCode;
+        this.headersAt = System.nanoTime();
+    }
+
+    void onFailure(Exception exception) {
+        this.exception = exception;
+    }
+
+    void addBytesReceived(long bytes) {
+        bytesReceived += bytes;
+    }
+
+    void onCompressedBody(long uncompressedBytes, long compressedBytes) {
+        compressionSaved += uncompressedBytes - compressedBytes;
+    }
+
+    void addCompressedBytesReceived(long bytes) {
+        compressedBytesReceived = Math.max(compressedBytesReceived, 0) + bytes;
+    }
+
+    /**
+     * @return 第一次调用时返回true
+     */
+    boolean finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return false;
+        }
+        long now = System.nanoTime();
+        totalNanos = now - start;
+        if (headersAt != 0) {
+            bodyReadNanos = now - headersAt;
+        }
+        return true;
+    }
+
+    /**
+     * @return scheme://host:port
+     */
+    public String getRoute() {
+        return route;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return 响应状态码，请求失败时为0
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return 请求失败时的异常，成功时为null
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    public long getPoolWaitNanos() {
+        return poolWaitNanos;
+    }
+
+    public long getConnectNanos() {
+        return connectNanos;
+    }
+
+    public long getTimeToFirstByteNanos() {
+        return timeToFirstByteNanos;
+    }
+
+    public long getBodyReadNanos() {
+        return bodyReadNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return 发送的字节数，包括请求头
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * @return 请求体不压缩时发送的字节数，请求体没有压缩时等于getBytesSent
+     */
+    public long getUncompressedBytesSent() {
+        return bytesSent + compressionSaved;
+    }
+
+    /**
+     * @return 读取的响应体字节数(解压后)
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return 读取的响应体在解压前的字节数，响应没有压缩时等于getBytesReceived
+     */
+    public long getCompressedBytesReceived() {
+        return compressedBytesReceived < 0 ? bytesReceived : compressedBytesReceived;
+    }
+}
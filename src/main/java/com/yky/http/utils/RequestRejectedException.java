@@ -0,0 +1,14 @@
+package com.yky.http.utils;
+
+/**
+ * 请求在发送之前就被拒绝(如熔断、并发数超限)时抛出的异常，调用方可以据此快速失败或降级
+ * @author wuhualu
+ */
+public class RequestRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RequestRejectedException(String message) {
+        super(message);
+    }
+}
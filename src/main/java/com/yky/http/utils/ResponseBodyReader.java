@@ -0,0 +1,113 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpRequestBase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Supplier;
+
+/**
+ * 将响应体读入BufferPool中的数组，读完后交给回调处理，回调返回后数组归还池中
+ * 有Content-Length时按长度取数组，一次读完；长度未知时按需换更大的数组。
+ * 响应体超过maxBodySize时立即中止请求并抛出ResponseTooLargeException。
+ * @author wuhualu
+ */
+class ResponseBodyReader {
+
+    /**
+     * 长度未知时的初始数组大小
+     */
+    private static final int INITIAL_SIZE = 8192;
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * 当前线程的调用指定的maxBodySize，优先于ClientProfile中的配置
+     */
+    private static final ThreadLocal<Long> MAX_BODY_SIZE = new ThreadLocal<>();
+
+    /**
+     * 响应体的处理
+     */
+    @FunctionalInterface
+    interface BodyFunction<T> {
+        /**
+         * @param buffer 响应体，回调返回后会被复用，不要持有引用
+         * @param length 响应体长度
+         */
+        T apply(byte[] buffer, int length) throws IOException;
+    }
+
+    private ResponseBodyReader() {
+    }
+
+    static <T> T withMaxBodySize(long maxBodySize, Supplier<T> call) {
+        Long previous = MAX_BODY_SIZE.get();
+        MAX_BODY_SIZE.set(maxBodySize);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                MAX_BODY_SIZE.remove();
+            } else {
+                MAX_BODY_SIZE.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return 请求的响应体大小上限，小于0表示不限制
+     */
+    static long getMaxBodySize(HttpRequestBase request) {
+        Long maxBodySize = MAX_BODY_SIZE.get();
+        return maxBodySize != null ? maxBodySize : ClientProfiles.get(request).getMaxBodySize();
+    }
+
+    static <T> T read(HttpRequestBase request, HttpEntity entity, BodyFunction<T> function) throws IOException {
+        long maxBodySize = getMaxBodySize(request);
+        int limit = maxBodySize < 0 || maxBodySize > MAX_ARRAY_SIZE ? MAX_ARRAY_SIZE : (int) maxBodySize;
+
+        long contentLength = entity.getContentLength();
+        if (contentLength > limit) {
+            request.abort();
+            throw new ResponseTooLargeException(limit, contentLength);
+        }
+
+        byte[] buffer = BufferPool.acquire(contentLength >= 0 ? Math.max((int) contentLength, 1) : Math.min(INITIAL_SIZE, Math.max(limit, 1)));
+        try {
+            int length = 0;
+            try (InputStream inputStream = entity.getContent()) {
+                while (true) {
+                    if (length == buffer.length) {
+                        if (length >= limit) {
+                            //已经读到上限，还有数据就是超限
+                            if (inputStream.read() == -1) {
+                                break;
+                            }
+                            request.abort();
+                            throw new ResponseTooLargeException(limit, -1);
+                        }
+                        byte[] larger = BufferPool.acquire((int) Math.min(length * 2L, limit));
+                        System.arraycopy(buffer, 0, larger, 0, length);
+                        BufferPool.release(buffer);
+                        buffer = larger;
+                    }
+
+                    int n = inputStream.read(buffer, length, buffer.length - length);
+                    if (n == -1) {
+                        break;
+                    }
+                    length += n;
+                    if (length > limit) {
+                        request.abort();
+                        throw new ResponseTooLargeException(limit, -1);
+                    }
+                }
+            }
+            return function.apply(buffer, length);
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+}
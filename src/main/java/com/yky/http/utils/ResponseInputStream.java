@@ -0,0 +1,77 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 响应内容的流
+ * 读到流末尾后关闭，连接会归还连接池复用；没读完就关闭，则直接断开连接，避免为了复用连接而读完剩余的大响应体
+ * @author wuhualu
+ */
+class ResponseInputStream extends FilterInputStream {
+
+    private final CloseableHttpResponse response;
+
+    private boolean eof;
+
+    private boolean closed;
+
+    ResponseInputStream(CloseableHttpResponse response) throws IOException {
+        super(content(response));
+        this.response = response;
+    }
+
+    private static InputStream content(CloseableHttpResponse response) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        try {
+            return entity.getContent();
+        } catch (IOException | RuntimeException e) {
+            response.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b == -1) {
+            eof = true;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n == -1) {
+            eof = true;
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (eof) {
+                //已读完，关闭内容流会把连接归还连接池
+                super.close();
+            }
+        } finally {
+            HttpMetrics.complete(response);
+            //未读完时直接关闭响应，断开连接
+            response.close();
+        }
+    }
+}
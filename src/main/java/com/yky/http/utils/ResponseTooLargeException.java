@@ -0,0 +1,38 @@
+package com.yky.http.utils;
+
+import java.io.IOException;
+
+/**
+ * 响应体超过maxBodySize时抛出的异常，抛出前已经中止请求，剩余的响应体不会再读取
+ * @author wuhualu
+ */
+public class ResponseTooLargeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long limit;
+
+    private final long size;
+
+    public ResponseTooLargeException(long limit, long size) {
+        super(size >= 0
+                ? "响应体大小" + size + "字节超过上限" + limit + "字节"
+                : "响应体超过上限" + limit + "字节");
+        this.limit = limit;
+        this.size = size;
+    }
+
+    /**
+     * @return 响应体大小上限,字节
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return 响应头中的Content-Length，读取过程中超限时为-1
+     */
+    public long getSize() {
+        return size;
+    }
+}
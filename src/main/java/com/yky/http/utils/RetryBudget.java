@@ -0,0 +1,68 @@
+package com.yky.http.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 全局重试预算，防止后端故障时大量重试形成重试风暴
+ * 每个请求往预算里存入ratio个令牌，每次重试消耗1个令牌，令牌不足时不再重试。
+ * 例如ratio=0.1表示重试量最多约为正常请求量的10%。令牌数用AtomicLong存储，无锁。
+ * @author wuhualu
+ */
+public class RetryBudget {
+
+    /**
+     * 令牌放大倍数，用整数表示小数的令牌
+     */
+    private static final long SCALE = 1000;
+
+    private final long deposit;
+
+    private final long maxTokens;
+
+    private final AtomicLong tokens;
+
+    /**
+     * @param ratio 每个请求存入的令牌数，即允许的重试量占请求量的比例
+     * @param maxRetries 预算上限，即短时间内最多允许的重试次数
+     */
+    public RetryBudget(double ratio, int maxRetries) {
+        this.deposit = (long) (ratio * SCALE);
+        this.maxTokens = maxRetries * SCALE;
+        this.tokens = new AtomicLong(maxTokens);
+    }
+
+    /**
+     * 发送一次请求时调用，存入令牌
+     */
+    void deposit() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= maxTokens) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(maxTokens, current + deposit)));
+    }
+
+    /**
+     * 重试前调用，消耗一个令牌
+     * @return 令牌不足时返回false，不应该重试
+     */
+    boolean tryWithdraw() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    /**
+     * @return 当前还允许的重试次数
+     */
+    public long getAvailableRetries() {
+        return tokens.get() / SCALE;
+    }
+}
@@ -0,0 +1,248 @@
+package com.yky.http.utils;
+
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.HttpHostConnectException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 重试和对冲请求的策略，通过RetryPolicy.custom()...build()创建，创建后不可修改
+ * 重试：请求抛出指定的异常或返回指定的状态码时，按指数退避加随机抖动等待后重试，重试会消耗RetryBudget中的令牌。
+ * 对冲：请求在hedgeDelay(或最近耗时的分位数)内没有返回时，再发送一个相同的请求，取先返回的结果，取消另一个。对冲请求同样消耗RetryBudget中的令牌，令牌不足时不对冲。
+ * 默认只对GET、HEAD、PUT、DELETE、OPTIONS这些幂等请求生效。
+ * @author wuhualu
+ */
+public class RetryPolicy {
+
+    /**
+     * 不重试，也不对冲
+     */
+    public static final RetryPolicy NONE = custom().setMaxAttempts(1).build();
+
+    private static final Set<String> IDEMPOTENT_METHODS = new HashSet<>(Arrays.asList("GET", "HEAD", "PUT", "DELETE", "OPTIONS"));
+
+    private final int maxAttempts;
+
+    private final long initialBackoff;
+
+    private final long maxBackoff;
+
+    private final double multiplier;
+
+    private final double jitter;
+
+    private final Set<Integer> retryStatusCodes;
+
+    private final List<Class<? extends IOException>> retryExceptions;
+
+    private final boolean retryNonIdempotent;
+
+    private final RetryBudget budget;
+
+    private final long hedgeDelay;
+
+    private final LatencyTracker hedgeLatency;
+
+    private RetryPolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoff = builder.initialBackoff;
+        this.maxBackoff = builder.maxBackoff;
+        this.multiplier = builder.multiplier;
+        this.jitter = builder.jitter;
+        this.retryStatusCodes = Collections.unmodifiableSet(new HashSet<>(builder.retryStatusCodes));
+        this.retryExceptions = Collections.unmodifiableList(builder.retryExceptions);
+        this.retryNonIdempotent = builder.retryNonIdempotent;
+        this.budget = builder.budget;
+        this.hedgeDelay = builder.hedgeDelay;
+        this.hedgeLatency = builder.hedgePercentile > 0 ? new LatencyTracker(1024, builder.hedgePercentile) : null;
+    }
+
+    public static Builder custom() {
+        return new Builder();
+    }
+
+    int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    RetryBudget getBudget() {
+        return budget;
+    }
+
+    boolean isRetryable(String method) {
+        return retryNonIdempotent || IDEMPOTENT_METHODS.contains(method);
+    }
+
+    boolean isRetryable(int statusCode) {
+        return retryStatusCodes.contains(statusCode);
+    }
+
+    boolean isRetryable(IOException e) {
+        for (Class<? extends IOException> type : retryExceptions) {
+            if (type.isInstance(e)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 计算第attempt次请求失败后的等待时间
+     * @param attempt 已经进行的请求次数，从1开始
+     * @return 等待时间,ms
+     */
+    long backoff(int attempt) {
+        double backoff = Math.min(maxBackoff, initialBackoff * Math.pow(multiplier, attempt - 1));
+        //随机抖动，避免大量请求同时重试
+        return (long) (backoff * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * @return 发送对冲请求前等待的时间,ms，小于等于0表示不对冲。按分位数对冲时样本不足且没有设置hedgeDelay返回0，这段时间不对冲
+     */
+    long hedgeDelay() {
+        if (hedgeLatency != null) {
+            long percentile = hedgeLatency.get();
+            if (percentile > 0) {
+                return percentile;
+            }
+        }
+        return hedgeDelay;
+    }
+
+    boolean isHedgingEnabled() {
+        return hedgeDelay > 0 || hedgeLatency != null;
+    }
+
+    /**
+     * 记录请求耗时，用于按分位数计算对冲的等待时间
+     */
+    void recordLatency(long millis) {
+        if (hedgeLatency != null) {
+            hedgeLatency.record(millis);
+        }
+    }
+
+    public static class Builder {
+
+        private int maxAttempts = 3;
+
+        private long initialBackoff = 100;
+
+        private long maxBackoff = 2000;
+
+        private double multiplier = 2;
+
+        private double jitter = 0.5;
+
+        private Set<Integer> retryStatusCodes = new HashSet<>(Arrays.asList(502, 503, 504));
+
+        private List<Class<? extends IOException>> retryExceptions = Arrays.asList(
+                ConnectException.class, ConnectTimeoutException.class, HttpHostConnectException.class,
+                NoHttpResponseException.class, SocketTimeoutException.class);
+
+        private boolean retryNonIdempotent = false;
+
+        private RetryBudget budget = new RetryBudget(0.1, 100);
+
+        private long hedgeDelay = 0;
+
+        private double hedgePercentile = 0;
+
+        /**
+         * @param maxAttempts 最多请求次数(包括第一次)，1表示不重试
+         */
+        public Builder setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param initialBackoff 第一次重试前的等待时间,ms
+         * @param maxBackoff 最长等待时间,ms
+         * @param multiplier 每次重试等待时间的增长倍数
+         */
+        public Builder setBackoff(long initialBackoff, long maxBackoff, double multiplier) {
+            this.initialBackoff = initialBackoff;
+            this.maxBackoff = maxBackoff;
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * @param jitter 随机抖动比例，0~1，实际等待时间在[backoff*(1-jitter), backoff]之间
+         */
+        public Builder setJitter(double jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * @param statusCodes 需要重试的响应状态码，默认502、503、504
+         */
+        public Builder setRetryStatusCodes(Integer... statusCodes) {
+            this.retryStatusCodes = new HashSet<>(Arrays.asList(statusCodes));
+            return this;
+        }
+
+        /**
+         * @param exceptions 需要重试的异常类型(包括子类)，默认为连接失败、连接超时、读超时和服务端无响应
+         */
+        @SafeVarargs
+        public final Builder setRetryExceptions(Class<? extends IOException>... exceptions) {
+            List<Class<? extends IOException>> types = new ArrayList<>(exceptions.length);
+            for (Class<? extends IOException> type : exceptions) {
+                types.add(type);
+            }
+            this.retryExceptions = types;
+            return this;
+        }
+
+        /**
+         * @param retryNonIdempotent 是否重试POST等非幂等请求，开启前请确认服务端能处理重复请求
+         */
+        public Builder setRetryNonIdempotent(boolean retryNonIdempotent) {
+            this.retryNonIdempotent = retryNonIdempotent;
+            return this;
+        }
+
+        /**
+         * @param budget 重试预算，多个策略可以共享同一个预算
+         */
+        public Builder setBudget(RetryBudget budget) {
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * @param hedgeDelay 请求超过该时间没有返回时发送对冲请求,ms，0表示不对冲
+         */
+        public Builder setHedgeDelay(long hedgeDelay) {
+            this.hedgeDelay = hedgeDelay;
+            return this;
+        }
+
+        /**
+         * 按最近请求耗时的分位数决定对冲请求的等待时间，样本不足时使用hedgeDelay，没有设置hedgeDelay时样本足够之前不对冲
+         * @param hedgePercentile 分位数，如0.95
+         */
+        public Builder setHedgePercentile(double hedgePercentile) {
+            this.hedgePercentile = hedgePercentile;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
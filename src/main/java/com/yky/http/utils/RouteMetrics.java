@@ -0,0 +1,148 @@
+package com.yky.http.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个路由(scheme://host:port)的累计指标，由HttpMetrics按路由创建
+ * @author wuhualu
+ */
+public class RouteMetrics {
+
+    private static final int MAX_STATUS_CODE = 600;
+
+    private final String route;
+
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    private final LatencyHistogram poolWait = new LatencyHistogram();
+
+    private final LatencyHistogram connect = new LatencyHistogram();
+
+    private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+
+    private final LatencyHistogram bodyRead = new LatencyHistogram();
+
+    private final LongAdder bytesSent = new LongAdder();
+
+    private final LongAdder bytesReceived = new LongAdder();
+
+    private final LongAdder uncompressedBytesSent = new LongAdder();
+
+    private final LongAdder compressedBytesReceived = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final AtomicLongArray statusCodes = new AtomicLongArray(MAX_STATUS_CODE);
+
+    RouteMetrics(String route) {
+        this.route = route;
+    }
+
+    void record(RequestMetrics metrics) {
+        total.record(metrics.getTotalNanos());
+        poolWait.record(metrics.getPoolWaitNanos());
+        connect.record(metrics.getConnectNanos());
+        timeToFirstByte.record(metrics.getTimeToFirstByteNanos());
+        bodyRead.record(metrics.getBodyReadNanos());
+        bytesSent.add(metrics.getBytesSent());
+        bytesReceived.add(metrics.getBytesReceived());
+        uncompressedBytesSent.add(metrics.getUncompressedBytesSent());
+        compressedBytesReceived.add(metrics.getCompressedBytesReceived());
+
+        int statusCode = metrics.getStatusCode();
+        if (metrics.getException() != null) {
+            errors.increment();
+        } else if (statusCode > 0 && statusCode < MAX_STATUS_CODE) {
+            statusCodes.incrementAndGet(statusCode);
+        }
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * @return 请求总耗时
+     */
+    public LatencyHistogram getTotal() {
+        return total;
+    }
+
+    /**
+     * @return 从连接池获取连接的等待时间
+     */
+    public LatencyHistogram getPoolWait() {
+        return poolWait;
+    }
+
+    /**
+     * @return 建立新连接(包括TLS握手)的耗时，复用连接的请求不计入
+     */
+    public LatencyHistogram getConnect() {
+        return connect;
+    }
+
+    /**
+     * @return 从开始发送请求到收到响应头的耗时
+     */
+    public LatencyHistogram getTimeToFirstByte() {
+        return timeToFirstByte;
+    }
+
+    /**
+     * @return 读取响应体的耗时
+     */
+    public LatencyHistogram getBodyRead() {
+        return bodyRead;
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    /**
+     * @return 请求体不压缩时发送的字节数，与getBytesSent的差值为压缩节省的流量
+     */
+    public long getUncompressedBytesSent() {
+        return uncompressedBytesSent.sum();
+    }
+
+    /**
+     * @return 响应体在解压前的字节数，与getBytesReceived的差值为压缩节省的流量
+     */
+    public long getCompressedBytesReceived() {
+        return compressedBytesReceived.sum();
+    }
+
+    /**
+     * @return 抛出IO异常的请求数
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getStatusCount(int statusCode) {
+        return statusCode > 0 && statusCode < MAX_STATUS_CODE ? statusCodes.get(statusCode) : 0;
+    }
+
+    /**
+     * @return 出现过的状态码及次数
+     */
+    public Map<Integer, Long> getStatusCounts() {
+        Map<Integer, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < MAX_STATUS_CODE; i++) {
+            long count = statusCodes.get(i);
+            if (count > 0) {
+                counts.put(i, count);
+            }
+        }
+        return counts;
+    }
+}
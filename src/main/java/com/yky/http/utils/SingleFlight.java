@@ -0,0 +1,170 @@
+package com.yky.http.utils;
+
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpRequestBase;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 合并并发的相同请求，默认关闭
+ * 开启后，同一时刻key相同的GET/HEAD请求只有第一个会真正发送，其余请求等待并共享同一个结果(或异常)，
+ * 避免缓存过期时大量线程同时请求同一个地址压垮后端。
+ * 默认key为请求方法+完整URL(含参数)+调用方设置的全部请求头，Authorization、Cookie不同的请求(不同用户)不会被合并。
+ * @author wuhualu
+ */
+public class SingleFlight {
+
+    private static volatile boolean enabled = false;
+
+    /**
+     * 携带身份信息的请求头，只有在keyHeaders中显式指定时才允许合并
+     */
+    private static final String[] CREDENTIAL_HEADERS = {"Authorization", "Proxy-Authorization", "Cookie"};
+
+    private static volatile Function<HttpRequestBase, String> keyFunction = SingleFlight::defaultKey;
+
+    private static final ConcurrentHashMap<String, CompletableFuture<Object>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private static final LongAdder executedCount = new LongAdder();
+
+    private static final LongAdder collapsedCount = new LongAdder();
+
+    /**
+     * 开启请求合并，key包含请求方法、完整URL和全部请求头
+     */
+    public static void enable() {
+        keyFunction = SingleFlight::defaultKey;
+        enabled = true;
+    }
+
+    /**
+     * 开启请求合并，只有指定的请求头参与计算key，其它请求头不同的请求也会被合并
+     * 携带Authorization、Proxy-Authorization、Cookie的请求，只有这些请求头也在keyHeaders中时才会被合并，避免不同用户共享响应
+     * @param keyHeaders 参与计算key的请求头，如Authorization，值不同的请求不会被合并
+     */
+    public static void enable(String... keyHeaders) {
+        String[] headers = keyHeaders == null ? new String[0] : keyHeaders.clone();
+        keyFunction = request -> headerKey(request, headers);
+        enabled = true;
+    }
+
+    /**
+     * 使用自定义的key开启请求合并，key相同的请求会被合并
+     * @param keyFunction 根据请求计算key，返回null表示该请求不合并
+     */
+    public static void enable(Function<HttpRequestBase, String> keyFunction) {
+        SingleFlight.keyFunction = keyFunction;
+        enabled = true;
+    }
+
+    /**
+     * 关闭请求合并，已经在等待的请求不受影响
+     */
+    public static void disable() {
+        enabled = false;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return 真正发送出去的请求数
+     */
+    public static long getExecutedCount() {
+        return executedCount.sum();
+    }
+
+    /**
+     * @return 被合并、直接复用其它请求结果的请求数
+     */
+    public static long getCollapsedCount() {
+        return collapsedCount.sum();
+    }
+
+    /**
+     * 执行请求，相同key的并发请求只执行一次
+     * @param request 请求
+     * @param call 真正发送请求的逻辑
+     * @return 请求结果
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T execute(HttpRequestBase request, Supplier<T> call) {
+        String key = isIdempotent(request) ? keyFunction.apply(request) : null;
+        if (key == null) {
+            return call.get();
+        }
+
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = IN_FLIGHT.putIfAbsent(key, future);
+        if (existing != null) {
+            collapsedCount.increment();
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+
+        executedCount.increment();
+        try {
+            T result = call.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            IN_FLIGHT.remove(key, future);
+        }
+    }
+
+    private static boolean isIdempotent(HttpRequestBase request) {
+        String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+
+    private static String defaultKey(HttpRequestBase request) {
+        StringBuilder key = new StringBuilder(request.getMethod()).append(' ').append(request.getURI());
+        for (Header header : request.getAllHeaders()) {
+            key.append('\n').append(header.getName().toLowerCase(Locale.ROOT)).append(':').append(header.getValue());
+        }
+        return key.toString();
+    }
+
+    private static String headerKey(HttpRequestBase request, String[] keyHeaders) {
+        for (String credential : CREDENTIAL_HEADERS) {
+            if (request.containsHeader(credential) && !contains(keyHeaders, credential)) {
+                return null;
+            }
+        }
+        StringBuilder key = new StringBuilder(request.getMethod()).append(' ').append(request.getURI());
+        for (String name : keyHeaders) {
+            Header header = request.getFirstHeader(name);
+            key.append('\n').append(name).append(':').append(header == null ? "" : header.getValue());
+        }
+        return key.toString();
+    }
+
+    private static boolean contains(String[] names, String name) {
+        for (String n : names) {
+            if (name.equalsIgnoreCase(n)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
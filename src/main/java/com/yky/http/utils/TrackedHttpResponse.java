@@ -0,0 +1,143 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 跟踪响应何时真正结束的响应：响应体读到末尾、内容流关闭或响应关闭时依次执行回调，只执行一次，
+ * 没有响应体时收到响应头即结束。用于把截止时间定时器等资源保持到响应体读完
+ * @author wuhualu
+ */
+class TrackedHttpResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+    private final CloseableHttpResponse response;
+
+    private final List<Runnable> callbacks = new ArrayList<>();
+
+    private boolean completed;
+
+    private TrackedHttpResponse(CloseableHttpResponse response) {
+        super(response.getStatusLine());
+        this.response = response;
+        setHeaders(response.getAllHeaders());
+        if (response.getLocale() != null) {
+            setLocale(response.getLocale());
+        }
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            completed = true;
+        } else {
+            setEntity(new TrackedHttpEntity(entity));
+        }
+    }
+
+    /**
+     * @return 已经是TrackedHttpResponse时直接返回，否则包装一层
+     */
+    static TrackedHttpResponse wrap(CloseableHttpResponse response) {
+        return response instanceof TrackedHttpResponse ? (TrackedHttpResponse) response : new TrackedHttpResponse(response);
+    }
+
+    /**
+     * 添加响应结束时执行的回调，已经结束时立即执行
+     */
+    void onComplete(Runnable callback) {
+        synchronized (callbacks) {
+            if (!completed) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    private void complete() {
+        List<Runnable> pending;
+        synchronized (callbacks) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            pending = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        for (Runnable callback : pending) {
+            callback.run();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            response.close();
+        } finally {
+            complete();
+        }
+    }
+
+    private class TrackedHttpEntity extends HttpEntityWrapper {
+
+        private TrackedHttpEntity(HttpEntity wrappedEntity) {
+            super(wrappedEntity);
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new TrackedInputStream(super.getContent());
+        }
+
+        @Override
+        public void writeTo(OutputStream outStream) throws IOException {
+            try (InputStream inputStream = getContent()) {
+                byte[] buffer = new byte[HttpClientUtils.BUFFER_SIZE];
+                int n;
+                while ((n = inputStream.read(buffer)) != -1) {
+                    outStream.write(buffer, 0, n);
+                }
+            }
+        }
+    }
+
+    private class TrackedInputStream extends FilterInputStream {
+
+        private TrackedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                complete();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                complete();
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.yky.http.utils;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按RFC 3986拼接URL和查询参数
+ * 参数名和参数值都会按UTF-8进行百分号编码(空格编码为%20而不是+)，值为Collection或数组时展开为同名的多个参数，值为null的参数会被忽略。
+ * 编码查表完成，拼接使用线程本地的StringBuilder，不会为每个参数分配中间字符串；
+ * 解析过的基础URL和URI模板会被缓存，重复请求同一个地址时不再重新解析。
+ * @author wuhualu
+ */
+public final class UrlBuilder {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * 查询参数中不需要编码的字符：unreserved
+     */
+    private static final boolean[] QUERY_SAFE = new boolean[128];
+
+    /**
+     * 路径段中不需要编码的字符：unreserved、sub-delims、':'和'@'
+     */
+    private static final boolean[] PATH_SEGMENT_SAFE = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            QUERY_SAFE[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            QUERY_SAFE[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            QUERY_SAFE[c] = true;
+        }
+        for (char c : "-._~".toCharArray()) {
+            QUERY_SAFE[c] = true;
+        }
+        System.arraycopy(QUERY_SAFE, 0, PATH_SEGMENT_SAFE, 0, QUERY_SAFE.length);
+        for (char c : "!$&'()*+,;=:@".toCharArray()) {
+            PATH_SEGMENT_SAFE[c] = true;
+        }
+    }
+
+    /**
+     * 缓存的URL和模板数量上限，超过后新的地址不再缓存，避免路径中带id的地址把缓存撑满
+     */
+    private static final int MAX_CACHED = 1024;
+
+    /**
+     * 线程本地缓冲区保留的最大容量，拼接过超长URL的缓冲区用完后丢弃
+     */
+    private static final int MAX_RETAINED_BUFFER = 8192;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private static final ConcurrentMap<String, BaseUrl> BASE_URLS = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<String, String[]> TEMPLATES = new ConcurrentHashMap<>();
+
+    private UrlBuilder() {
+    }
+
+    /**
+     * 拼接查询参数并解析为URI，url中已有查询参数时追加在后面
+     * @param url 基础地址
+     * @param params 查询参数，可以为null
+     * @return URI
+     * @throws IllegalArgumentException url格式不正确
+     */
+    public static URI toUri(String url, Map<String, ?> params) {
+        BaseUrl base = parse(url);
+        if (params == null || params.isEmpty()) {
+            return base.uri;
+        }
+
+        StringBuilder buffer = acquire();
+        try {
+            buffer.append(base.prefix).append(base.separator);
+            int start = buffer.length();
+            appendQuery(params, buffer);
+            if (buffer.length() == start) {
+                //参数全为null
+                return base.uri;
+            }
+            buffer.append(base.fragment);
+            return URI.create(buffer.toString());
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * 拼接查询参数
+     * @param url 基础地址
+     * @param params 查询参数，可以为null
+     * @return 拼接后的地址
+     */
+    public static String toUrl(String url, Map<String, ?> params) {
+        return toUri(url, params).toString();
+    }
+
+    /**
+     * 生成查询字符串，不包括开头的?
+     * @param params 查询参数，可以为null
+     * @return 如name=%E5%BC%A0%E4%B8%89&ids=1&ids=2，没有参数时返回空字符串
+     */
+    public static String toQueryString(Map<String, ?> params) {
+        if (params == null || params.isEmpty()) {
+            return "";
+        }
+        StringBuilder buffer = acquire();
+        try {
+            return appendQuery(params, buffer).toString();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * 展开URI模板，变量值按路径段编码(/也会被编码)
+     * @param template 如http://localhost/users/{id}/orders/{orderId}
+     * @param variables 变量值
+     * @return 展开后的地址
+     * @throws IllegalArgumentException 模板中的变量没有对应的值
+     */
+    public static String expand(String template, Map<String, ?> variables) {
+        String[] parts = TEMPLATES.get(template);
+        if (parts == null) {
+            parts = parseTemplate(template);
+            if (TEMPLATES.size() < MAX_CACHED) {
+                TEMPLATES.putIfAbsent(template, parts);
+            }
+        }
+        if (parts.length == 1) {
+            return parts[0];
+        }
+
+        StringBuilder buffer = acquire();
+        try {
+            //偶数下标是字面量，奇数下标是变量名
+            for (int i = 0; i < parts.length; i++) {
+                if (i % 2 == 0) {
+                    buffer.append(parts[i]);
+                    continue;
+                }
+                Object value = variables == null ? null : variables.get(parts[i]);
+                if (value == null) {
+                    throw new IllegalArgumentException("URI模板变量没有值: " + parts[i]);
+                }
+                encode(String.valueOf(value), buffer, PATH_SEGMENT_SAFE);
+            }
+            return buffer.toString();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * 按查询参数的规则编码，只保留unreserved字符
+     */
+    public static String encodeQueryParam(String value) {
+        return encode(value, QUERY_SAFE);
+    }
+
+    /**
+     * 按路径段的规则编码，/会被编码
+     */
+    public static String encodePathSegment(String value) {
+        return encode(value, PATH_SEGMENT_SAFE);
+    }
+
+    private static String encode(String value, boolean[] safe) {
+        StringBuilder buffer = acquire();
+        try {
+            return encode(value, buffer, safe).toString();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * 将查询参数追加到buffer，参数之间用&连接
+     */
+    static StringBuilder appendQuery(Map<String, ?> params, StringBuilder buffer) {
+        boolean first = true;
+        for (Map.Entry<String, ?> entry : params.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (key == null || key.isEmpty() || value == null) {
+                continue;
+            }
+
+            if (value instanceof Collection) {
+                for (Object element : (Collection<?>) value) {
+                    first = appendParam(key, element, buffer, first);
+                }
+            } else if (value instanceof Object[]) {
+                for (Object element : (Object[]) value) {
+                    first = appendParam(key, element, buffer, first);
+                }
+            } else {
+                first = appendParam(key, value, buffer, first);
+            }
+        }
+        return buffer;
+    }
+
+    private static boolean appendParam(String key, Object value, StringBuilder buffer, boolean first) {
+        if (value == null) {
+            return first;
+        }
+        if (!first) {
+            buffer.append('&');
+        }
+        encode(key, buffer, QUERY_SAFE).append('=');
+
+        //整数只包含数字和负号，不需要编码，直接追加避免生成字符串
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            buffer.append(((Number) value).longValue());
+        } else {
+            encode(value.toString(), buffer, QUERY_SAFE);
+        }
+        return false;
+    }
+
+    /**
+     * 按UTF-8进行百分号编码，追加到buffer
+     */
+    static StringBuilder encode(CharSequence value, StringBuilder buffer, boolean[] safe) {
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (safe[c]) {
+                    buffer.append(c);
+                } else {
+                    escape(buffer, c);
+                }
+            } else if (c < 0x800) {
+                escape(buffer, 0xC0 | (c >> 6));
+                escape(buffer, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                escape(buffer, 0xF0 | (codePoint >> 18));
+                escape(buffer, 0x80 | ((codePoint >> 12) & 0x3F));
+                escape(buffer, 0x80 | ((codePoint >> 6) & 0x3F));
+                escape(buffer, 0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                //不成对的代理字符，与String.getBytes一样替换为?
+                escape(buffer, '?');
+            } else {
+                escape(buffer, 0xE0 | (c >> 12));
+                escape(buffer, 0x80 | ((c >> 6) & 0x3F));
+                escape(buffer, 0x80 | (c & 0x3F));
+            }
+        }
+        return buffer;
+    }
+
+    private static void escape(StringBuilder buffer, int b) {
+        buffer.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+
+    private static StringBuilder acquire() {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        return buffer;
+    }
+
+    private static void release(StringBuilder buffer) {
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            BUFFER.set(new StringBuilder(256));
+        }
+    }
+
+    private static BaseUrl parse(String url) {
+        BaseUrl base = BASE_URLS.get(url);
+        if (base == null) {
+            base = new BaseUrl(url);
+            if (BASE_URLS.size() < MAX_CACHED) {
+                BASE_URLS.putIfAbsent(url, base);
+            }
+        }
+        return base;
+    }
+
+    /**
+     * 将模板拆成字面量和变量名交替的数组
+     */
+    private static String[] parseTemplate(String template) {
+        List<String> parts = new ArrayList<>();
+        int from = 0;
+        while (true) {
+            int open = template.indexOf('{', from);
+            int close = open < 0 ? -1 : template.indexOf('}', open);
+            if (close < 0) {
+                parts.add(template.substring(from));
+                break;
+            }
+            parts.add(template.substring(from, open));
+            parts.add(template.substring(open + 1, close).trim());
+            from = close + 1;
+        }
+        return parts.toArray(new String[0]);
+    }
+
+    /**
+     * 解析过的基础地址
+     */
+    private static class BaseUrl {
+
+        private final URI uri;
+
+        /**
+         * #之前的部分
+         */
+        private final String prefix;
+
+        /**
+         * 连接查询参数的字符，已有查询参数时为&，url以?或&结尾时为空字符串
+         */
+        private final String separator;
+
+        /**
+         * #及之后的部分，没有时为空字符串
+         */
+        private final String fragment;
+
+        private BaseUrl(String url) {
+            this.uri = URI.create(url);
+            int hash = url.indexOf('#');
+            this.prefix = hash < 0 ? url : url.substring(0, hash);
+            this.fragment = hash < 0 ? "" : url.substring(hash);
+            if (prefix.indexOf('?') < 0) {
+                this.separator = "?";
+            } else {
+                this.separator = prefix.endsWith("?") || prefix.endsWith("&") ? "" : "&";
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.yky.http.utils;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @AfterEach
+    void reset() {
+        HttpClientUtils.setConcurrencyLimitPolicy(null);
+        HttpClientUtils.setTransport(null);
+    }
+
+    @Test
+    void increase() {
+        AdaptiveConcurrencyLimiter limiter = ConcurrencyLimitPolicy.custom().setLimit(2, 1, 4).build()
+                .getLimiter("http://order-service");
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+
+        //耗时不超过基准耗时的请求使上限每轮加1，不超过maxLimit
+        limiter.release(true, FAST);
+        limiter.release(true, FAST);
+        assertTrue(limiter.tryAcquire());
+        limiter.release(true, FAST);
+        assertEquals(3, limiter.getLimit());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(true, FAST);
+        }
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void decrease() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = ConcurrencyLimitPolicy.custom().setLimit(10, 2, 20).setBackoffRatio(0.5).build()
+                .getLimiter("http://order-service");
+        limiter.tryAcquire();
+        limiter.release(true, FAST);
+
+        //失败时乘以backoffRatio
+        limiter.tryAcquire();
+        limiter.release(false, FAST);
+        assertEquals(5, limiter.getLimit());
+
+        //同一个基准耗时周期内只下调一次
+        limiter.tryAcquire();
+        limiter.release(false, FAST);
+        assertEquals(5, limiter.getLimit());
+
+        //耗时超过基准耗时的tolerance倍也下调，不低于minLimit
+        Thread.sleep(5);
+        limiter.tryAcquire();
+        limiter.release(true, FAST * 10);
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void releaseAfterBody() throws IOException {
+        ConcurrencyLimitPolicy policy = ConcurrencyLimitPolicy.custom().setLimit(1, 1, 1).build();
+        HttpClientUtils.setConcurrencyLimitPolicy(policy);
+        HttpClientUtils.setTransport((request, context) -> StubResponse.of(200, "ok"));
+        AdaptiveConcurrencyLimiter limiter = policy.getLimiter("http://order-service");
+
+        //响应体读完之前一直占用并发名额
+        CloseableHttpResponse response = RequestExecutor.execute(new HttpGet("http://order-service/x"));
+        assertEquals(1, limiter.getInFlight());
+        assertThrows(ConcurrencyLimitExceededException.class, () -> RequestExecutor.execute(new HttpGet("http://order-service/x")));
+        assertEquals("ok", EntityUtils.toString(response.getEntity()));
+        assertEquals(0, limiter.getInFlight());
+        response.close();
+        assertEquals(0, limiter.getInFlight());
+
+        //没读响应体直接关闭也会归还
+        response = RequestExecutor.execute(new HttpGet("http://order-service/x"));
+        assertEquals(1, limiter.getInFlight());
+        response.close();
+        assertEquals(0, limiter.getInFlight());
+    }
+}
@@ -0,0 +1,77 @@
+package com.yky.http.utils;
+
+import org.apache.http.Header;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.impl.client.cache.HeapResource;
+import org.apache.http.message.BasicStatusLine;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedHttpCacheStorageTest {
+
+    @Test
+    void evictByEntries() {
+        BoundedHttpCacheStorage storage = new BoundedHttpCacheStorage(2, Long.MAX_VALUE);
+        storage.putEntry("a", entry(10));
+        storage.putEntry("b", entry(10));
+        //访问a后b成为最久未访问的条目
+        assertNotNull(storage.getEntry("a"));
+        storage.putEntry("c", entry(10));
+
+        assertEquals(2, storage.getEntryCount());
+        assertNotNull(storage.getEntry("a"));
+        assertNull(storage.getEntry("b"));
+        assertNotNull(storage.getEntry("c"));
+        assertEquals(20, storage.getTotalBytes());
+    }
+
+    @Test
+    void evictByBytes() {
+        BoundedHttpCacheStorage storage = new BoundedHttpCacheStorage(100, 100);
+        storage.putEntry("a", entry(40));
+        storage.putEntry("b", entry(40));
+        assertEquals(80, storage.getTotalBytes());
+
+        //超过总字节数时从最久未访问的开始淘汰，直到不超过上限
+        storage.putEntry("c", entry(50));
+        assertNull(storage.getEntry("a"));
+        assertNotNull(storage.getEntry("b"));
+        assertEquals(90, storage.getTotalBytes());
+
+        //单个条目超过上限时不保留
+        storage.putEntry("d", entry(150));
+        assertEquals(0, storage.getEntryCount());
+        assertEquals(0, storage.getTotalBytes());
+    }
+
+    @Test
+    void replaceAndRemove() throws IOException {
+        BoundedHttpCacheStorage storage = new BoundedHttpCacheStorage(10, 1000);
+        storage.putEntry("a", entry(40));
+        storage.putEntry("a", entry(60));
+        assertEquals(1, storage.getEntryCount());
+        assertEquals(60, storage.getTotalBytes());
+
+        storage.updateEntry("a", existing -> entry(30));
+        assertEquals(30, storage.getTotalBytes());
+        storage.updateEntry("a", existing -> null);
+        assertEquals(0, storage.getEntryCount());
+        assertEquals(0, storage.getTotalBytes());
+
+        storage.putEntry("b", entry(20));
+        storage.removeEntry("b");
+        storage.removeEntry("missing");
+        assertEquals(0, storage.getTotalBytes());
+    }
+
+    private static HttpCacheEntry entry(int size) {
+        Date now = new Date();
+        return new HttpCacheEntry(now, now, new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"), new Header[0],
+                new HeapResource(new byte[size]));
+    }
+}
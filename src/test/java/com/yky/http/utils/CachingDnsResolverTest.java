@@ -0,0 +1,104 @@
+package com.yky.http.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingDnsResolverTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    /**
+     * 后台刷新任务，由测试手动执行
+     */
+    private final List<Runnable> refreshes = new ArrayList<>();
+
+    @Test
+    void resolve() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        CachingDnsResolver resolver = builder()
+                .setDelegate(host -> {
+                    lookups.incrementAndGet();
+                    return new InetAddress[]{InetAddress.getByAddress(host, new byte[]{10, 0, 0, (byte) lookups.get()})};
+                })
+                .setTtl(100)
+                .setMaxStale(100000)
+                .build();
+
+        assertEquals(1, resolver.prefetch(Collections.singletonList("order-service")));
+        advance(99);
+        assertEquals("10.0.0.1", resolver.resolve("order-service")[0].getHostAddress());
+        assertEquals(1, lookups.get());
+
+        //过期后先返回旧的结果，同时只提交一个后台刷新任务
+        advance(1);
+        assertEquals("10.0.0.1", resolver.resolve("order-service")[0].getHostAddress());
+        assertEquals("10.0.0.1", resolver.resolve("order-service")[0].getHostAddress());
+        assertEquals(1, refreshes.size());
+        assertEquals(1, lookups.get());
+
+        //后台刷新完成后返回新的结果
+        refreshes.remove(0).run();
+        assertEquals(2, lookups.get());
+        assertEquals("10.0.0.2", resolver.resolve("order-service")[0].getHostAddress());
+        assertTrue(refreshes.isEmpty());
+    }
+
+    @Test
+    void serveStale() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        CachingDnsResolver resolver = builder()
+                .setDelegate(host -> {
+                    if (lookups.incrementAndGet() > 1) {
+                        throw new UnknownHostException(host);
+                    }
+                    return new InetAddress[]{InetAddress.getByAddress(host, new byte[]{10, 0, 0, 1})};
+                })
+                .setTtl(50)
+                .setMaxStale(200)
+                .build();
+
+        resolver.resolve("order-service");
+        advance(80);
+        //后台刷新失败时继续使用旧的结果，下次请求时再刷新
+        assertEquals("10.0.0.1", resolver.resolve("order-service")[0].getHostAddress());
+        refreshes.remove(0).run();
+        assertEquals(2, lookups.get());
+        advance(50);
+        assertEquals("10.0.0.1", resolver.resolve("order-service")[0].getHostAddress());
+        assertEquals(1, refreshes.size());
+
+        //超过maxStale后在请求线程中解析
+        advance(120);
+        assertThrows(UnknownHostException.class, () -> resolver.resolve("order-service"));
+    }
+
+    @Test
+    void maxEntries() throws Exception {
+        CachingDnsResolver resolver = builder()
+                .setDelegate(host -> new InetAddress[]{InetAddress.getByAddress(host, new byte[]{10, 0, 0, 1})})
+                .setMaxEntries(2)
+                .build();
+        assertEquals(3, resolver.prefetch(java.util.Arrays.asList("a", "b", "c")));
+        assertEquals(2, resolver.size());
+        resolver.clear();
+        assertEquals(0, resolver.size());
+    }
+
+    private CachingDnsResolver.Builder builder() {
+        return CachingDnsResolver.custom().setTicker(now::get).setRefresher(refreshes::add);
+    }
+
+    private void advance(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
@@ -0,0 +1,75 @@
+package com.yky.http.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final CircuitBreakerPolicy policy = CircuitBreakerPolicy.custom()
+            .setFailureRateThreshold(0.5)
+            .setMinimumCalls(4)
+            .setOpenDuration(100)
+            .setHalfOpenCalls(2)
+            .build();
+
+    @Test
+    void closedToOpen() {
+        CircuitBreaker breaker = policy.getCircuitBreaker("http://order-service");
+        breaker.onResult(true, FAST);
+        breaker.onResult(false, FAST);
+        breaker.onResult(true, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        //4次中2次失败，达到50%
+        breaker.onResult(false, FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void halfOpenToClosed() throws InterruptedException {
+        CircuitBreaker breaker = open();
+        Thread.sleep(150);
+
+        //半开状态只放行halfOpenCalls个探测请求
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        //没有发送的请求归还名额
+        breaker.release();
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onResult(true, FAST);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onResult(true, FAST);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void halfOpenToOpen() throws InterruptedException {
+        CircuitBreaker breaker = open();
+        Thread.sleep(150);
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onResult(false, FAST);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    private CircuitBreaker open() {
+        CircuitBreaker breaker = policy.getCircuitBreaker("http://order-service");
+        for (int i = 0; i < 4; i++) {
+            breaker.onResult(false, FAST);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+}
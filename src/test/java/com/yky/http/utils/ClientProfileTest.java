@@ -0,0 +1,111 @@
+package com.yky.http.utils;
+
+import com.yky.http.autoconfigure.HttpClientAutoConfiguration;
+import org.apache.http.HttpHost;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientProfileTest {
+
+    @AfterEach
+    void reset() {
+        HttpClientUtils.removeProfile("order");
+        HttpClientUtils.setDefaultProfile(null);
+    }
+
+    @Test
+    void apply() {
+        ClientProfile profile = ClientProfile.custom("order")
+                .addHosts("http://order-service:8080/api")
+                .setConnectTimeout(1000)
+                .setSocketTimeout(3000)
+                .setRedirectsEnabled(false)
+                .addHeader("X-Caller", "shop")
+                .build();
+        HttpClientUtils.addProfile(profile);
+
+        assertSame(profile, HttpClientUtils.getProfile("http://order-service:8080/orders?id=1"));
+        assertEquals("default", HttpClientUtils.getProfile("http://localhost/test/me").getName());
+
+        HttpGet httpGet = new HttpGet("http://order-service:8080/orders");
+        httpGet.setHeader("X-Caller", "admin");
+        HttpClientUtils.setConfig(null, httpGet);
+        assertEquals(3000, httpGet.getConfig().getSocketTimeout());
+        assertEquals(1000, httpGet.getConfig().getConnectTimeout());
+        assertFalse(httpGet.getConfig().isRedirectsEnabled());
+        assertEquals("admin", httpGet.getFirstHeader("X-Caller").getValue());
+
+        HttpGet other = new HttpGet("http://order-service:8080/orders");
+        HttpClientUtils.setConfig(500, other);
+        assertEquals(500, other.getConfig().getSocketTimeout());
+        assertEquals("shop", other.getFirstHeader("X-Caller").getValue());
+        assertSame(profile.getRequestConfig(500), other.getConfig());
+    }
+
+    @Test
+    void defaultPort() {
+        ClientProfile profile = ClientProfile.custom("order")
+                .addHosts("http://order-service:80", "https://pay-service")
+                .build();
+        HttpClientUtils.addProfile(profile);
+
+        //和连接池的路由一致，没有端口时按默认端口匹配
+        assertSame(profile, HttpClientUtils.getProfile("http://order-service/orders"));
+        assertSame(profile, HttpClientUtils.getProfile("http://order-service:80/orders"));
+        assertSame(profile, HttpClientUtils.getProfile("https://pay-service:443/pay"));
+        assertSame(profile, HttpClientUtils.getProfile("https://pay-service/pay"));
+        assertEquals("default", HttpClientUtils.getProfile("http://order-service:8080/orders").getName());
+        assertEquals("default", HttpClientUtils.getProfile("https://order-service/orders").getName());
+    }
+
+    @Test
+    void requestCompression() {
+        HttpClientUtils.addProfile(ClientProfile.custom("order")
+                .addHosts("http://order-service:8080")
+                .setRequestCompressionThreshold(1024)
+                .build());
+
+        char[] chars = new char[2048];
+        Arrays.fill(chars, 'a');
+        HttpPost large = HttpClientUtils.createJsonPost("http://order-service:8080/orders", 5000, null,
+                Collections.singletonMap("data", new String(chars)));
+        assertEquals("gzip", large.getEntity().getContentEncoding().getValue());
+        assertTrue(large.getEntity().isChunked());
+
+        HttpPost small = HttpClientUtils.createJsonPost("http://order-service:8080/orders", 5000, null,
+                Collections.singletonMap("data", "a"));
+        assertNull(small.getEntity().getContentEncoding());
+
+        HttpPost other = HttpClientUtils.createJsonPost("http://localhost/test/me", 5000, null,
+                Collections.singletonMap("data", new String(chars)));
+        assertNull(other.getEntity().getContentEncoding());
+    }
+
+    @Test
+    void autoConfiguration() {
+        new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(HttpClientAutoConfiguration.class))
+                .withPropertyValues("http-client.profiles.order.hosts=http://order-service:8080",
+                        "http-client.profiles.order.socket-timeout=2000",
+                        "http-client.profiles.order.max-per-route=100",
+                        "http-client.profiles.order.headers.X-Caller=shop")
+                .run(context -> {
+                    ClientProfile profile = HttpClientUtils.getProfile("http://order-service:8080");
+                    assertEquals("order", profile.getName());
+                    assertEquals(2000, profile.getSocketTimeout());
+                    assertEquals("shop", profile.getHeaders().get("X-Caller"));
+                    assertEquals(100, HttpClientManager.getConnectionManager()
+                            .getMaxPerRoute(new HttpRoute(new HttpHost("order-service", 8080))));
+                });
+    }
+}
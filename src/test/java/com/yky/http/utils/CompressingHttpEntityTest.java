@@ -0,0 +1,111 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.protocol.BasicHttpContext;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressingHttpEntityTest {
+
+    private static String json() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"用户").append(i).append("\"}");
+        }
+        return json.append(']').toString();
+    }
+
+    @Test
+    void writeTo() throws IOException {
+        String json = json();
+        byte[] original = json.getBytes(StandardCharsets.UTF_8);
+        CompressingHttpEntity entity = new CompressingHttpEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+
+        RequestMetrics metrics = new RequestMetrics("http://order-service", "POST");
+        metrics.attach(new BasicHttpContext());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            entity.writeTo(out);
+        } finally {
+            metrics.detach();
+        }
+
+        byte[] compressed = out.toByteArray();
+        assertArrayEquals(original, gunzip(compressed));
+        assertTrue(compressed.length < original.length);
+        //压缩节省的字节数计入压缩前的发送字节数
+        assertEquals(original.length - compressed.length, metrics.getUncompressedBytesSent() - metrics.getBytesSent());
+    }
+
+    @Test
+    void getContent() throws IOException {
+        String json = json();
+        CompressingHttpEntity entity = new CompressingHttpEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+        assertTrue(entity.isRepeatable());
+
+        //可以重复读取，每次的内容相同
+        for (int i = 0; i < 2; i++) {
+            try (InputStream in = entity.getContent()) {
+                assertEquals(json, new String(gunzip(readAll(in)), StandardCharsets.UTF_8));
+            }
+        }
+
+        //逐字节读取和空请求体
+        try (InputStream in = new CompressingHttpEntity(new StringEntity("", ContentType.APPLICATION_JSON)).getContent()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                out.write(b);
+            }
+            assertEquals(0, gunzip(out.toByteArray()).length);
+        }
+    }
+
+    @Test
+    void captureRequestBody() {
+        CapturePolicy policy = CapturePolicy.custom().setSampleRate(1).build();
+        HttpCapture.enable(policy);
+        HttpClientUtils.setTransport((request, context) -> {
+            assertTrue(((HttpEntityEnclosingRequest) request).getEntity() instanceof CompressingHttpEntity);
+            return StubResponse.of(200, "ok");
+        });
+        try {
+            HttpClientUtils.addProfile(ClientProfile.custom("compress").addHosts("http://order-service")
+                    .setRequestCompressionThreshold(0).build());
+            HttpClientUtils.requestJsonPost("http://order-service/x", 1000, null, "{\"id\":1}");
+            //记录压缩前的请求体
+            assertEquals("{\"id\":1}", HttpCapture.dump().get(0).getRequestBody());
+        } finally {
+            HttpClientUtils.removeProfile("compress");
+            HttpClientUtils.setTransport(null);
+            HttpCapture.disable();
+            HttpCapture.clear();
+        }
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return readAll(in);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
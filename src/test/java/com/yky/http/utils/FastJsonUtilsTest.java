@@ -0,0 +1,77 @@
+package com.yky.http.utils;
+
+import com.alibaba.fastjson.TypeReference;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FastJsonUtilsTest {
+
+    @Test
+    void jsonStreamToEntity() throws IOException {
+        TrackingInputStream inputStream = new TrackingInputStream("[{\"name\":\"张三\"},{\"name\":\"李四\"}]", StandardCharsets.UTF_8);
+        List<Map<String, Object>> list = FastJsonUtils.jsonStreamToEntity(inputStream, StandardCharsets.UTF_8,
+                new TypeReference<List<Map<String, Object>>>(){});
+
+        assertEquals(2, list.size());
+        assertEquals("张三", list.get(0).get("name"));
+        assertEquals("李四", list.get(1).get("name"));
+        //流由调用方关闭
+        assertFalse(inputStream.closed);
+    }
+
+    @Test
+    void jsonStreamToEntityCharset() throws IOException {
+        Charset gbk = Charset.forName("GBK");
+        Map<?, ?> map = FastJsonUtils.jsonStreamToEntity(new TrackingInputStream("{\"city\":\"深圳市\"}", gbk), gbk, Map.class);
+
+        assertEquals("深圳市", map.get("city"));
+    }
+
+    @Test
+    void jsonStreamToEntityEmpty() throws IOException {
+        assertNull(FastJsonUtils.jsonStreamToEntity(new TrackingInputStream("", StandardCharsets.UTF_8), StandardCharsets.UTF_8, Map.class));
+        assertNull(FastJsonUtils.jsonStreamToEntity(new TrackingInputStream("null", StandardCharsets.UTF_8), StandardCharsets.UTF_8, Map.class));
+    }
+
+    @Test
+    void jsonArrayStreamToEntities() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append('}');
+        }
+        json.append(']');
+        TrackingInputStream inputStream = new TrackingInputStream(json.toString(), StandardCharsets.UTF_8);
+        List<Map<?, ?>> elements = new ArrayList<>();
+
+        long count = FastJsonUtils.<Map<?, ?>>jsonArrayStreamToEntities(inputStream, StandardCharsets.UTF_8, Map.class, elements::add);
+
+        assertEquals(1000, count);
+        assertEquals(1000, elements.size());
+        assertEquals(999, elements.get(999).get("id"));
+        assertFalse(inputStream.closed);
+    }
+
+    private static class TrackingInputStream extends ByteArrayInputStream {
+
+        private boolean closed;
+
+        private TrackingInputStream(String json, Charset charset) {
+            super(json.getBytes(charset));
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
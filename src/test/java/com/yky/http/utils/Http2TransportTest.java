@@ -0,0 +1,217 @@
+package com.yky.http.utils;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.URIScheme;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityProducer;
+import org.apache.hc.core5.http.nio.entity.StringAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.support.AsyncResponseBuilder;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http.protocol.HttpCoreContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Http2TransportTest {
+
+    /**
+     * 超过流控窗口和响应缓冲区，小于Http2ResponseConsumer.DISCARD_LIMIT
+     */
+    private static final byte[] LARGE = new byte[512 * 1024];
+
+    private HttpAsyncServer server;
+
+    private String baseUrl;
+
+    /**
+     * 服务端收到请求的连接，按客户端地址区分
+     */
+    private final Set<String> connections = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private final CountDownLatch largeReleased = new CountDownLatch(1);
+
+    private final CountDownLatch received = new CountDownLatch(1);
+
+    @BeforeEach
+    void start() throws Exception {
+        server = H2ServerBootstrap.bootstrap()
+                .setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_2)
+                .register("/slow", handler(() -> AsyncEntityProducers.create("ok", ContentType.TEXT_PLAIN), 300))
+                .register("/large", handler(() -> new BasicAsyncEntityProducer(LARGE, ContentType.APPLICATION_OCTET_STREAM) {
+                    @Override
+                    public void releaseResources() {
+                        largeReleased.countDown();
+                        super.releaseResources();
+                    }
+                }, 0))
+                .create();
+        server.start();
+        ListenerEndpoint endpoint = server.listen(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), URIScheme.HTTP).get();
+        baseUrl = "http://127.0.0.1:" + ((InetSocketAddress) endpoint.getAddress()).getPort();
+    }
+
+    @AfterEach
+    void stop() {
+        HttpClientUtils.setTransport(null);
+        server.close(CloseMode.IMMEDIATE);
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void isHttp2() {
+        try (Http2Transport transport = Http2Transport.custom().addH2cHosts("http://order-service:8080/api").build()) {
+            assertTrue(transport.isHttp2("http://order-service:8080"));
+            assertFalse(transport.isHttp2("http://localhost"));
+            assertTrue(transport.isHttp2("https://localhost"));
+        }
+    }
+
+    @Test
+    void multiplexing() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try (Http2Transport transport = Http2Transport.custom().addH2cHosts(baseUrl).build()) {
+            HttpClientUtils.setTransport(transport);
+            //先建立连接，避免并发建立多个连接
+            assertEquals("ok", HttpClientUtils.requestGet(baseUrl + "/slow", 5000));
+
+            long start = System.nanoTime();
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                futures.add(CompletableFuture.supplyAsync(() -> HttpClientUtils.requestGet(baseUrl + "/slow", 5000), executor));
+            }
+            for (CompletableFuture<String> future : futures) {
+                assertEquals("ok", future.get(5, TimeUnit.SECONDS));
+            }
+
+            //5个请求并发完成，共用一个连接
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+            assertEquals(1, connections.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void discardOnEarlyClose() throws Exception {
+        try (Http2Transport transport = Http2Transport.custom().addH2cHosts(baseUrl).build()) {
+            HttpClientUtils.setTransport(transport);
+            CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> HttpClientUtils.requestGet(baseUrl + "/slow", 5000));
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+
+            try (InputStream inputStream = HttpClientUtils.requestGetForStream(baseUrl + "/large", 5000, null, null)) {
+                assertNotNull(inputStream);
+                assertTrue(inputStream.read(new byte[1024]) > 0);
+            }
+
+            //没读完就关闭时丢弃剩余的响应体，服务端的流正常结束，不会因为流控窗口卡住
+            assertTrue(largeReleased.await(5, TimeUnit.SECONDS));
+            //同一连接上进行中的其他请求不受影响，之后的请求继续复用这个连接
+            assertEquals("ok", slow.get(5, TimeUnit.SECONDS));
+            assertEquals("ok", HttpClientUtils.requestGet(baseUrl + "/slow", 5000));
+            assertEquals(1, connections.size());
+        }
+    }
+
+    @Test
+    void fallback() throws Exception {
+        //只支持HTTP/1.1的服务端，收到HTTP/2的连接前言后直接断开
+        AtomicInteger accepted = new AtomicInteger();
+        try (ServerSocket http1 = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            Thread acceptor = new Thread(() -> {
+                while (!http1.isClosed()) {
+                    try (Socket socket = http1.accept()) {
+                        accepted.incrementAndGet();
+                        socket.getInputStream().read(new byte[24]);
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            String route = "http://127.0.0.1:" + http1.getLocalPort();
+            AtomicInteger fallbackCalls = new AtomicInteger();
+            try (Http2Transport transport = Http2Transport.custom()
+                    .addH2cHosts(route)
+                    .setFallback((request, context) -> {
+                        fallbackCalls.incrementAndGet();
+                        return StubResponse.of(200, "http1");
+                    })
+                    .build()) {
+                HttpClientUtils.setTransport(transport);
+
+                //第一次HTTP/2请求失败，用HTTP/1.1重发
+                assertEquals("http1", HttpClientUtils.requestGet(route + "/x", 5000));
+                assertEquals(1, fallbackCalls.get());
+                assertFalse(transport.isHttp2(route));
+
+                //之后直接使用HTTP/1.1
+                assertEquals("http1", HttpClientUtils.requestGet(route + "/x", 5000));
+                assertEquals(2, fallbackCalls.get());
+                assertEquals(1, accepted.get());
+            }
+        }
+    }
+
+    private AsyncServerRequestHandler<Message<HttpRequest, String>> handler(Supplier<AsyncEntityProducer> body, long delayMillis) {
+        return new AsyncServerRequestHandler<Message<HttpRequest, String>>() {
+            @Override
+            public AsyncRequestConsumer<Message<HttpRequest, String>> prepare(HttpRequest request, EntityDetails entityDetails,
+                                                                            HttpContext context) {
+                return new BasicRequestConsumer<>(new StringAsyncEntityConsumer());
+            }
+
+            @Override
+            public void handle(Message<HttpRequest, String> message, ResponseTrigger responseTrigger, HttpContext context) {
+                connections.add(HttpCoreContext.adapt(context).getEndpointDetails().getRemoteAddress().toString());
+                received.countDown();
+                scheduler.schedule(() -> {
+                    try {
+                        responseTrigger.submitResponse(AsyncResponseBuilder.create(200)
+                                .setEntity(body.get())
+                                .build(), context);
+                    } catch (HttpException | IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, delayMillis, TimeUnit.MILLISECONDS);
+            }
+        };
+    }
+}
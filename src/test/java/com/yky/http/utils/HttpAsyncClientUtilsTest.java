@@ -0,0 +1,144 @@
+package com.yky.http.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpAsyncClientUtilsTest {
+
+    private static final int MAX_IN_FLIGHT = 2;
+
+    private HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final CountDownLatch received = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final CountDownLatch responded = new CountDownLatch(1);
+
+    private String baseUrl;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/test/me", exchange -> send(exchange, exchange.getRequestURI().getQuery()));
+        server.createContext("/empty", exchange -> {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.createContext("/gbk", exchange -> {
+            byte[] bytes = "深圳市".getBytes("GBK");
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=GBK");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(bytes);
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            received.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+                send(exchange, "slow");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                //客户端已经断开
+            } finally {
+                responded.countDown();
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        HttpAsyncClientUtils.setMaxInFlight(MAX_IN_FLIGHT);
+    }
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        server.stop(0);
+        executor.shutdownNow();
+        HttpAsyncClientUtils.setMaxInFlight(HttpAsyncClientUtils.DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    @Test
+    void requestGetAsync() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("name", "张三");
+        map.put("age", 22);
+        CompletableFuture<String> future = HttpAsyncClientUtils.requestGetAsync(baseUrl + "/test/me", 5000, null, map);
+
+        assertEquals("name=张三&age=22", future.join());
+        assertEquals(MAX_IN_FLIGHT, HttpAsyncClientUtils.availablePermits());
+    }
+
+    @Test
+    void noContent() {
+        //没有响应体时返回null
+        assertNull(HttpAsyncClientUtils.requestGetAsync(baseUrl + "/empty", 5000, null, null).join());
+        assertEquals(MAX_IN_FLIGHT, HttpAsyncClientUtils.availablePermits());
+    }
+
+    @Test
+    void charset() {
+        //按响应头中的编码解码
+        assertEquals("深圳市", HttpAsyncClientUtils.requestGetAsync(baseUrl + "/gbk", 5000, null, null).join());
+    }
+
+    @Test
+    void cancel() throws Exception {
+        AtomicInteger converted = new AtomicInteger();
+        CompletableFuture<String> future = HttpAsyncClientUtils.execute(HttpClientUtils.createGet(baseUrl + "/slow", 5000, null, null), s -> {
+            converted.incrementAndGet();
+            return s;
+        });
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        assertEquals(MAX_IN_FLIGHT - 1, HttpAsyncClientUtils.availablePermits());
+
+        assertTrue(future.cancel(true));
+        assertThrows(CancellationException.class, future::join);
+
+        //底层请求被中止后，回调在IO线程上归还许可
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (HttpAsyncClientUtils.availablePermits() != MAX_IN_FLIGHT && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(MAX_IN_FLIGHT, HttpAsyncClientUtils.availablePermits());
+
+        //服务端之后才返回响应，转换函数也不会执行
+        release.countDown();
+        assertTrue(responded.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(0, converted.get());
+    }
+
+    private static void send(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.yky.http.utils;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpBatchTest {
+
+    private final Map<String, AtomicInteger> active = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicInteger> maxActive = new ConcurrentHashMap<>();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @AfterEach
+    void reset() {
+        HttpClientUtils.setTransport(null);
+        HttpClientUtils.removeProfile("batch");
+    }
+
+    /**
+     * 按主机统计同时进行的请求数，响应内容为请求的查询参数
+     */
+    private void countingTransport(long delayMillis) {
+        HttpClientUtils.setTransport((request, context) -> {
+            calls.incrementAndGet();
+            String host = request.getURI().getHost();
+            int current = active.computeIfAbsent(host, key -> new AtomicInteger()).incrementAndGet();
+            maxActive.computeIfAbsent(host, key -> new AtomicInteger()).accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.get(host).decrementAndGet();
+            }
+            return StubResponse.of(200, request.getURI().getQuery());
+        });
+    }
+
+    private static List<BatchRequest<String>> requests(int count) {
+        List<BatchRequest<String>> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String host = i % 2 == 0 ? "order-service" : "user-service";
+            requests.add(BatchRequest.get("http://" + host + "/items", 5000, null, Collections.singletonMap("id", i)));
+        }
+        return requests;
+    }
+
+    @Test
+    void execute() {
+        countingTransport(20);
+
+        BatchResponse<String> response = HttpBatch.execute(requests(20), 3, 5000);
+
+        assertTrue(response.isAllSuccess());
+        List<BatchResult<String>> results = response.getResults();
+        assertEquals(20, results.size());
+        //结果顺序与请求相同
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).getIndex());
+            assertEquals(200, results.get(i).getStatusCode());
+            assertEquals("id=" + i, results.get(i).getValue());
+        }
+        //每个主机同时进行的请求数不超过maxPerHost
+        assertEquals(3, maxActive.get("order-service").get());
+        assertEquals(3, maxActive.get("user-service").get());
+    }
+
+    @Test
+    void stream() {
+        countingTransport(20);
+
+        List<BatchResult<String>> results = HttpBatch.stream(requests(10), 2, 5000).collect(Collectors.toList());
+
+        assertEquals(10, results.size());
+        assertEquals(10, results.stream().map(BatchResult::getIndex).distinct().count());
+        assertTrue(results.stream().allMatch(BatchResult::isSuccess));
+        assertTrue(maxActive.get("order-service").get() <= 2);
+        assertTrue(maxActive.get("user-service").get() <= 2);
+    }
+
+    @Test
+    void deadline() {
+        //请求一直等到被中止
+        HttpClientUtils.setTransport((request, context) -> {
+            calls.incrementAndGet();
+            CountDownLatch aborted = new CountDownLatch(1);
+            request.setCancellable(() -> {
+                aborted.countDown();
+                return true;
+            });
+            try {
+                aborted.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("aborted");
+        });
+
+        long start = System.currentTimeMillis();
+        BatchResponse<String> response = HttpBatch.execute(requests(10), 2, 200);
+
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertEquals(10, response.getFailures().size());
+        for (BatchResult<String> result : response.getResults()) {
+            assertTrue(result.getException() instanceof TimeoutException, String.valueOf(result.getException()));
+        }
+        //排队的请求不再发送
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void charsetAndMaxBodySize() {
+        HttpClientUtils.addProfile(ClientProfile.custom("batch").addHosts("http://user-service").setMaxBodySize(16).build());
+        HttpClientUtils.setTransport((request, context) -> new StubResponse(200,
+                new StringEntity("order-service".equals(request.getURI().getHost()) ? "深圳市" : "01234567890123456789",
+                        ContentType.create("text/plain", "GBK"))));
+
+        BatchResponse<String> response = HttpBatch.execute(requests(2), 2, 5000);
+
+        //按响应头中的编码解码
+        assertEquals("深圳市", response.getResults().get(0).getValue());
+        //超过ClientProfile的maxBodySize
+        assertTrue(response.getResults().get(1).getException() instanceof ResponseTooLargeException);
+    }
+}
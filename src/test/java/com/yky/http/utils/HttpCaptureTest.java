@@ -0,0 +1,73 @@
+package com.yky.http.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpCaptureTest {
+
+    @AfterEach
+    void reset() {
+        HttpClientUtils.setTransport(null);
+        HttpCapture.disable();
+        HttpCapture.clear();
+    }
+
+    @Test
+    void capture() {
+        HttpClientUtils.setTransport((request, context) -> {
+            if (request.getURI().getPath().equals("/down")) {
+                throw new ConnectException("Connection refused");
+            }
+            return StubResponse.of(request.getURI().getPath().equals("/error") ? 500 : 200, "{\"id\":1}");
+        });
+        HttpCapture.enable(CapturePolicy.custom().setMaxBodySize(6).build());
+
+        //默认只抓取5xx和失败的请求
+        assertEquals("{\"id\":1}", HttpClientUtils.requestGet("http://order-service/ok", 1000));
+        assertEquals("{\"id\":1}", HttpClientUtils.requestJsonPost("http://order-service/error", 1000,
+                Collections.singletonMap("Authorization", "Bearer token"), "{\"name\":\"peter\"}"));
+        assertNull(HttpClientUtils.requestGet("http://order-service/down", 1000));
+
+        List<CapturedExchange> exchanges = HttpCapture.dump();
+        assertEquals(2, exchanges.size());
+
+        CapturedExchange error = exchanges.get(0);
+        assertEquals("POST", error.getMethod());
+        assertEquals(500, error.getStatusCode());
+        assertTrue(error.getRequestHeaders().contains("Authorization: ***"));
+        assertEquals("{\"name...<已截断>", error.getRequestBody());
+        assertEquals("{\"id\":...<已截断>", error.getResponseBody());
+
+        CapturedExchange down = exchanges.get(1);
+        assertEquals(-1, down.getStatusCode());
+        assertTrue(down.getFailure().contains("Connection refused"));
+    }
+
+    @Test
+    void ringBuffer() {
+        HttpClientUtils.setTransport((request, context) -> StubResponse.of(200, "ok"));
+        HttpCapture.enable(CapturePolicy.custom()
+                .setCapacity(3)
+                .setSampleRate(1)
+                .addHosts("http://order-service")
+                .build());
+
+        for (int i = 0; i < 10; i++) {
+            HttpClientUtils.requestGet("http://order-service/" + i, 1000);
+            HttpClientUtils.requestGet("http://user-service/" + i, 1000);
+        }
+
+        //容量向上取整为4，只保留最后4个order-service的请求
+        List<CapturedExchange> exchanges = HttpCapture.dump();
+        assertEquals(4, exchanges.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals("http://order-service/" + (6 + i), exchanges.get(i).getUri());
+        }
+    }
+}
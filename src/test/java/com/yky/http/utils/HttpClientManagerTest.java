@@ -0,0 +1,126 @@
+package com.yky.http.utils;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpClientManagerTest {
+
+    @AfterEach
+    void reset() {
+        HttpClientManager.init(HttpClientManager.DEFAULT_MAX_TOTAL, HttpClientManager.DEFAULT_MAX_PER_ROUTE,
+                HttpClientManager.DEFAULT_KEEP_ALIVE, HttpClientManager.DEFAULT_MAX_IDLE_TIME, null);
+    }
+
+    @Test
+    void warmUp() throws IOException {
+        //只需要完成TCP连接，服务端不需要accept
+        try (ServerSocket a = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+             ServerSocket b = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            HttpClientManager.init(10, 3, 30000, 60000);
+            String hostA = "http://127.0.0.1:" + a.getLocalPort();
+            String hostB = "http://127.0.0.1:" + b.getLocalPort() + "/path";
+
+            //每个主机不超过maxPerRoute
+            assertEquals(6, HttpClientManager.warmUp(Arrays.asList(hostA, hostB), 5, 5000));
+            PoolStats stats = HttpClientManager.getConnectionManager().getTotalStats();
+            assertEquals(6, stats.getAvailable());
+            assertEquals(0, stats.getLeased());
+        }
+    }
+
+    @Test
+    void warmUpMaxTotal() throws IOException {
+        try (ServerSocket a = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+             ServerSocket b = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            HttpClientManager.init(5, 4, 30000, 60000);
+
+            //总数不超过maxTotal，不会等待到超时
+            long start = System.currentTimeMillis();
+            int opened = HttpClientManager.warmUp(Arrays.asList("http://127.0.0.1:" + a.getLocalPort(),
+                    "http://127.0.0.1:" + b.getLocalPort()), 4, 5000);
+            assertEquals(5, opened);
+            assertTrue(System.currentTimeMillis() - start < 3000);
+            assertEquals(5, HttpClientManager.getConnectionManager().getTotalStats().getAvailable());
+        }
+    }
+
+    @Test
+    void warmUpFailure() throws IOException {
+        int port;
+        try (ServerSocket closed = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = closed.getLocalPort();
+        }
+        HttpClientManager.init(10, 3, 30000, 60000);
+        //连接失败不影响启动
+        assertEquals(0, HttpClientManager.warmUp(Arrays.asList("http://127.0.0.1:" + port), 3, 2000));
+        assertEquals(0, HttpClientManager.getConnectionManager().getTotalStats().getLeased());
+    }
+
+    @Test
+    void reinitKeepsInFlightRequests() throws Exception {
+        CountDownLatch received = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/slow", exchange -> {
+            received.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/slow";
+            PoolingHttpClientConnectionManager old = HttpClientManager.getConnectionManager();
+            CompletableFuture<String> inFlight = CompletableFuture.supplyAsync(() -> HttpClientUtils.requestGet(url, 5000));
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+
+            //请求进行中时重建客户端，旧客户端要等请求完成后才关闭
+            HttpClientManager.setDnsResolver(null);
+            assertNotSame(old, HttpClientManager.getConnectionManager());
+            Thread.sleep(500);
+            release.countDown();
+            assertEquals("ok", inFlight.get(5, TimeUnit.SECONDS));
+
+            //连接归还后旧的连接池被关闭
+            HttpRoute route = new HttpRoute(new HttpHost("127.0.0.1", server.getAddress().getPort()));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            boolean closed = false;
+            while (!closed && System.nanoTime() < deadline) {
+                try {
+                    old.releaseConnection(old.requestConnection(route, null).get(1, TimeUnit.SECONDS), null, 0, TimeUnit.MILLISECONDS);
+                    Thread.sleep(50);
+                } catch (IllegalStateException e) {
+                    closed = true;
+                }
+            }
+            assertTrue(closed);
+        } finally {
+            server.stop(0);
+        }
+    }
+}
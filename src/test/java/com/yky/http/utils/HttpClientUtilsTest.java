@@ -1,10 +1,25 @@
 package com.yky.http.utils;
 
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.TypeReference;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import javax.jws.Oneway;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -65,6 +80,182 @@ class HttpClientUtilsTest {
         System.out.println(s);
     }
 
+    @Test
+    void requestGetForEntity() {
+        //按响应头中的编码解析
+        HttpClientUtils.setTransport((request, context) -> new StubResponse(200,
+                new StringEntity("[{\"id\":1,\"name\":\"深圳市\"}]", ContentType.create("application/json", "GBK"))));
+        try {
+            List<Map<String, Object>> list = HttpClientUtils.requestGet("http://order-service/list", 5000, null, null,
+                    new TypeReference<List<Map<String, Object>>>(){});
+            assertEquals(1, list.size());
+            assertEquals(1, list.get(0).get("id"));
+            assertEquals("深圳市", list.get(0).get("name"));
+        } finally {
+            HttpClientUtils.setTransport(null);
+        }
+    }
+
+    @Test
+    void withDeadline() {
+        //响应头很快返回，响应体一直读不完，到截止时间时由定时器中止请求
+        HttpClientUtils.setTransport((request, context) -> {
+            CountDownLatch aborted = new CountDownLatch(1);
+            request.setCancellable(() -> {
+                aborted.countDown();
+                return true;
+            });
+            InputStream body = new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    try {
+                        aborted.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IOException("aborted");
+                }
+            };
+            return new StubResponse(200, new InputStreamEntity(body, ContentType.APPLICATION_JSON));
+        });
+        try {
+            long start = System.currentTimeMillis();
+            String s = HttpClientUtils.withDeadline(300, () -> HttpClientUtils.requestGet("http://order-service/slow", 5000));
+            assertNull(s);
+            assertTrue(System.currentTimeMillis() - start < 2000);
+        } finally {
+            HttpClientUtils.setTransport(null);
+        }
+    }
+
+    @Test
+    void requestGetJsonArray() {
+        StubResponse response = StubResponse.of(200, "[{\"id\":0},{\"id\":1},{\"id\":2}]");
+        HttpClientUtils.setTransport((request, context) -> response);
+        try {
+            List<Object> ids = new ArrayList<>();
+            long count = HttpClientUtils.requestGetJsonArray("http://order-service/list", 5000, null, null, Map.class,
+                    element -> ids.add(element.get("id")));
+            assertEquals(3, count);
+            assertEquals(Arrays.asList(0, 1, 2), ids);
+            assertTrue(response.isClosed());
+        } finally {
+            HttpClientUtils.setTransport(null);
+        }
+    }
+
+    @Test
+    void requestFormPostMissingFile() throws IOException {
+        //任何一个文件读取失败时不发送请求，不会只上传一部分文件
+        File file = File.createTempFile("upload", ".txt");
+        file.deleteOnExit();
+        int[] calls = new int[1];
+        HttpClientUtils.setTransport((request, context) -> {
+            calls[0]++;
+            return StubResponse.of(200, "ok");
+        });
+        try {
+            assertNull(HttpClientUtils.requestFilePost("http://order-service/upload", 5000, null, "files",
+                    file.getPath(), file.getPath() + ".missing"));
+            assertEquals(0, calls[0]);
+            assertEquals("ok", HttpClientUtils.requestFilePost("http://order-service/upload", 5000, null, "files", file.getPath()));
+            assertEquals(1, calls[0]);
+        } finally {
+            HttpClientUtils.setTransport(null);
+        }
+    }
+
+    @Test
+    void requestFilePost() throws IOException {
+        File file = File.createTempFile("upload", ".txt");
+        file.deleteOnExit();
+        byte[] content = new byte[100 * 1024];
+        Arrays.fill(content, (byte) 'a');
+        Files.write(file.toPath(), content);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        long[] length = new long[1];
+        HttpClientUtils.setTransport((request, context) -> {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            assertTrue(entity.getContentType().getValue().startsWith("multipart/form-data"));
+            length[0] = entity.getContentLength();
+            entity.writeTo(body);
+            return StubResponse.of(200, "ok");
+        });
+        List<long[]> progress = new ArrayList<>();
+        try {
+            assertEquals("ok", HttpClientUtils.requestFilePost("http://order-service/upload", 5000, null, "files",
+                    (transferred, total) -> progress.add(new long[]{transferred, total}), file.toPath()));
+        } finally {
+            HttpClientUtils.setTransport(null);
+        }
+
+        String sent = new String(body.toByteArray(), StandardCharsets.ISO_8859_1);
+        assertTrue(sent.contains("name=\"files\"; filename=\"" + file.getName() + "\""));
+        assertTrue(sent.contains(new String(content, StandardCharsets.ISO_8859_1)));
+        //进度按块回调，最后一次为全部字节
+        assertTrue(progress.size() > 1);
+        assertEquals(body.size(), length[0]);
+        assertArrayEquals(new long[]{length[0], length[0]}, progress.get(progress.size() - 1));
+    }
+
+    @Test
+    void requestJsonArrayPost() {
+        Iterator<Map<String, Object>> users = new Iterator<Map<String, Object>>() {
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                return i < 10000;
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                Map<String, Object> user = new LinkedHashMap<>();
+                user.put("id", i++);
+                user.put("name", "张三");
+                return user;
+            }
+        };
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        HttpClientUtils.setTransport((request, context) -> {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            assertEquals(-1, entity.getContentLength());
+            entity.writeTo(body);
+            return StubResponse.of(200, "ok");
+        });
+        try {
+            assertEquals("ok", HttpClientUtils.requestJsonArrayPost("http://order-service/users", 5000, null, users));
+        } finally {
+            HttpClientUtils.setTransport(null);
+        }
+        List<Map<String, Object>> sent = JSON.parseObject(new String(body.toByteArray(), StandardCharsets.UTF_8),
+                new TypeReference<List<Map<String, Object>>>(){});
+        assertEquals(10000, sent.size());
+        assertEquals(9999, sent.get(9999).get("id"));
+        assertEquals("张三", sent.get(0).get("name"));
+    }
+
+    @Test
+    void requestNdjsonPost() {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        HttpClientUtils.setTransport((request, context) -> {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            assertEquals("application/x-ndjson; charset=UTF-8", entity.getContentType().getValue());
+            entity.writeTo(body);
+            return StubResponse.of(200, "ok");
+        });
+        try {
+            assertEquals("ok", HttpClientUtils.requestNdjsonPost("http://order-service/users", 5000, null,
+                    java.util.stream.IntStream.range(0, 10000).mapToObj(i -> Collections.singletonMap("id", i))));
+        } finally {
+            HttpClientUtils.setTransport(null);
+        }
+        String[] lines = new String(body.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(10000, lines.length);
+        assertEquals("{\"id\":9999}", lines[9999]);
+    }
+
     @Test
     void testRequestJsonPost() {
     }
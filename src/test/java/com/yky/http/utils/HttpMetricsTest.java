@@ -0,0 +1,151 @@
+package com.yky.http.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpMetricsTest {
+
+    private static final String BODY = "{\"id\":1,\"name\":\"metrics\"}";
+
+    private HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private String baseUrl;
+
+    private final List<RequestMetrics> recorded = new CopyOnWriteArrayList<>();
+
+    private final HttpMetricsRecorder recorder = recorded::add;
+
+    private final CountDownLatch slowStarted = new CountDownLatch(1);
+
+    private byte[] gzipped;
+
+    @BeforeEach
+    void start() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(BODY.getBytes(StandardCharsets.UTF_8));
+        }
+        gzipped = out.toByteArray();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/delay", exchange -> {
+            sleep(100);
+            send(exchange, BODY.getBytes(StandardCharsets.UTF_8));
+        });
+        server.createContext("/slow", exchange -> {
+            slowStarted.countDown();
+            sleep(300);
+            send(exchange, BODY.getBytes(StandardCharsets.UTF_8));
+        });
+        server.createContext("/gzip", exchange -> {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            send(exchange, gzipped);
+        });
+        //多线程处理，连接池等待的测试需要两个请求同时在服务端
+        server.setExecutor(executor);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        HttpMetrics.reset();
+        HttpMetrics.addRecorder(recorder);
+    }
+
+    @AfterEach
+    void stop() {
+        HttpMetrics.removeRecorder(recorder);
+        HttpMetrics.disable();
+        HttpMetrics.reset();
+        server.stop(0);
+        executor.shutdownNow();
+        HttpClientManager.init(HttpClientManager.DEFAULT_MAX_TOTAL, HttpClientManager.DEFAULT_MAX_PER_ROUTE,
+                HttpClientManager.DEFAULT_KEEP_ALIVE, HttpClientManager.DEFAULT_MAX_IDLE_TIME, null);
+    }
+
+    @Test
+    void timeToFirstByteAndBytes() {
+        assertEquals(BODY, HttpClientUtils.requestGet(baseUrl + "/delay", 5000));
+
+        assertEquals(1, recorded.size());
+        RequestMetrics metrics = recorded.get(0);
+        assertEquals(200, metrics.getStatusCode());
+        assertNull(metrics.getException());
+        //服务端等待100ms才返回响应头
+        assertTrue(metrics.getTimeToFirstByteNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(metrics.getTotalNanos() >= metrics.getTimeToFirstByteNanos());
+        //请求行和请求头
+        assertTrue(metrics.getBytesSent() > "GET /delay HTTP/1.1\r\n\r\n".length());
+        assertEquals(BODY.length(), metrics.getBytesReceived());
+        assertEquals(BODY.length(), metrics.getCompressedBytesReceived());
+
+        RouteMetrics route = HttpMetrics.getRouteMetrics(baseUrl);
+        assertNotNull(route);
+        assertEquals(metrics.getBytesSent(), route.getBytesSent());
+        assertEquals(BODY.length(), route.getBytesReceived());
+        assertEquals(1, route.getStatusCount(200));
+    }
+
+    @Test
+    void compressedBytes() {
+        assertEquals(BODY, HttpClientUtils.requestGet(baseUrl + "/gzip", 5000));
+
+        RequestMetrics metrics = recorded.get(0);
+        assertEquals(BODY.length(), metrics.getBytesReceived());
+        assertEquals(gzipped.length, metrics.getCompressedBytesReceived());
+    }
+
+    @Test
+    void poolWait() throws Exception {
+        //每个路由只有一个连接，第二个请求要等第一个请求归还连接
+        HttpClientManager.init(1, 1, HttpClientManager.DEFAULT_KEEP_ALIVE, HttpClientManager.DEFAULT_MAX_IDLE_TIME, null);
+
+        CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> HttpClientUtils.requestGet(baseUrl + "/slow", 5000));
+        assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+        assertEquals(BODY, HttpClientUtils.requestGet(baseUrl + "/delay", 5000));
+        assertEquals(BODY, slow.get(5, TimeUnit.SECONDS));
+
+        RequestMetrics waited = recorded.stream()
+                .filter(metrics -> metrics.getTimeToFirstByteNanos() < TimeUnit.MILLISECONDS.toNanos(300))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        //慢请求在服务端还要200ms以上才会归还连接
+        assertTrue(waited.getPoolWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(100), "poolWait " + waited.getPoolWaitNanos());
+        assertEquals(2, HttpMetrics.getRouteMetrics(baseUrl).getStatusCount(200));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void send(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+}
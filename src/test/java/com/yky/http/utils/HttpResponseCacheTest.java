@@ -0,0 +1,94 @@
+package com.yky.http.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpResponseCacheTest {
+
+    private HttpServer server;
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private String baseUrl;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/max-age", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+            send(exchange, 200, "{\"id\":1}");
+        });
+        server.createContext("/etag", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().set("Cache-Control", "max-age=0");
+            exchange.getResponseHeaders().set("ETag", "\"v1\"");
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                send(exchange, 200, "{\"id\":2}");
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        HttpClientManager.getHttpClient();
+        HttpResponseCache.enable();
+    }
+
+    @AfterEach
+    void stop() {
+        HttpResponseCache.disable();
+        server.stop(0);
+    }
+
+    @Test
+    void hit() {
+        long hits = HttpResponseCache.getHitCount();
+        long misses = HttpResponseCache.getMissCount();
+
+        assertEquals("{\"id\":1}", HttpClientUtils.requestGet(baseUrl + "/max-age", 5000));
+        assertEquals("{\"id\":1}", HttpClientUtils.requestGet(baseUrl + "/max-age", 5000));
+
+        //第二次直接命中缓存，不发送请求
+        assertEquals(1, requests.get());
+        assertEquals(misses + 1, HttpResponseCache.getMissCount());
+        assertEquals(hits + 1, HttpResponseCache.getHitCount());
+        assertEquals(1, HttpResponseCache.getEntryCount());
+        assertEquals(8, HttpResponseCache.getTotalBytes());
+    }
+
+    @Test
+    void validated() {
+        long validated = HttpResponseCache.getValidatedCount();
+
+        assertEquals("{\"id\":2}", HttpClientUtils.requestGet(baseUrl + "/etag", 5000));
+        //服务端返回304，复用缓存的响应体
+        assertEquals("{\"id\":2}", HttpClientUtils.requestGet(baseUrl + "/etag", 5000));
+
+        assertEquals(2, requests.get());
+        assertEquals(validated + 1, HttpResponseCache.getValidatedCount());
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.yky.http.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonStreamEntityTest {
+
+    @Test
+    void array() throws IOException {
+        JsonStreamEntity entity = new JsonStreamEntity(Arrays.asList(user(1, "张三"), user(2, "李四")).iterator(), false);
+        assertEquals("[{\"id\":1,\"name\":\"张三\"},{\"id\":2,\"name\":\"李四\"}]", write(entity));
+        assertEquals("application/json; charset=UTF-8", entity.getContentType().getValue());
+        assertTrue(entity.isChunked());
+        assertFalse(entity.isRepeatable());
+        assertFalse(entity.isStreaming());
+    }
+
+    @Test
+    void ndjson() throws IOException {
+        JsonStreamEntity entity = new JsonStreamEntity(Arrays.asList(user(1, "张三"), user(2, "李四")).iterator(), true);
+        assertEquals("{\"id\":1,\"name\":\"张三\"}\n{\"id\":2,\"name\":\"李四\"}\n", write(entity));
+        assertEquals("application/x-ndjson; charset=UTF-8", entity.getContentType().getValue());
+    }
+
+    @Test
+    void empty() throws IOException {
+        assertEquals("[]", write(new JsonStreamEntity(Collections.emptyIterator(), false)));
+        assertEquals("", write(new JsonStreamEntity(Collections.emptyIterator(), true)));
+    }
+
+    @Test
+    void iteratorThrows() {
+        Iterator<Map<String, Object>> elements = new Iterator<Map<String, Object>>() {
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                if (i == 2) {
+                    throw new IllegalStateException("查询失败");
+                }
+                return user(i++, "张三");
+            }
+        };
+        JsonStreamEntity entity = new JsonStreamEntity(elements, false);
+
+        //遍历失败按IO异常处理，请求被中止
+        IOException e = assertThrows(IOException.class, () -> write(entity));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    void writeOnce() throws IOException {
+        JsonStreamEntity entity = new JsonStreamEntity(Collections.emptyIterator(), false);
+        write(entity);
+        assertThrows(IllegalStateException.class, () -> write(entity));
+        assertThrows(UnsupportedOperationException.class, entity::getContent);
+    }
+
+    private static String write(JsonStreamEntity entity) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, Object> user(int id, String name) {
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("id", id);
+        user.put("name", name);
+        return user;
+    }
+}
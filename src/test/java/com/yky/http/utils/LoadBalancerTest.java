@@ -0,0 +1,103 @@
+package com.yky.http.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadBalancerTest {
+
+    @Test
+    void choose() {
+        LoadBalancer balancer = LoadBalancer.custom("order")
+                .addEndpoints("http://10.0.0.1:8080", "http://10.0.0.2:8080/", "http://10.0.0.3:8080")
+                .setConsecutiveFailures(3)
+                .build();
+        Endpoint bad = balancer.getEndpoints().get(2);
+        for (int i = 0; i < 3; i++) {
+            bad.start();
+            bad.complete(false, 1000000);
+        }
+        assertTrue(bad.isEjected());
+
+        for (int i = 0; i < 100; i++) {
+            assertNotSame(bad, balancer.choose());
+        }
+
+        //最多摘除一半的实例
+        Endpoint second = balancer.getEndpoints().get(1);
+        for (int i = 0; i < 3; i++) {
+            second.start();
+            second.complete(false, 1000000);
+        }
+        assertFalse(second.isEjected());
+    }
+
+    @Test
+    void resolve() {
+        LoadBalancer balancer = LoadBalancer.custom("order").addEndpoints("http://10.0.0.1:8080").build();
+        Endpoint endpoint = balancer.choose();
+        assertEquals(URI.create("http://10.0.0.1:8080/orders/1?name=%E5%BC%A0"),
+                endpoint.resolve(URI.create("lb://order/orders/1?name=%E5%BC%A0")));
+        assertEquals(URI.create("http://10.0.0.1:8080/"), endpoint.resolve(URI.create("lb://order")));
+    }
+
+    @Test
+    void setEndpoints() {
+        LoadBalancer balancer = LoadBalancer.custom("order").addEndpoints("http://10.0.0.1:8080", "http://10.0.0.2:8080").build();
+        Endpoint first = balancer.getEndpoints().get(0);
+        balancer.setEndpoints("http://10.0.0.1:8080", "http://10.0.0.3:8080");
+        assertSame(first, balancer.getEndpoints().get(0));
+        assertEquals("http://10.0.0.3:8080", balancer.getEndpoints().get(1).getHost());
+    }
+
+    @Test
+    void requestGet() {
+        //order-1正常但较慢，order-2很快返回503
+        Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+        HttpClientUtils.setTransport((request, context) -> {
+            URI uri = request.getURI();
+            assertEquals("/orders/1", uri.getPath());
+            assertEquals("name=%E5%BC%A0", uri.getRawQuery());
+            hits.computeIfAbsent(uri.getHost(), key -> new AtomicInteger()).incrementAndGet();
+            if ("order-2".equals(uri.getHost())) {
+                return StubResponse.of(503, "unavailable");
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return StubResponse.of(200, "ok");
+        });
+        LoadBalancer balancer = LoadBalancer.custom("test")
+                .addEndpoints("http://order-1:8080", "http://order-2:8080")
+                .setConsecutiveFailures(3)
+                //耗时很快衰减，不受第一次请求的预热耗时影响
+                .setEwma(1, 0.3)
+                .build();
+        HttpClientUtils.addLoadBalancer(balancer);
+        try {
+            int ok = 0;
+            for (int i = 0; i < 10; i++) {
+                if ("ok".equals(HttpClientUtils.requestGet("lb://test/orders/1?name=%E5%BC%A0", 5000))) {
+                    ok++;
+                }
+            }
+
+            //刚完成请求的order-1耗时较高，order-2被选中，连续失败3次后被摘除，之后的请求都发往order-1
+            assertEquals(3, hits.get("order-2").get());
+            assertTrue(balancer.getEndpoints().get(1).isEjected());
+            assertFalse(balancer.getEndpoints().get(0).isEjected());
+            assertEquals(7, hits.get("order-1").get());
+            assertEquals(7, ok);
+        } finally {
+            HttpClientUtils.removeLoadBalancer("test");
+            HttpClientUtils.setTransport(null);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.yky.http.utils;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeDownloaderTest {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private final byte[] content = new byte[3 * 1024 * 1024 + 17];
+
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+
+    {
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+    }
+
+    @AfterEach
+    void reset() {
+        HttpClientUtils.setTransport(null);
+    }
+
+    @Test
+    void download() throws IOException {
+        HttpClientUtils.setTransport((request, context) -> respond(request, String.valueOf(content.length), false));
+        File file = tempFile();
+
+        assertEquals(content.length, HttpClientUtils.download("http://file-service/file", 5000, null, file, 3));
+        assertEquals(3, rangeRequests.get());
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    void malformedContentLength() throws IOException {
+        //Content-Length格式不正确时不分段
+        HttpClientUtils.setTransport((request, context) -> respond(request, "3MB", false));
+        File file = tempFile();
+
+        assertEquals(content.length, HttpClientUtils.download("http://file-service/file", 5000, null, file, 3));
+        assertEquals(0, rangeRequests.get());
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    void deletePartialFile() throws IOException {
+        //分段一直失败时删除预先分配大小的文件
+        HttpClientUtils.setTransport((request, context) -> respond(request, String.valueOf(content.length), true));
+        File file = tempFile();
+
+        assertEquals(-1, HttpClientUtils.download("http://file-service/file", 5000, null, file, 3));
+        assertTrue(rangeRequests.get() > 3);
+        assertFalse(file.exists());
+    }
+
+    @Test
+    void cancelOtherSegments() throws IOException {
+        //第一段一直失败，其他段一直等到被中止
+        HttpClientUtils.setTransport((request, context) -> {
+            Header range = request.getFirstHeader(HttpHeaders.RANGE);
+            if (range == null || range.getValue().startsWith("bytes=0-")) {
+                return respond(request, String.valueOf(content.length), true);
+            }
+            rangeRequests.incrementAndGet();
+            CountDownLatch aborted = new CountDownLatch(1);
+            request.setCancellable(() -> {
+                aborted.countDown();
+                return true;
+            });
+            try {
+                aborted.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("aborted");
+        });
+        File file = tempFile();
+
+        long start = System.currentTimeMillis();
+        assertEquals(-1, HttpClientUtils.download("http://file-service/file", 5000, null, file, 3));
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertFalse(file.exists());
+
+        //第一段重试3次后放弃，其他段被中止后不再重试
+        assertEquals(6, rangeRequests.get());
+    }
+
+    private StubResponse respond(HttpRequestBase request, String contentLength, boolean failRanges) throws IOException {
+        if ("HEAD".equals(request.getMethod())) {
+            StubResponse response = new StubResponse(200, null);
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setHeader(HttpHeaders.CONTENT_LENGTH, contentLength);
+            return response;
+        }
+        if (request.getFirstHeader(HttpHeaders.RANGE) == null) {
+            return new StubResponse(200, new ByteArrayEntity(content));
+        }
+
+        rangeRequests.incrementAndGet();
+        if (failRanges) {
+            throw new IOException("connection reset");
+        }
+        Matcher matcher = RANGE.matcher(request.getFirstHeader(HttpHeaders.RANGE).getValue());
+        assertTrue(matcher.matches());
+        int start = Integer.parseInt(matcher.group(1));
+        int end = Integer.parseInt(matcher.group(2));
+        return new StubResponse(206, new ByteArrayEntity(Arrays.copyOfRange(content, start, end + 1)));
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("download", ".tmp");
+        file.deleteOnExit();
+        return file;
+    }
+}
@@ -0,0 +1,85 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitPolicyTest {
+
+    @Test
+    void reject() {
+        RateLimitPolicy policy = RateLimitPolicy.custom()
+                .setRate(10, 5)
+                .setMode(RateLimitPolicy.Mode.REJECT, 0)
+                .build();
+        RateLimiter limiter = policy.getRateLimiter("http://localhost:8080");
+        assertSame(limiter, policy.getRateLimiter("http://localhost:8080"));
+
+        //允许5个请求的突发，第6个被拒绝
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.reserve(policy.getMaxWaitNanos()));
+        }
+        RateLimitExceededException e = assertThrows(RateLimitExceededException.class,
+                () -> limiter.reserve(policy.getMaxWaitNanos()));
+        assertTrue(e.getWaitMillis() > 0 && e.getWaitMillis() <= 100);
+    }
+
+    @Test
+    void smooth() {
+        RateLimitPolicy policy = RateLimitPolicy.custom()
+                .setRate(100, 10)
+                .setRate("http://api.partner.com/v1", 10, 10)
+                .setMode(RateLimitPolicy.Mode.SMOOTH, 1000)
+                .build();
+        assertNotNull(policy.getRateLimiter("http://localhost:8080"));
+        RateLimiter limiter = policy.getRateLimiter("http://api.partner.com");
+        assertEquals(10, limiter.getRate(), 0.001);
+
+        //SMOOTH不允许突发，请求按100ms的间隔排队
+        assertEquals(0, limiter.reserve(policy.getMaxWaitNanos()));
+        long wait = limiter.reserve(policy.getMaxWaitNanos());
+        assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(90));
+        wait = limiter.reserve(policy.getMaxWaitNanos());
+        assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(190));
+
+        //没有默认速率时只限制单独设置的主机
+        RateLimitPolicy hostOnly = RateLimitPolicy.custom().setRate("http://api.partner.com", 10, 1).build();
+        assertNull(hostOnly.getRateLimiter("http://localhost:8080"));
+    }
+
+    @Test
+    void retryAfter() {
+        RateLimitPolicy policy = RateLimitPolicy.custom()
+                .setRate(100, 100)
+                .setMode(RateLimitPolicy.Mode.WAIT, 500)
+                .setAdaptive(0.5, 0.1, 0.1)
+                .build();
+        RateLimiter limiter = policy.getRateLimiter("http://localhost:8080");
+
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 429, "Too Many Requests");
+        response.setHeader("Retry-After", "2");
+        long retryAfter = policy.getRetryAfterNanos(response);
+        assertEquals(TimeUnit.SECONDS.toNanos(2), retryAfter);
+        limiter.onResponse(429, retryAfter);
+        assertEquals(50, limiter.getRate(), 0.001);
+
+        //Retry-After超过最多等待的时间，直接拒绝
+        assertThrows(RateLimitExceededException.class, () -> limiter.reserve(policy.getMaxWaitNanos()));
+
+        //成功的请求逐渐恢复速率
+        limiter.onResponse(200, -1);
+        assertEquals(60, limiter.getRate(), 0.001);
+        for (int i = 0; i < 10; i++) {
+            limiter.onResponse(200, -1);
+        }
+        assertEquals(100, limiter.getRate(), 0.001);
+
+        response.setHeader("Retry-After", "Wed, 21 Oct 2015 07:28:00 GMT");
+        assertEquals(-1, policy.getRetryAfterNanos(response));
+    }
+}
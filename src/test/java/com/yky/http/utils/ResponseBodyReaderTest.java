@@ -0,0 +1,103 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseBodyReaderTest {
+
+    @AfterEach
+    void reset() {
+        HttpClientUtils.setTransport(null);
+    }
+
+    @Test
+    void contentLengthOverLimit() {
+        HttpGet request = new HttpGet("http://order-service/x");
+        ResponseTooLargeException e = assertThrows(ResponseTooLargeException.class,
+                () -> read(request, new ByteArrayEntity(body(101)), 100));
+        assertEquals(100, e.getLimit());
+        assertEquals(101, e.getSize());
+        //超限时中止请求，不再读取剩余的响应体
+        assertTrue(request.isAborted());
+    }
+
+    @Test
+    void unknownLengthOverLimit() {
+        //长度未知时读取过程中超限，需要换更大的数组才会超过上限
+        HttpGet request = new HttpGet("http://order-service/x");
+        ResponseTooLargeException e = assertThrows(ResponseTooLargeException.class,
+                () -> read(request, unknownLength(body(20001)), 20000));
+        assertEquals(-1, e.getSize());
+        assertTrue(request.isAborted());
+    }
+
+    @Test
+    void eofAtLimit() throws IOException {
+        //长度未知、正好读到上限时不算超限
+        byte[] body = body(8192);
+        HttpGet request = new HttpGet("http://order-service/x");
+        assertArrayEquals(body, read(request, unknownLength(body), 8192));
+        assertArrayEquals(body, read(request, new ByteArrayEntity(body), 8192));
+        assertFalse(request.isAborted());
+
+        assertThrows(ResponseTooLargeException.class, () -> read(request, unknownLength(body(8193)), 8192));
+    }
+
+    @Test
+    void limitNotPowerOfTwo() throws IOException {
+        //池中的数组按2的幂分配，比上限大，不能以数组长度作为上限
+        HttpGet request = new HttpGet("http://order-service/x");
+        byte[] body = body(10000);
+        assertArrayEquals(body, read(request, unknownLength(body), 10000));
+        assertArrayEquals(body, read(request, new ByteArrayEntity(body), 10000));
+        assertThrows(ResponseTooLargeException.class, () -> read(request, unknownLength(body(10001)), 10000));
+        assertThrows(ResponseTooLargeException.class, () -> read(request, unknownLength(body(12000)), 10000));
+        assertThrows(ResponseTooLargeException.class, () -> read(request, new ByteArrayEntity(body(10001)), 10000));
+    }
+
+    @Test
+    void stubTransport() {
+        HttpClientUtils.setTransport((request, context) -> StubResponse.of(200, "{\"name\":\"张三\"}"));
+        assertEquals("{\"name\":\"张三\"}", HttpClientUtils.withMaxBodySize(17, () -> HttpClientUtils.requestGet("http://order-service/x", 1000)));
+        //超过上限时请求失败，返回null
+        assertNull(HttpClientUtils.withMaxBodySize(16, () -> HttpClientUtils.requestGet("http://order-service/x", 1000)));
+    }
+
+    private static byte[] read(HttpGet request, HttpEntity entity, long maxBodySize) throws IOException {
+        try {
+            return HttpClientUtils.withMaxBodySize(maxBodySize, () -> {
+                try {
+                    return ResponseBodyReader.read(request, entity, (buffer, length) -> Arrays.copyOf(buffer, length));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static HttpEntity unknownLength(byte[] body) {
+        return new InputStreamEntity(new ByteArrayInputStream(body), -1, ContentType.APPLICATION_OCTET_STREAM);
+    }
+
+    private static byte[] body(int length) {
+        byte[] body = new byte[length];
+        for (int i = 0; i < length; i++) {
+            body[i] = (byte) i;
+        }
+        return body;
+    }
+}
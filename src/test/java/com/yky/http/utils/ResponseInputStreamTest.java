@@ -0,0 +1,142 @@
+package com.yky.http.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.PoolStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseInputStreamTest {
+
+    private static final byte[] SMALL = "{\"id\":1}".getBytes();
+
+    private static final byte[] LARGE = new byte[4 * 1024 * 1024];
+
+    static {
+        for (int i = 0; i < LARGE.length; i++) {
+            LARGE[i] = (byte) i;
+        }
+    }
+
+    private HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private String baseUrl;
+
+    private HttpRoute route;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/small", exchange -> send(exchange, 200, SMALL));
+        server.createContext("/large", exchange -> send(exchange, 200, LARGE));
+        server.createContext("/missing", exchange -> send(exchange, 404, SMALL));
+        server.setExecutor(executor);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        route = new HttpRoute(new HttpHost("127.0.0.1", server.getAddress().getPort()));
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void releaseAtEof() throws IOException {
+        try (InputStream inputStream = HttpClientUtils.requestGetForStream(baseUrl + "/small", 5000, null, null)) {
+            assertEquals(1, stats().getLeased());
+            assertArrayEquals(SMALL, readAll(inputStream));
+        }
+
+        //读完后关闭，连接归还连接池复用
+        PoolStats stats = stats();
+        assertEquals(0, stats.getLeased());
+        assertEquals(1, stats.getAvailable());
+    }
+
+    @Test
+    void abortOnEarlyClose() throws IOException {
+        try (InputStream inputStream = HttpClientUtils.requestGetForStream(baseUrl + "/large", 5000, null, null)) {
+            byte[] buffer = new byte[1024];
+            assertTrue(inputStream.read(buffer) > 0);
+        }
+
+        //没读完就关闭，直接断开连接，不会为了复用连接读完剩余的响应体
+        PoolStats stats = stats();
+        assertEquals(0, stats.getLeased());
+        assertEquals(0, stats.getAvailable());
+    }
+
+    @Test
+    void chunkConsumer() {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int[] chunks = new int[1];
+        long count = HttpClientUtils.requestGet(baseUrl + "/large", 5000, null, null, (buffer, offset, length) -> {
+            assertTrue(length <= HttpClientUtils.BUFFER_SIZE);
+            body.write(buffer, offset, length);
+            chunks[0]++;
+        });
+
+        assertEquals(LARGE.length, count);
+        assertArrayEquals(LARGE, body.toByteArray());
+        //按块回调，不会一次性把整个响应体交给consumer
+        assertTrue(chunks[0] > 1);
+        assertEquals(0, stats().getLeased());
+    }
+
+    @Test
+    void download() throws IOException {
+        File file = File.createTempFile("download", ".tmp");
+        file.deleteOnExit();
+
+        assertEquals(LARGE.length, HttpClientUtils.download(baseUrl + "/large", 5000, null, null, file));
+        assertArrayEquals(LARGE, Files.readAllBytes(file.toPath()));
+        assertEquals(0, stats().getLeased());
+
+        //状态码不是2xx时不写入文件
+        assertEquals(-1, HttpClientUtils.download(baseUrl + "/missing", 5000, null, null, file));
+        assertArrayEquals(LARGE, Files.readAllBytes(file.toPath()));
+    }
+
+    private PoolStats stats() {
+        return HttpClientManager.getConnectionManager().getStats(route);
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = inputStream.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static void send(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(statusCode, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        } catch (IOException e) {
+            //客户端提前断开
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.yky.http.utils;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.execchain.RequestAbortedException;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+
+    @AfterEach
+    void reset() {
+        HttpClientUtils.setTransport(null);
+        HttpClientUtils.setRetryPolicy(null);
+    }
+
+    @Test
+    void retry() {
+        AtomicInteger attempts = new AtomicInteger();
+        HttpClientUtils.setTransport((request, context) ->
+                StubResponse.of(attempts.incrementAndGet() < 3 ? 503 : 200, "ok" + attempts.get()));
+        HttpClientUtils.setRetryPolicy(RetryPolicy.custom().setMaxAttempts(3).setBackoff(1, 1, 1).build());
+
+        assertEquals("ok3", HttpClientUtils.requestGet("http://order-service/x", 1000));
+        assertEquals(3, attempts.get());
+
+        //POST默认不重试
+        attempts.set(0);
+        assertEquals("ok1", HttpClientUtils.requestJsonPost("http://order-service/x", 1000, null, "{}"));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void budget() {
+        AtomicInteger attempts = new AtomicInteger();
+        RetryBudget budget = new RetryBudget(0, 2);
+        HttpClientUtils.setRetryPolicy(RetryPolicy.custom()
+                .setMaxAttempts(5)
+                .setBackoff(1, 1, 1)
+                .setBudget(budget)
+                .build());
+        HttpClientUtils.setTransport((request, context) -> {
+            attempts.incrementAndGet();
+            return StubResponse.of(503, "busy");
+        });
+
+        //预算只够重试2次，之后的请求不再重试
+        HttpClientUtils.requestGet("http://order-service/x", 1000);
+        assertEquals(3, attempts.get());
+        assertEquals(0, budget.getAvailableRetries());
+        HttpClientUtils.requestGet("http://order-service/x", 1000);
+        assertEquals(4, attempts.get());
+    }
+
+    @Test
+    void hedgeDelay() {
+        RetryPolicy percentileOnly = RetryPolicy.custom().setHedgePercentile(0.5).build();
+        assertTrue(percentileOnly.isHedgingEnabled());
+        //样本不足时不对冲
+        assertEquals(0, percentileOnly.hedgeDelay());
+
+        RetryPolicy policy = RetryPolicy.custom().setHedgeDelay(200).setHedgePercentile(0.5).build();
+        for (int i = 0; i < 30; i++) {
+            policy.recordLatency(i < 20 ? 10 : 50);
+        }
+        assertEquals(10, policy.hedgeDelay());
+        assertEquals(200, RetryPolicy.custom().setHedgeDelay(200).setHedgePercentile(0.5).build().hedgeDelay());
+    }
+
+    @Test
+    void hedge() {
+        //只设置分位数时，样本不足前不会立即发送对冲请求
+        AtomicInteger attempts = new AtomicInteger();
+        HttpClientUtils.setTransport((request, context) -> {
+            attempts.incrementAndGet();
+            sleep(50);
+            return StubResponse.of(200, "ok");
+        });
+        HttpClientUtils.setRetryPolicy(RetryPolicy.custom().setHedgePercentile(0.9).build());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("ok", HttpClientUtils.requestGet("http://order-service/x", 1000));
+        }
+        assertEquals(5, attempts.get());
+
+        //第一个请求很慢，超过hedgeDelay后发送的对冲请求先返回
+        attempts.set(0);
+        HttpClientUtils.setTransport((request, context) -> {
+            boolean slow = attempts.incrementAndGet() == 1;
+            sleep(slow ? 1000 : 10);
+            return StubResponse.of(200, slow ? "slow" : "fast");
+        });
+        HttpClientUtils.setRetryPolicy(RetryPolicy.custom().setHedgeDelay(50).build());
+        long start = System.nanoTime();
+        assertEquals("fast", HttpClientUtils.requestGet("http://order-service/x", 1000));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void hedgeBudget() {
+        //对冲请求消耗重试预算，预算用完后只等待第一个请求
+        AtomicInteger attempts = new AtomicInteger();
+        HttpClientUtils.setTransport((request, context) -> {
+            boolean slow = attempts.incrementAndGet() % 2 == 1;
+            sleep(slow ? 200 : 10);
+            return StubResponse.of(200, slow ? "slow" : "fast");
+        });
+        RetryBudget budget = new RetryBudget(0, 1);
+        HttpClientUtils.setRetryPolicy(RetryPolicy.custom().setHedgeDelay(50).setBudget(budget).build());
+
+        assertEquals("fast", HttpClientUtils.requestGet("http://order-service/x", 1000));
+        assertEquals(2, attempts.get());
+        assertEquals(0, budget.getAvailableRetries());
+
+        attempts.set(0);
+        assertEquals("slow", HttpClientUtils.requestGet("http://order-service/x", 1000));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void abortStopsRetry() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch firstAttempt = new CountDownLatch(1);
+        HttpClientUtils.setTransport((request, context) -> {
+            attempts.incrementAndGet();
+            firstAttempt.countDown();
+            return StubResponse.of(503, "busy");
+        });
+        HttpClientUtils.setRetryPolicy(RetryPolicy.custom().setMaxAttempts(3).setBackoff(300, 300, 1).setJitter(0).build());
+
+        HttpGet request = new HttpGet("http://order-service/x");
+        new Thread(() -> {
+            try {
+                firstAttempt.await();
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            request.abort();
+        }).start();
+
+        //重试等待期间被中止，不会reset后继续重试
+        assertThrows(RequestAbortedException.class, () -> {
+            try (CloseableHttpResponse response = RequestExecutor.execute(request)) {
+                EntityUtils.consume(response.getEntity());
+            }
+        });
+        assertEquals(1, attempts.get());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
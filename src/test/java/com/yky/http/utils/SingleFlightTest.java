@@ -0,0 +1,111 @@
+package com.yky.http.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void reset() {
+        SingleFlight.disable();
+        HttpClientUtils.setTransport(null);
+    }
+
+    @Test
+    void merge() throws Exception {
+        SingleFlight.enable();
+        blockingTransport();
+        Map<String, String> headers = Collections.singletonMap("Authorization", "Bearer a");
+
+        //相同URL、相同身份的并发请求只发送一次
+        assertEquals(1, sendConcurrently(headers, headers));
+    }
+
+    @Test
+    void noMergeForDifferentUsers() throws Exception {
+        SingleFlight.enable();
+        blockingTransport();
+
+        assertEquals(2, sendConcurrently(Collections.singletonMap("Authorization", "Bearer a"),
+                Collections.singletonMap("Authorization", "Bearer b")));
+    }
+
+    @Test
+    void noMergeForDifferentCookies() throws Exception {
+        SingleFlight.enable();
+        blockingTransport();
+
+        assertEquals(2, sendConcurrently(Collections.singletonMap("Cookie", "sid=a"),
+                Collections.singletonMap("Cookie", "sid=b")));
+    }
+
+    @Test
+    void credentialsRequireOptIn() throws Exception {
+        //只按X-Tenant合并时，携带Authorization的请求不合并
+        SingleFlight.enable("X-Tenant");
+        blockingTransport();
+        Map<String, String> headers = Collections.singletonMap("Authorization", "Bearer a");
+        assertEquals(2, sendConcurrently(headers, headers));
+    }
+
+    @Test
+    void mergeWithOptIn() throws Exception {
+        SingleFlight.enable("Authorization");
+        blockingTransport();
+        Map<String, String> headers = Collections.singletonMap("Authorization", "Bearer a");
+        assertEquals(1, sendConcurrently(headers, headers));
+    }
+
+    private void blockingTransport() {
+        HttpClientUtils.setTransport((request, context) -> {
+            calls.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return StubResponse.of(200, "ok");
+        });
+    }
+
+    /**
+     * 并发发送两个请求，第一个请求发出后再发送第二个，返回真正发送的请求数
+     */
+    private int sendConcurrently(Map<String, String> first, Map<String, String> second) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> a = executor.submit(() -> HttpClientUtils.requestGet("http://order-service/x", 1000, first, null));
+            long deadline = System.currentTimeMillis() + 2000;
+            while (calls.get() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            long collapsed = SingleFlight.getCollapsedCount();
+            Future<String> b = executor.submit(() -> HttpClientUtils.requestGet("http://order-service/x", 1000, second, null));
+            //等待第二个请求被合并或发出
+            while (calls.get() < 2 && SingleFlight.getCollapsedCount() == collapsed && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            assertEquals("ok", a.get(5, TimeUnit.SECONDS));
+            assertEquals("ok", b.get(5, TimeUnit.SECONDS));
+            return calls.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
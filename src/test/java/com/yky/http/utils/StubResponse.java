@@ -0,0 +1,34 @@
+package com.yky.http.utils;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+
+/**
+ * 测试用的响应，配合HttpClientUtils.setTransport使用，不需要启动服务端
+ */
+class StubResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+    private volatile boolean closed;
+
+    StubResponse(int statusCode, HttpEntity entity) {
+        super(HttpVersion.HTTP_1_1, statusCode, null);
+        setEntity(entity);
+    }
+
+    static StubResponse of(int statusCode, String body) {
+        return new StubResponse(statusCode, new StringEntity(body, ContentType.APPLICATION_JSON));
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
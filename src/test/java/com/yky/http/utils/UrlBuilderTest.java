@@ -0,0 +1,50 @@
+package com.yky.http.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlBuilderTest {
+
+    @Test
+    void toQueryString() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("name", "张三");
+        map.put("age", 22);
+        map.put("q", "a b+c&d=e");
+        map.put("ids", Arrays.asList(1, 2, 3));
+        map.put("tags", new String[]{"x", "y"});
+        map.put("empty", null);
+        map.put("键", "~-._");
+
+        assertEquals("name=%E5%BC%A0%E4%B8%89&age=22&q=a%20b%2Bc%26d%3De&ids=1&ids=2&ids=3&tags=x&tags=y"
+                + "&%E9%94%AE=~-._", UrlBuilder.toQueryString(map));
+        assertEquals("", UrlBuilder.toQueryString(null));
+    }
+
+    @Test
+    void toUri() {
+        Map<String, Object> map = Collections.singletonMap("name", "😀");
+
+        assertEquals(URI.create("http://localhost/test?name=%F0%9F%98%80"), UrlBuilder.toUri("http://localhost/test", map));
+        assertEquals(URI.create("http://localhost/test?a=1&name=%F0%9F%98%80#top"), UrlBuilder.toUri("http://localhost/test?a=1#top", map));
+        assertEquals(URI.create("http://localhost/test?name=%F0%9F%98%80"), UrlBuilder.toUri("http://localhost/test?", map));
+        assertSame(UrlBuilder.toUri("http://localhost/test", null), UrlBuilder.toUri("http://localhost/test", Collections.emptyMap()));
+    }
+
+    @Test
+    void expand() {
+        Map<String, Object> variables = new LinkedHashMap<>();
+        variables.put("id", 7);
+        variables.put("name", "a/b c");
+
+        assertEquals("http://localhost/users/7/files/a%2Fb%20c", UrlBuilder.expand("http://localhost/users/{id}/files/{name}", variables));
+        assertThrows(IllegalArgumentException.class, () -> UrlBuilder.expand("http://localhost/users/{uid}", variables));
+    }
+}